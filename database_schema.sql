@@ -107,7 +107,7 @@ CREATE TABLE IF NOT EXISTS patients (
 -- =============================================
 CREATE TABLE IF NOT EXISTS blood_requests (
     request_id INT AUTO_INCREMENT PRIMARY KEY,
-    requester_type ENUM('patient', 'hospital') NOT NULL,
+    requester_type ENUM('patient', 'donor', 'hospital') NOT NULL,
     requester_id INT NOT NULL,
     blood_type ENUM('A+', 'A-', 'B+', 'B-', 'AB+', 'AB-', 'O+', 'O-') NOT NULL,
     units_required INT NOT NULL CHECK (units_required > 0 AND units_required <= 10),
@@ -142,6 +142,11 @@ CREATE TABLE IF NOT EXISTS blood_requests (
     INDEX idx_required_date (required_date)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Databases created before donors could submit requests still have the old
+-- ENUM; widen it (a no-op on databases created from this file)
+ALTER TABLE blood_requests
+    MODIFY requester_type ENUM('patient', 'donor', 'hospital') NOT NULL;
+
 -- =============================================
 -- CHAT MESSAGES TABLE
 -- =============================================
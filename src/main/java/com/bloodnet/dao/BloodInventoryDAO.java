@@ -0,0 +1,90 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.InventoryLevel;
+import com.bloodnet.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blood Inventory Data Access Object for BloodNet Application
+ * Reads and writes hospital stock levels in blood_inventory. Reservations
+ * do not come through here: the InventoryService keeps the levels in
+ * memory and writes them back in batches.
+ */
+public class BloodInventoryDAO {
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO blood_inventory (hospital_id, blood_type, units_available, units_reserved) VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE units_available = VALUES(units_available), units_reserved = VALUES(units_reserved)";
+
+    /**
+     * Load the stock levels of all hospitals
+     * @return levels, or null on error
+     */
+    public List<InventoryLevel> loadAll() {
+        String sql = "SELECT hospital_id, blood_type, units_available, units_reserved FROM blood_inventory";
+        List<InventoryLevel> levels = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                levels.add(new InventoryLevel(rs.getInt("hospital_id"), rs.getString("blood_type"),
+                                              rs.getInt("units_available"), rs.getInt("units_reserved")));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error loading blood inventory: " + e.getMessage());
+            return null;
+        }
+
+        return levels;
+    }
+
+    /**
+     * Overwrite stock levels, inserting rows that do not exist yet
+     * All levels commit together, as JDBC batches of up to {@code batchSize}
+     * rows that Connector/J rewrites into multi-row upserts.
+     * @param levels Levels to write
+     * @param batchSize Rows per batch
+     * @throws SQLException if the write failed and nothing was committed
+     */
+    public void writeLevels(List<InventoryLevel> levels, int batchSize) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+
+            conn.setAutoCommit(false);
+            try {
+                int buffered = 0;
+                for (InventoryLevel level : levels) {
+                    stmt.setInt(1, level.getHospitalId());
+                    stmt.setString(2, level.getBloodType());
+                    stmt.setInt(3, level.getUnitsAvailable());
+                    stmt.setInt(4, level.getUnitsReserved());
+                    stmt.addBatch();
+
+                    if (++buffered == batchSize) {
+                        stmt.executeBatch();
+                        buffered = 0;
+                    }
+                }
+                if (buffered > 0) {
+                    stmt.executeBatch();
+                }
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.BloodRequest;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.DBConnection;
+import com.bloodnet.util.ZipCodeGeocoder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Blood Request Data Access Object for BloodNet Application
+ * Handles database operations for blood requests. Submissions are checked
+ * against the {@link RecentRequestIndex} first, so a repeated submission of
+ * the same request within the duplicate window returns the stored request
+ * instead of inserting another row. Submissions and status changes keep the
+ * {@link PendingRequestIndex} current.
+ */
+public class BloodRequestDAO {
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
+    /**
+     * Outcome of saving a blood request
+     */
+    public enum SaveResult {
+        /** A new row was inserted */
+        CREATED,
+        /** The request was submitted before; its ID was set on the request */
+        DUPLICATE,
+        /** Nothing was saved */
+        FAILED
+    }
+
+    /**
+     * Save a new blood request unless it repeats a recent one
+     * A request repeats another if it carries the same idempotency key from
+     * the same requester, or names the same patient, blood type and hospital,
+     * within the duplicate window. Requests without a patient name repeat
+     * only if the requester, units, urgency and required date match too.
+     * @param request Blood request; its ID is set unless saving fails
+     * @param idempotencyKey Key the client sends with every attempt of one
+     *                       submission, or null
+     * @return whether the request was created, was a duplicate, or failed
+     */
+    public SaveResult saveBloodRequest(BloodRequest request, String idempotencyKey) {
+        RecentRequestIndex index = RecentRequestIndex.getInstance();
+        if (!index.isSeeded()) {
+            seedIndex(index);
+        }
+
+        List<String> keys = new ArrayList<>(2);
+        String scopedKey = idempotencyKeyOf(request, idempotencyKey);
+        if (scopedKey != null) {
+            keys.add(scopedKey);
+        }
+        keys.add(fingerprintOf(request.getPatientName(), request.getRequesterType(), request.getRequesterId(),
+                               request.getBloodType(), request.getHospitalName(), request.getZipCode(),
+                               request.getUnitsRequired(), request.getUrgency(), request.getRequiredDate()));
+
+        RecentRequestIndex.Submission claim = new RecentRequestIndex.Submission(System.currentTimeMillis());
+        RecentRequestIndex.Submission earlier = index.claim(keys, claim);
+        if (earlier != null) {
+            return awaitEarlier(request, earlier);
+        }
+
+        try {
+            insert(request);
+            index.complete(claim, request.getRequestId());
+            PendingRequestIndex.getInstance().put(request);
+            return SaveResult.CREATED;
+
+        } catch (SQLException e) {
+            System.err.println("Error saving blood request: " + e.getMessage());
+            index.release(keys, claim, e);
+            return SaveResult.FAILED;
+        }
+    }
+
+    /**
+     * Get a blood request
+     * @param requestId Request ID
+     * @return request, or null if not found
+     */
+    public BloodRequest getBloodRequestById(int requestId) {
+        String sql = "SELECT * FROM blood_requests WHERE request_id = ?";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, requestId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToBloodRequest(rs);
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error getting blood request: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Change the status of a blood request
+     * @param requestId Request ID
+     * @param status New status: pending, matched, fulfilled or cancelled
+     * @return true if the request exists and was updated
+     */
+    public boolean updateStatus(int requestId, String status) {
+        String sql = "UPDATE blood_requests SET status = ?, " +
+                    "fulfilled_date = CASE WHEN ? = 'fulfilled' THEN CURRENT_TIMESTAMP ELSE fulfilled_date END " +
+                    "WHERE request_id = ?";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, status);
+            stmt.setString(2, status);
+            stmt.setInt(3, requestId);
+
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error updating blood request status: " + e.getMessage());
+            return false;
+        }
+
+        if ("pending".equals(status)) {
+            // Reopened; index it with its stored dates
+            BloodRequest request = getBloodRequestById(requestId);
+            if (request != null) {
+                PendingRequestIndex.getInstance().put(request);
+            }
+        } else {
+            PendingRequestIndex.getInstance().remove(requestId);
+        }
+        return true;
+    }
+
+    /**
+     * Raise the urgency of a pending blood request
+     * @param request Pending request; its urgency is set and it is re-indexed
+     * @param urgency New urgency: low, medium, high or critical
+     * @return true if the request was still pending and was updated
+     */
+    public boolean updateUrgency(BloodRequest request, String urgency) {
+        String sql = "UPDATE blood_requests SET urgency = ? WHERE request_id = ? AND status = 'pending'";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, urgency);
+            stmt.setInt(2, request.getRequestId());
+
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error updating blood request urgency: " + e.getMessage());
+            return false;
+        }
+
+        // The index keeps a snapshot of the old order; replacing the entry re-sorts it
+        request.setUrgency(urgency);
+        PendingRequestIndex.getInstance().put(request);
+        return true;
+    }
+
+    /**
+     * Get the most urgent pending blood requests
+     * Answered from the PendingRequestIndex once loaded, otherwise from SQL.
+     * @param limit Maximum number of requests
+     * @return requests ordered by urgency, required date and request date
+     */
+    public List<BloodRequest> getPendingRequests(int limit) {
+        PendingRequestIndex pendingIndex = PendingRequestIndex.getInstance();
+        if (pendingIndex.isLoaded()) {
+            return pendingIndex.top(limit);
+        }
+
+        String sql = "SELECT * FROM blood_requests WHERE status = 'pending' " +
+                    "ORDER BY CASE urgency WHEN 'critical' THEN 1 WHEN 'high' THEN 2 " +
+                    "WHEN 'medium' THEN 3 WHEN 'low' THEN 4 ELSE 5 END, " +
+                    "required_date IS NULL, required_date, request_date, request_id LIMIT ?";
+        List<BloodRequest> requests = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    requests.add(mapResultSetToBloodRequest(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error getting pending blood requests: " + e.getMessage());
+        }
+
+        return requests;
+    }
+
+    /**
+     * Stream all pending blood requests, e.g. to build the PendingRequestIndex
+     * @param consumer Receives each request
+     * @return number of requests, or -1 on error
+     */
+    public int loadPendingRequests(Consumer<BloodRequest> consumer) {
+        String sql = "SELECT * FROM blood_requests WHERE status = 'pending'";
+        int count = 0;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            // Ask MySQL Connector/J to stream rows instead of buffering the table
+            stmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapResultSetToBloodRequest(rs));
+                    count++;
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error loading pending blood requests: " + e.getMessage());
+            return -1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Wait for the submission a duplicate repeats and take over its ID
+     */
+    private SaveResult awaitEarlier(BloodRequest request, RecentRequestIndex.Submission earlier) {
+        long timeoutMs = AppConfig.getLong("bloodRequests.saveTimeoutMs", 5000);
+
+        try {
+            request.setRequestId(earlier.getRequestId().get(timeoutMs, TimeUnit.MILLISECONDS));
+            return SaveResult.DUPLICATE;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while waiting for a duplicate blood request");
+        } catch (ExecutionException e) {
+            // The first attempt failed and has already been reported to its own client
+            System.err.println("Duplicate of a failed blood request: " + e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            System.err.println("Timed out waiting for a duplicate blood request after " + timeoutMs + "ms");
+        }
+
+        return SaveResult.FAILED;
+    }
+
+    private void insert(BloodRequest request) throws SQLException {
+        String sql = "INSERT INTO blood_requests (requester_type, requester_id, blood_type, units_required, " +
+                    "urgency, patient_name, patient_age, medical_condition, hospital_name, hospital_address, " +
+                    "city, state, zip_code, latitude, longitude, contact_person, contact_phone, contact_email, " +
+                    "additional_notes, status, required_date) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        // Place the request at its ZIP code's centroid so matching can search by distance
+        double[] location = ZipCodeGeocoder.getInstance().locate(request.getZipCode());
+        if (location != null) {
+            request.setLatitude(location[0]);
+            request.setLongitude(location[1]);
+        }
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            stmt.setString(1, request.getRequesterType());
+            stmt.setInt(2, request.getRequesterId());
+            stmt.setString(3, request.getBloodType());
+            stmt.setInt(4, request.getUnitsRequired());
+            stmt.setString(5, request.getUrgency() != null ? request.getUrgency().toLowerCase(Locale.ROOT) : null);
+            stmt.setString(6, request.getPatientName());
+            stmt.setString(7, request.getPatientAge());
+            stmt.setString(8, request.getMedicalCondition());
+            stmt.setString(9, request.getHospitalName());
+            stmt.setString(10, request.getHospitalAddress());
+            stmt.setString(11, request.getCity());
+            stmt.setString(12, request.getState());
+            stmt.setString(13, request.getZipCode());
+            stmt.setDouble(14, request.getLatitude());
+            stmt.setDouble(15, request.getLongitude());
+            stmt.setString(16, request.getContactPerson());
+            stmt.setString(17, request.getContactPhone());
+            stmt.setString(18, request.getContactEmail());
+            stmt.setString(19, request.getAdditionalNotes());
+            stmt.setString(20, request.getStatus() != null ? request.getStatus() : "pending");
+            stmt.setTimestamp(21, request.getRequiredDate() != null ? Timestamp.valueOf(request.getRequiredDate()) : null);
+
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("No request ID generated");
+                }
+                request.setRequestId(generatedKeys.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Add the requests of the current window stored before this node started,
+     * so a retry right after a restart is still recognized
+     */
+    private void seedIndex(RecentRequestIndex index) {
+        String sql = "SELECT request_id, requester_type, requester_id, blood_type, patient_name, " +
+                    "hospital_name, zip_code, units_required, urgency, required_date, created_at " +
+                    "FROM blood_requests WHERE created_at >= ?";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - index.getWindowMs()));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp requiredDate = rs.getTimestamp("required_date");
+                    String fingerprint = fingerprintOf(rs.getString("patient_name"), rs.getString("requester_type"),
+                        rs.getInt("requester_id"), rs.getString("blood_type"), rs.getString("hospital_name"),
+                        rs.getString("zip_code"), rs.getInt("units_required"), rs.getString("urgency"),
+                        requiredDate != null ? requiredDate.toLocalDateTime() : null);
+                    index.seed(fingerprint, rs.getInt("request_id"), rs.getTimestamp("created_at").getTime());
+                }
+            }
+            index.markSeeded();
+
+        } catch (SQLException e) {
+            // Try again with the next submission
+            System.err.println("Error loading recent blood requests: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Idempotency key scoped to its requester, or null if none was sent
+     */
+    private static String idempotencyKeyOf(BloodRequest request, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            return null;
+        }
+
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            key = key.substring(0, MAX_IDEMPOTENCY_KEY_LENGTH);
+        }
+        return "key|" + request.getRequesterType() + ":" + request.getRequesterId() + "|" + key;
+    }
+
+    /**
+     * Patient, blood type and hospital of a request
+     * Without a patient name the requester stands in for the patient, and
+     * without a hospital name the ZIP code stands in for the hospital. A
+     * requester may well ask for several patients without naming them, so
+     * then the units, urgency and required date must match as well.
+     */
+    private static String fingerprintOf(String patientName, String requesterType, int requesterId,
+                                        String bloodType, String hospitalName, String zipCode,
+                                        int unitsRequired, String urgency, LocalDateTime requiredDate) {
+        String patient = normalize(patientName);
+        if (patient.isEmpty()) {
+            patient = "#" + requesterType + ":" + requesterId + "|" + unitsRequired + "|" + normalize(urgency)
+                    + "|" + (requiredDate != null ? requiredDate.toLocalDate() : "");
+        }
+        String hospital = normalize(hospitalName);
+        if (hospital.isEmpty()) {
+            hospital = "#" + normalize(zipCode);
+        }
+        return "patient|" + patient + "|" + bloodType + "|" + hospital;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Map ResultSet to BloodRequest object
+     */
+    private BloodRequest mapResultSetToBloodRequest(ResultSet rs) throws SQLException {
+        BloodRequest request = new BloodRequest();
+        request.setRequestId(rs.getInt("request_id"));
+        request.setRequesterType(rs.getString("requester_type"));
+        request.setRequesterId(rs.getInt("requester_id"));
+        request.setBloodType(rs.getString("blood_type"));
+        request.setUnitsRequired(rs.getInt("units_required"));
+        request.setUrgency(rs.getString("urgency"));
+        request.setPatientName(rs.getString("patient_name"));
+        request.setPatientAge(rs.getString("patient_age"));
+        request.setMedicalCondition(rs.getString("medical_condition"));
+        request.setHospitalName(rs.getString("hospital_name"));
+        request.setHospitalAddress(rs.getString("hospital_address"));
+        request.setCity(rs.getString("city"));
+        request.setState(rs.getString("state"));
+        request.setZipCode(rs.getString("zip_code"));
+        request.setLatitude(rs.getDouble("latitude"));
+        request.setLongitude(rs.getDouble("longitude"));
+        request.setContactPerson(rs.getString("contact_person"));
+        request.setContactPhone(rs.getString("contact_phone"));
+        request.setContactEmail(rs.getString("contact_email"));
+        request.setAdditionalNotes(rs.getString("additional_notes"));
+        request.setStatus(rs.getString("status"));
+
+        Timestamp requestDate = rs.getTimestamp("request_date");
+        if (requestDate != null) {
+            request.setRequestDate(requestDate.toLocalDateTime());
+        }
+
+        Timestamp requiredDate = rs.getTimestamp("required_date");
+        if (requiredDate != null) {
+            request.setRequiredDate(requiredDate.toLocalDateTime());
+        }
+
+        Timestamp fulfilledDate = rs.getTimestamp("fulfilled_date");
+        if (fulfilledDate != null) {
+            request.setFulfilledDate(fulfilledDate.toLocalDateTime());
+        }
+
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        if (createdAt != null) {
+            request.setCreatedAt(createdAt.toLocalDateTime());
+        }
+
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        if (updatedAt != null) {
+            request.setUpdatedAt(updatedAt.toLocalDateTime());
+        }
+
+        return request;
+    }
+}
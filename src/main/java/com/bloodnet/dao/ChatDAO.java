@@ -0,0 +1,383 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Chat Data Access Object for BloodNet Application
+ * Handles database operations for chat messages. Inserts go through the
+ * group-committing {@link ChatMessageWriter}; reads of recent messages are
+ * answered by the {@link ChatMessageCache} when it holds them.
+ */
+public class ChatDAO {
+
+    /**
+     * Save a new chat message
+     * Messages for unknown blood requests are rejected before they reach the
+     * group commit. Otherwise this blocks until the message's batch is
+     * committed or has failed: the writer completes every queued message, and
+     * giving up earlier would report a failure for a message that may still be
+     * saved, so a retrying client would post it twice.
+     * @param message Chat message; its ID is set on success
+     * @return true if the message was saved
+     */
+    public boolean saveMessage(ChatMessage message) {
+        if (!requestExists(message.getRequestId())) {
+            System.err.println("Rejected chat message for unknown blood request " + message.getRequestId());
+            return false;
+        }
+
+        try {
+            ChatMessageWriter.getInstance().submit(message).get();
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while saving chat message");
+        } catch (ExecutionException e) {
+            System.err.println("Error saving chat message: " + e.getCause().getMessage());
+        }
+
+        return false;
+    }
+
+    /**
+     * Check that a blood request exists
+     * @return true if it does, false if not or on error
+     */
+    private boolean requestExists(int requestId) {
+        String sql = "SELECT 1 FROM blood_requests WHERE request_id = ?";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, requestId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error checking blood request " + requestId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get all messages of a blood request, oldest first
+     * @param requestId Blood request ID
+     * @return list of messages
+     */
+    public List<ChatMessage> getMessagesByRequestId(int requestId) {
+        ChatMessageCache.Conversation conversation = cachedConversation(requestId);
+        if (conversation != null) {
+            List<ChatMessage> cached = conversation.all();
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String sql = "SELECT * FROM chat_messages WHERE request_id = ? ORDER BY message_id ASC";
+        return queryMessagesOrEmpty(sql, requestId);
+    }
+
+    /**
+     * Get a single message
+     * @param messageId Message ID
+     * @return message, or null if not found
+     */
+    public ChatMessage getMessageById(int messageId) {
+        String sql = "SELECT * FROM chat_messages WHERE message_id = ?";
+        List<ChatMessage> messages = queryMessagesOrEmpty(sql, messageId);
+        return messages.isEmpty() ? null : messages.get(0);
+    }
+
+    /**
+     * Check whether a user takes part in a request's chat
+     * Participants are the request's requester and the matched donors that
+     * have been contacted, as counted by the UnreadCounterService.
+     * @param requestId Blood request ID
+     * @param userId ID of the user
+     * @param userType Type of the user ("donor" or "hospital")
+     * @return true if the user is a participant, false if not or on error
+     */
+    public boolean isParticipant(int requestId, int userId, String userType) {
+        String sql = "SELECT 1 FROM blood_requests WHERE request_id = ? AND requester_id = ? AND requester_type = ? " +
+                    "UNION ALL SELECT 1 FROM donor_matches WHERE request_id = ? AND donor_id = ? AND ? = 'donor' " +
+                    "AND is_contacted = TRUE";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, requestId);
+            stmt.setInt(2, userId);
+            stmt.setString(3, userType);
+            stmt.setInt(4, requestId);
+            stmt.setInt(5, userId);
+            stmt.setString(6, userType);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error checking chat participant: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get the messages of a blood request written after a known message
+     * Used to replay what a reconnecting push subscriber missed.
+     * @param requestId Blood request ID
+     * @param afterMessageId ID of the last message the client has
+     * @return newer messages in ID order
+     */
+    public List<ChatMessage> getMessagesAfter(int requestId, int afterMessageId) {
+        return getMessagesAfter(requestId, afterMessageId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get up to {@code limit} messages written after a known message, oldest first
+     * @param requestId Blood request ID
+     * @param afterMessageId ID of the last message the client has
+     * @param limit Maximum number of messages
+     * @return newer messages in ID order
+     */
+    public List<ChatMessage> getMessagesAfter(int requestId, int afterMessageId, int limit) {
+        ChatMessageCache.Conversation conversation = cachedConversation(requestId);
+        if (conversation != null) {
+            List<ChatMessage> cached = conversation.after(afterMessageId, limit);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String sql = "SELECT * FROM chat_messages WHERE request_id = ? AND message_id > ? " +
+                    "ORDER BY message_id ASC LIMIT ?";
+        return queryMessagesOrEmpty(sql, requestId, afterMessageId, limit);
+    }
+
+    /**
+     * Get the latest {@code limit} messages written before a known message
+     * Pages backwards through long conversations.
+     * @param requestId Blood request ID
+     * @param beforeMessageId ID of the oldest message the client has
+     * @param limit Maximum number of messages
+     * @return older messages, oldest first
+     */
+    public List<ChatMessage> getMessagesBefore(int requestId, int beforeMessageId, int limit) {
+        ChatMessageCache.Conversation conversation = cachedConversation(requestId);
+        if (conversation != null) {
+            List<ChatMessage> cached = conversation.before(beforeMessageId, limit);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        try {
+            return queryMessagesBefore(requestId, beforeMessageId, limit);
+        } catch (SQLException e) {
+            System.err.println("Error getting chat messages: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Get a version stamp of a conversation
+     * Changes whenever a message is added or marked as read, so it can serve
+     * as an HTTP entity tag for the conversation.
+     * @param requestId Blood request ID
+     * @return "newestMessageId-readCount", or null on error
+     */
+    public String getConversationVersion(int requestId) {
+        ChatMessageCache.Conversation conversation = cachedConversation(requestId);
+        if (conversation != null) {
+            String cached = conversation.version();
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        try {
+            int[] version = queryConversationVersion(requestId);
+            return version[0] + "-" + version[1];
+        } catch (SQLException e) {
+            System.err.println("Error getting chat version: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get a conversation from the recent-message cache, loading it on first use
+     * @return conversation, or null if it has to be read from the database
+     */
+    private ChatMessageCache.Conversation cachedConversation(int requestId) {
+        ChatMessageCache cache = ChatMessageCache.getInstance();
+        ChatMessageCache.Conversation conversation = cache.get(requestId);
+        if (conversation != null) {
+            return conversation;
+        }
+
+        // Another thread may be loading it; that request is then served by the database
+        conversation = cache.beginLoad(requestId);
+        if (conversation == null) {
+            return null;
+        }
+
+        try {
+            int capacity = cache.getMessagesPerConversation();
+            int readCount = queryConversationVersion(requestId)[1];
+            List<ChatMessage> latest = queryMessagesBefore(requestId, Integer.MAX_VALUE, capacity);
+            return cache.completeLoad(conversation, latest, latest.size() < capacity, readCount)
+                 ? conversation : null;
+
+        } catch (SQLException e) {
+            System.err.println("Error loading chat messages into cache: " + e.getMessage());
+            cache.abandonLoad(conversation);
+            return null;
+        }
+    }
+
+    /**
+     * Read the newest message ID and the read message count of a conversation
+     */
+    private int[] queryConversationVersion(int requestId) throws SQLException {
+        String sql = "SELECT MAX(message_id), SUM(CASE WHEN is_read THEN 1 ELSE 0 END) " +
+                    "FROM chat_messages WHERE request_id = ?";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, requestId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return new int[] {rs.getInt(1), rs.getInt(2)};
+            }
+        }
+    }
+
+    /**
+     * Read the latest messages before a message ID, oldest first
+     */
+    private List<ChatMessage> queryMessagesBefore(int requestId, int beforeMessageId, int limit) throws SQLException {
+        String sql = "SELECT * FROM chat_messages WHERE request_id = ? AND message_id < ? " +
+                    "ORDER BY message_id DESC LIMIT ?";
+        List<ChatMessage> messages = queryMessages(sql, requestId, beforeMessageId, limit);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * Run a message query, logging failures and returning an empty list
+     */
+    private List<ChatMessage> queryMessagesOrEmpty(String sql, int... params) {
+        try {
+            return queryMessages(sql, params);
+        } catch (SQLException e) {
+            System.err.println("Error getting chat messages: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Run a message query with integer parameters
+     */
+    private List<ChatMessage> queryMessages(String sql, int... params) throws SQLException {
+        List<ChatMessage> messages = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < params.length; i++) {
+                stmt.setInt(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    messages.add(mapResultSetToChatMessage(rs));
+                }
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * Mark the other participants' messages of a request as read
+     * The receipt is coalesced with others from the same reader and written
+     * by the {@link ReadReceiptTracker} within its flush interval.
+     * @param requestId Blood request ID
+     * @param readerId ID of the user reading
+     * @param readerType Type of the user reading ("donor" or "hospital")
+     * @param upToMessageId Newest message the reader has seen, or null for
+     *                      everything sent so far
+     * @return message ID the receipt covers, or -1 on error
+     */
+    public int markMessagesAsRead(int requestId, int readerId, String readerType, Integer upToMessageId) {
+        int upTo = upToMessageId != null ? upToMessageId : getNewestMessageId(requestId);
+        if (upTo > 0) {
+            ReadReceiptTracker.getInstance().record(requestId, readerId, readerType, upTo);
+        }
+        return upTo;
+    }
+
+    /**
+     * Get the ID of the newest message of a request
+     * @return message ID, 0 if there are no messages, or -1 on error
+     */
+    public int getNewestMessageId(int requestId) {
+        ChatMessageCache.Conversation conversation = cachedConversation(requestId);
+        if (conversation != null) {
+            int cached = conversation.newestMessageId();
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+
+        try {
+            return queryConversationVersion(requestId)[0];
+        } catch (SQLException e) {
+            System.err.println("Error getting newest chat message: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Map ResultSet to ChatMessage object
+     */
+    private ChatMessage mapResultSetToChatMessage(ResultSet rs) throws SQLException {
+        ChatMessage message = new ChatMessage();
+        message.setMessageId(rs.getInt("message_id"));
+        message.setRequestId(rs.getInt("request_id"));
+        message.setSenderId(rs.getInt("sender_id"));
+        message.setSenderType(rs.getString("sender_type"));
+        message.setSenderName(rs.getString("sender_name"));
+        message.setMessage(rs.getString("message"));
+        message.setMessageType(rs.getString("message_type"));
+        message.setRead(rs.getBoolean("is_read"));
+
+        Timestamp sentAt = rs.getTimestamp("sent_at");
+        if (sentAt != null) {
+            message.setSentAt(sentAt.toLocalDateTime());
+        }
+
+        Timestamp readAt = rs.getTimestamp("read_at");
+        if (readAt != null) {
+            message.setReadAt(readAt.toLocalDateTime());
+        }
+
+        return message;
+    }
+}
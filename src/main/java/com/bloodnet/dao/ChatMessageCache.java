@@ -0,0 +1,419 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.util.AppConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chat Message Cache for BloodNet Application
+ * Keeps the latest messages of recently viewed conversations in a fixed-size
+ * ring buffer per blood request. The chat writer appends every committed
+ * message, so an active conversation is served from memory and only its
+ * first view reads the database. The number of cached messages is capped
+ * globally; conversations that have gone longest without a read or write
+ * are dropped first.
+ */
+public class ChatMessageCache {
+
+    private static final ChatMessageCache INSTANCE = new ChatMessageCache();
+
+    private static final Comparator<ChatMessage> BY_ID = Comparator.comparingInt(ChatMessage::getMessageId);
+
+    private final int messagesPerConversation;
+    private final int maxMessages;
+    private final AtomicInteger cachedMessages = new AtomicInteger();
+
+    // Access-ordered, so iteration starts at the least recently used conversation
+    private final LinkedHashMap<Integer, Conversation> conversations = new LinkedHashMap<>(64, 0.75f, true);
+
+    private ChatMessageCache() {
+        messagesPerConversation = Math.max(1, AppConfig.getInt("chat.cache.messagesPerConversation", 100));
+        maxMessages = AppConfig.getInt("chat.cache.maxMessages", 20000);
+    }
+
+    public static ChatMessageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Number of messages kept per conversation
+     */
+    public int getMessagesPerConversation() {
+        return messagesPerConversation;
+    }
+
+    /**
+     * Get a loaded conversation and mark it as recently used
+     * @return conversation, or null if it is not cached or still loading
+     */
+    Conversation get(int requestId) {
+        Conversation conversation;
+        synchronized (conversations) {
+            conversation = conversations.get(requestId);
+        }
+        return conversation != null && conversation.isReady() ? conversation : null;
+    }
+
+    /**
+     * Reserve a conversation for loading
+     * Messages committed while it loads are held back and merged in by
+     * {@link #completeLoad}.
+     * @return the new empty conversation, or null if one is cached or
+     *         already being loaded by another thread
+     */
+    Conversation beginLoad(int requestId) {
+        if (maxMessages <= 0) {
+            return null;
+        }
+
+        synchronized (conversations) {
+            if (conversations.containsKey(requestId)) {
+                return null;
+            }
+            Conversation conversation = new Conversation(requestId, messagesPerConversation);
+            conversations.put(requestId, conversation);
+            return conversation;
+        }
+    }
+
+    /**
+     * Fill a reserved conversation and make it visible
+     * @param conversation Conversation from {@link #beginLoad}
+     * @param latest Latest messages read from the database, oldest first
+     * @param complete Whether {@code latest} is the whole conversation
+     * @param readCount Number of read messages in the conversation
+     * @return false if the conversation changed in a way the load cannot
+     *         account for; it is then dropped
+     */
+    boolean completeLoad(Conversation conversation, List<ChatMessage> latest, boolean complete, int readCount) {
+        if (!conversation.fill(latest, complete, readCount)) {
+            abandonLoad(conversation);
+            return false;
+        }
+
+        evictIfNeeded(conversation);
+        return true;
+    }
+
+    /**
+     * Drop a conversation whose load failed
+     */
+    void abandonLoad(Conversation conversation) {
+        remove(conversation);
+    }
+
+    /**
+     * Add a committed message to its conversation, if cached
+     * Called by the chat writer in commit order.
+     */
+    void append(ChatMessage message) {
+        Conversation conversation;
+        synchronized (conversations) {
+            conversation = conversations.get(message.getRequestId());
+        }
+        if (conversation == null) {
+            return;
+        }
+
+        if (conversation.append(message)) {
+            evictIfNeeded(conversation);
+        }
+    }
+
+    /**
+     * Apply a read receipt to a cached conversation
+     * @param upToMessageId Newest message the receipt covers
+     * @param markedCount Number of messages the database update marked
+     */
+    void markRead(int requestId, int readerId, String readerType, int upToMessageId, int markedCount) {
+        Conversation conversation;
+        synchronized (conversations) {
+            conversation = conversations.get(requestId);
+        }
+        if (conversation != null) {
+            conversation.markRead(readerId, readerType, upToMessageId, markedCount);
+        }
+    }
+
+    /**
+     * Drop a conversation, e.g. after an update the cache cannot follow
+     */
+    public void invalidate(int requestId) {
+        Conversation conversation;
+        synchronized (conversations) {
+            conversation = conversations.remove(requestId);
+        }
+        if (conversation != null) {
+            conversation.clear();
+        }
+    }
+
+    /**
+     * Number of cached conversations
+     */
+    public int getConversationCount() {
+        synchronized (conversations) {
+            return conversations.size();
+        }
+    }
+
+    /**
+     * Number of cached messages across all conversations, plus one per conversation
+     */
+    public int getCachedMessageCount() {
+        return cachedMessages.get();
+    }
+
+    private void remove(Conversation conversation) {
+        synchronized (conversations) {
+            conversations.remove(conversation.requestId, conversation);
+        }
+        conversation.clear();
+    }
+
+    /**
+     * Drop least recently used conversations until the cap is met
+     * @param keep Conversation that was just used and must stay
+     */
+    private void evictIfNeeded(Conversation keep) {
+        while (cachedMessages.get() > maxMessages) {
+            Conversation victim = null;
+            synchronized (conversations) {
+                Iterator<Map.Entry<Integer, Conversation>> it = conversations.entrySet().iterator();
+                while (it.hasNext()) {
+                    Conversation candidate = it.next().getValue();
+                    if (candidate != keep) {
+                        it.remove();
+                        victim = candidate;
+                        break;
+                    }
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            victim.clear();
+        }
+    }
+
+    /**
+     * Latest messages of one blood request
+     * All methods that read messages return null when the answer is not
+     * fully in memory, so the caller falls back to the database.
+     */
+    final class Conversation {
+        private final int requestId;
+        private final ChatMessage[] ring;
+        private int start = 0;
+        private int size = 0;
+
+        // True while every message of the request is in the ring
+        private boolean complete = false;
+        private boolean ready = false;
+        private boolean stale = false;
+        private boolean cleared = false;
+        private int newestMessageId = 0;
+        private int readCount = 0;
+
+        // Amount counted against the global cap: one per message plus the
+        // conversation itself, so empty conversations cannot pile up
+        private int accounted = 0;
+
+        // Messages committed while loading
+        private List<ChatMessage> pending = new ArrayList<>();
+
+        Conversation(int requestId, int capacity) {
+            this.requestId = requestId;
+            this.ring = new ChatMessage[capacity];
+        }
+
+        synchronized boolean isReady() {
+            return ready;
+        }
+
+        /**
+         * Install loaded messages
+         * @return false if the load is stale
+         */
+        synchronized boolean fill(List<ChatMessage> latest, boolean complete, int readCount) {
+            if (stale || cleared) {
+                return false;
+            }
+
+            // Merge what was read with what was committed meanwhile; a message
+            // committed just before the read can show up in both
+            List<ChatMessage> merged = new ArrayList<>(latest.size() + pending.size());
+            merged.addAll(latest);
+            merged.addAll(pending);
+            merged.sort(BY_ID);
+            pending = null;
+
+            this.complete = complete;
+            this.readCount = readCount;
+            int previousId = Integer.MIN_VALUE;
+            for (ChatMessage message : merged) {
+                if (message.getMessageId() != previousId) {
+                    push(message);
+                    previousId = message.getMessageId();
+                }
+            }
+            ready = true;
+            accounted = size + 1;
+            cachedMessages.addAndGet(accounted);
+            return true;
+        }
+
+        /**
+         * @return true if the message was added and the ring grew
+         */
+        synchronized boolean append(ChatMessage message) {
+            if (cleared) {
+                return false;
+            }
+            if (!ready) {
+                pending.add(message);
+                return false;
+            }
+            if (message.getMessageId() <= newestMessageId) {
+                return false;
+            }
+
+            int before = size;
+            push(message);
+            if (size > before) {
+                accounted++;
+                cachedMessages.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void markRead(int readerId, String readerType, int upToMessageId, int markedCount) {
+            if (!ready) {
+                // The loaded read state could be either side of this update
+                stale = true;
+                return;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < size && at(i).getMessageId() <= upToMessageId; i++) {
+                ChatMessage message = at(i);
+                boolean ownMessage = message.getSenderId() == readerId && readerType.equals(message.getSenderType());
+                if (!message.isRead() && !ownMessage) {
+                    message.setRead(true);
+                    message.setReadAt(now);
+                }
+            }
+            readCount += markedCount;
+        }
+
+        /**
+         * Release the messages and their share of the global cap
+         */
+        synchronized void clear() {
+            if (cleared) {
+                return;
+            }
+            cleared = true;
+            ready = false;
+            cachedMessages.addAndGet(-accounted);
+            accounted = 0;
+            Arrays.fill(ring, null);
+            size = 0;
+        }
+
+        /**
+         * Whole conversation, oldest first
+         */
+        synchronized List<ChatMessage> all() {
+            if (!ready || !complete) {
+                return null;
+            }
+            return copy(0, size);
+        }
+
+        /**
+         * Up to {@code limit} messages after a message ID, oldest first
+         */
+        synchronized List<ChatMessage> after(int afterMessageId, int limit) {
+            if (!ready || (!complete && (size == 0 || afterMessageId < at(0).getMessageId()))) {
+                return null;
+            }
+
+            int from = 0;
+            while (from < size && at(from).getMessageId() <= afterMessageId) {
+                from++;
+            }
+            return copy(from, (int) Math.min(size, (long) from + limit));
+        }
+
+        /**
+         * Latest {@code limit} messages before a message ID, oldest first
+         */
+        synchronized List<ChatMessage> before(int beforeMessageId, int limit) {
+            if (!ready) {
+                return null;
+            }
+
+            int to = size;
+            while (to > 0 && at(to - 1).getMessageId() >= beforeMessageId) {
+                to--;
+            }
+            if (to < limit && !complete) {
+                return null;
+            }
+            return copy(Math.max(0, to - limit), to);
+        }
+
+        /**
+         * Newest message ID, or -1 while not loaded
+         */
+        synchronized int newestMessageId() {
+            return ready ? newestMessageId : -1;
+        }
+
+        /**
+         * Version stamp matching {@link ChatDAO#getConversationVersion}
+         */
+        synchronized String version() {
+            if (!ready) {
+                return null;
+            }
+            return newestMessageId + "-" + readCount;
+        }
+
+        private void push(ChatMessage message) {
+            if (size == ring.length) {
+                // Oldest message falls out; older history now lives only in the database
+                ring[start] = null;
+                start = (start + 1) % ring.length;
+                size--;
+                complete = false;
+            }
+            ring[(start + size) % ring.length] = message;
+            size++;
+            newestMessageId = Math.max(newestMessageId, message.getMessageId());
+        }
+
+        private ChatMessage at(int index) {
+            return ring[(start + index) % ring.length];
+        }
+
+        private List<ChatMessage> copy(int from, int to) {
+            List<ChatMessage> messages = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                messages.add(at(i));
+            }
+            return messages;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.service.ChatSubscriberRegistry;
+import com.bloodnet.service.NotificationDispatcher;
+import com.bloodnet.service.UnreadCounterService;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat Message Writer for BloodNet Application
+ * Group-commits chat messages: request threads enqueue messages into a
+ * bounded queue and a single writer thread drains whatever has arrived,
+ * inserts it as one JDBC batch in one transaction and hands each caller its
+ * generated message ID. Under load many messages share one round trip and
+ * one commit; when idle a message is written as soon as it arrives.
+ * Committed messages are published to open chat streams from this thread,
+ * so streams see them in message ID order.
+ */
+public class ChatMessageWriter {
+
+    private static final ChatMessageWriter INSTANCE = new ChatMessageWriter();
+
+    private static final String INSERT_SQL = "INSERT INTO chat_messages (request_id, sender_id, sender_type, " +
+                                             "sender_name, message, message_type, is_read, sent_at) " +
+                                             "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private BlockingQueue<PendingMessage> queue;
+    private int maxBatchSize;
+    private long enqueueTimeoutMs;
+    private volatile boolean running = false;
+    private Thread writerThread;
+
+    private ChatMessageWriter() {}
+
+    public static ChatMessageWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start the writer thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(AppConfig.getInt("chat.writeQueueCapacity", 10000));
+        maxBatchSize = AppConfig.getInt("chat.maxBatchSize", 200);
+        enqueueTimeoutMs = AppConfig.getLong("chat.enqueueTimeoutMs", 2000);
+        running = true;
+
+        writerThread = new Thread(this::writeLoop, "bloodnet-chat-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stop accepting messages and flush what is already queued
+     */
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = writerThread;
+            writerThread = null;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Messages that raced with shutdown are written by the caller
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            writeBatch(remaining);
+        }
+    }
+
+    /**
+     * Queue a message for the next batch
+     * @param message Message to insert; its ID is set once it is written
+     * @return future completed with the written message, or failed if the
+     *         queue stayed full or the insert failed
+     */
+    CompletableFuture<ChatMessage> submit(ChatMessage message) {
+        CompletableFuture<ChatMessage> future = new CompletableFuture<>();
+
+        if (!running) {
+            writeBatch(List.of(new PendingMessage(message, future)));
+            return future;
+        }
+
+        try {
+            if (!queue.offer(new PendingMessage(message, future), enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                future.completeExceptionally(new SQLException("Chat write queue is full"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Number of messages waiting to be written
+     */
+    public int getQueueSize() {
+        BlockingQueue<PendingMessage> current = queue;
+        return current == null ? 0 : current.size();
+    }
+
+    private void writeLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+            } catch (InterruptedException e) {
+                // Shutdown requested; loop again to flush what is left
+                continue;
+            }
+
+            if (!running) {
+                // Clear a pending shutdown interrupt so the final flush can borrow a connection
+                Thread.interrupted();
+            }
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Insert a batch in one transaction and complete its futures
+     * If the batch fails, its messages are retried one at a time on the same
+     * connection, so a bad message (e.g. for a request deleted meanwhile)
+     * fails alone instead of taking the other senders' messages with it.
+     * Never throws: a failed insert fails its futures, and a failing
+     * post-commit hook is logged without touching messages already written.
+     */
+    private void writeBatch(List<PendingMessage> batch) {
+        List<PendingMessage> written = new ArrayList<>(batch.size());
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try {
+                try {
+                    insert(conn, batch);
+                    written.addAll(batch);
+                } catch (SQLException | RuntimeException e) {
+                    if (batch.size() == 1) {
+                        throw e;
+                    }
+                    System.err.println("Error writing " + batch.size() + " chat message(s), retrying one at a time: " +
+                                       e.getMessage());
+                    for (PendingMessage pending : batch) {
+                        try {
+                            insert(conn, List.of(pending));
+                            written.add(pending);
+                        } catch (SQLException | RuntimeException single) {
+                            System.err.println("Error writing chat message for blood request " +
+                                               pending.message.getRequestId() + ": " + single.getMessage());
+                            pending.future.completeExceptionally(single);
+                        }
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error writing " + batch.size() + " chat message(s): " + e.getMessage());
+            for (PendingMessage pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        // Cache before completing, so the sender's next read already sees its message;
+        // push to open streams from here too, so they receive messages in commit order
+        ChatMessageCache cache = ChatMessageCache.getInstance();
+        ChatSubscriberRegistry subscribers = ChatSubscriberRegistry.getInstance();
+        for (PendingMessage pending : written) {
+            try {
+                cache.append(pending.message);
+                subscribers.publish(pending.message);
+            } catch (RuntimeException e) {
+                System.err.println("Error caching chat message " + pending.message.getMessageId() + ": " + e.getMessage());
+            }
+            pending.future.complete(pending.message);
+        }
+
+        UnreadCounterService unreadCounters = UnreadCounterService.getInstance();
+        NotificationDispatcher notifications = NotificationDispatcher.getInstance();
+        for (PendingMessage pending : written) {
+            try {
+                unreadCounters.messageSent(pending.message);
+                notifications.messageSent(pending.message);
+            } catch (RuntimeException e) {
+                System.err.println("Error announcing chat message " + pending.message.getMessageId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Insert messages as one batch and commit, or roll back and throw
+     * Sets each message's generated ID.
+     */
+    private void insert(Connection conn, List<PendingMessage> messages) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (PendingMessage pending : messages) {
+                ChatMessage message = pending.message;
+                stmt.setInt(1, message.getRequestId());
+                stmt.setInt(2, message.getSenderId());
+                stmt.setString(3, message.getSenderType());
+                stmt.setString(4, message.getSenderName());
+                stmt.setString(5, message.getMessage());
+                stmt.setString(6, message.getMessageType());
+                stmt.setBoolean(7, message.isRead());
+                stmt.setTimestamp(8, Timestamp.valueOf(message.getSentAt()));
+                stmt.addBatch();
+            }
+
+            stmt.executeBatch();
+
+            // Keys come back in batch order; read them before committing, so
+            // nothing that can fail (and be retried) follows the commit
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (PendingMessage pending : messages) {
+                    if (keys.next()) {
+                        pending.message.setMessageId(keys.getInt(1));
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * A queued message and the caller waiting for it
+     */
+    private static final class PendingMessage {
+        private final ChatMessage message;
+        private final CompletableFuture<ChatMessage> future;
+
+        PendingMessage(ChatMessage message, CompletableFuture<ChatMessage> future) {
+            this.message = message;
+            this.future = future;
+        }
+    }
+}
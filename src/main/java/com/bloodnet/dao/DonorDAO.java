@@ -1,13 +1,18 @@
 package com.bloodnet.dao;
 
 import com.bloodnet.model.Donor;
+import com.bloodnet.service.DonorRanker;
+import com.bloodnet.util.BloodTypeUtil;
 import com.bloodnet.util.DBConnection;
+import com.bloodnet.util.GeoGridIndex;
+import com.bloodnet.util.ZipCodeGeocoder;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object for Donor operations
@@ -15,6 +20,12 @@ import java.util.List;
  */
 public class DonorDAO {
     
+    /**
+     * Upper bound on rows returned by a SQL donor search, applied in rank
+     * order; searches answered from the DonorIndex are not capped
+     */
+    public static final int MAX_SEARCH_RESULTS = 1000;
+    
     /**
      * Register a new donor
      * @param donor Donor object with registration data
@@ -26,6 +37,8 @@ public class DonorDAO {
                     "state, zip_code, latitude, longitude, is_active, created_at, updated_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
+        geocode(donor);
+        
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
@@ -57,6 +70,7 @@ public class DonorDAO {
                         donor.setDonorId(generatedKeys.getInt(1));
                     }
                 }
+                DonorIndex.getInstance().put(donor);
                 return true;
             }
             
@@ -148,24 +162,71 @@ public class DonorDAO {
     }
     
     /**
-     * Find eligible donors for blood request
+     * Resolve the center of a search that names a place instead of a point
+     * Tries the ZIP code's centroid, then the mean position of the city's
+     * geocoded donors once the DonorIndex is loaded. A search with a center
+     * goes through {@link #findEligibleDonorsNear} and honors its radius.
+     * @param zipCode ZIP code, or null
+     * @param city City, or null
+     * @param state State, or null
+     * @return {latitude, longitude}, or null if the place cannot be located;
+     *         only a whole-city search without a radius is then possible
+     */
+    public double[] locateSearchCenter(String zipCode, String city, String state) {
+        double[] center = ZipCodeGeocoder.getInstance().locate(zipCode);
+        if (center != null) {
+            return center;
+        }
+
+        DonorIndex index = DonorIndex.getInstance();
+        if (city == null || city.trim().isEmpty() || !index.isLoaded()) {
+            return null;
+        }
+        return index.locateCity(city, state);
+    }
+    
+    /**
+     * Find every eligible donor of a city
+     * No radius is applied: a city search has no center. Callers that need
+     * one resolve it with {@link #locateSearchCenter} and search near it.
+     * Answered from the resident DonorIndex once loaded, otherwise from SQL.
      * @param bloodType Required blood type
      * @param city City to search in
      * @param state State to search in
-     * @param maxDistance Maximum distance in kilometers
      * @return List of eligible donors
      */
-    public List<Donor> findEligibleDonors(String bloodType, String city, String state, double maxDistance) {
-        List<Donor> donors = new ArrayList<>();
+    public List<Donor> findEligibleDonors(String bloodType, String city, String state) {
+        return findEligibleDonors(bloodType, city, state, null, MAX_SEARCH_RESULTS);
+    }
+    
+    /**
+     * Find eligible donors for blood request, one page of the ranking at a time
+     * The DonorIndex returns every candidate and leaves paging to the
+     * DonorRanker. SQL returns at most {@code limit} donors after the cursor,
+     * in rank order, so a capped result holds the highest-ranked donors.
+     * @param after Position after which to continue, in {@link DonorRanker#SQL_SCORE} terms, or null
+     * @param limit Maximum number of donors SQL returns
+     */
+    public List<Donor> findEligibleDonors(String bloodType, String city, String state,
+                                          DonorRanker.Cursor after, int limit) {
+        int donorGroupMask = BloodTypeUtil.compatibleDonorMask(bloodType);
+        if (donorGroupMask == 0) {
+            return new ArrayList<>();
+        }
+        
+        DonorIndex index = DonorIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.findEligibleDonors(donorGroupMask, city, state);
+        }
         
         // Get compatible blood types
-        List<String> compatibleTypes = getCompatibleBloodTypes(bloodType);
+        List<String> compatibleTypes = BloodTypeUtil.typesOf(donorGroupMask);
         
         String sql = "SELECT * FROM donors WHERE blood_type IN (" + 
                     String.join(",", compatibleTypes.stream().map(s -> "?").toArray(String[]::new)) +
                     ") AND city = ? AND state = ? AND is_active = true " +
                     "AND (last_donation_date IS NULL OR last_donation_date <= DATE_SUB(CURDATE(), INTERVAL 56 DAY)) " +
-                    "ORDER BY last_donation_date ASC, created_at ASC";
+                    rankedPage(after);
         
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -176,19 +237,150 @@ public class DonorDAO {
             }
             stmt.setString(paramIndex++, city);
             stmt.setString(paramIndex++, state);
+            bindRankedPage(stmt, paramIndex, after, limit);
+            
+            return readDonors(stmt);
+            
+        } catch (SQLException e) {
+            System.err.println("Error finding eligible donors: " + e.getMessage());
+        }
+        
+        return new ArrayList<>();
+    }
+    
+    /**
+     * Find eligible donors within a radius of a point
+     * Answered from the resident DonorIndex once loaded; until then a
+     * bounding-box query on the location index is filtered by true distance.
+     * @param bloodType Required blood type
+     * @param latitude Search center latitude
+     * @param longitude Search center longitude
+     * @param maxDistance Maximum distance in kilometers
+     * @return List of eligible donors in no particular order; rank them with the DonorRanker
+     */
+    public List<Donor> findEligibleDonorsNear(String bloodType, double latitude, double longitude, double maxDistance) {
+        return findEligibleDonorsNear(bloodType, latitude, longitude, maxDistance, null, MAX_SEARCH_RESULTS);
+    }
+    
+    /**
+     * Find eligible donors within a radius of a point, one page of the ranking at a time
+     * Paged like {@link #findEligibleDonors(String, String, String, DonorRanker.Cursor, int)};
+     * SQL applies the true distance itself so its row limit is exact.
+     * @param after Position after which to continue, in {@link DonorRanker#SQL_SCORE} terms, or null
+     * @param limit Maximum number of donors SQL returns
+     */
+    public List<Donor> findEligibleDonorsNear(String bloodType, double latitude, double longitude, double maxDistance,
+                                              DonorRanker.Cursor after, int limit) {
+        int donorGroupMask = BloodTypeUtil.compatibleDonorMask(bloodType);
+        if (donorGroupMask == 0) {
+            return new ArrayList<>();
+        }
+        
+        DonorIndex index = DonorIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.findEligibleDonorsNear(donorGroupMask, latitude, longitude, maxDistance);
+        }
+        
+        List<String> compatibleTypes = BloodTypeUtil.typesOf(donorGroupMask);
+        double latitudeDelta = maxDistance / 111.32;
+        double longitudeDelta = maxDistance / (111.32 * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        
+        // The bounding box uses the location index; the haversine term keeps only the circle
+        String sql = "SELECT * FROM donors WHERE blood_type IN (" + 
+                    String.join(",", compatibleTypes.stream().map(s -> "?").toArray(String[]::new)) +
+                    ") AND latitude BETWEEN ? AND ? AND longitude BETWEEN ? AND ? " +
+                    "AND NOT (latitude = 0 AND longitude = 0) " +
+                    "AND 2 * " + GeoGridIndex.EARTH_RADIUS_KM + " * ASIN(LEAST(1.0, SQRT(" +
+                    "POWER(SIN(RADIANS(latitude - ?) / 2), 2) + " +
+                    "COS(RADIANS(?)) * COS(RADIANS(latitude)) * POWER(SIN(RADIANS(longitude - ?) / 2), 2)))) <= ? " +
+                    "AND is_active = true " +
+                    "AND (last_donation_date IS NULL OR last_donation_date <= DATE_SUB(CURDATE(), INTERVAL 56 DAY)) " +
+                    rankedPage(after);
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            int paramIndex = 1;
+            for (String type : compatibleTypes) {
+                stmt.setString(paramIndex++, type);
+            }
+            stmt.setDouble(paramIndex++, latitude - latitudeDelta);
+            stmt.setDouble(paramIndex++, latitude + latitudeDelta);
+            stmt.setDouble(paramIndex++, longitude - longitudeDelta);
+            stmt.setDouble(paramIndex++, longitude + longitudeDelta);
+            stmt.setDouble(paramIndex++, latitude);
+            stmt.setDouble(paramIndex++, latitude);
+            stmt.setDouble(paramIndex++, longitude);
+            stmt.setDouble(paramIndex++, maxDistance);
+            bindRankedPage(stmt, paramIndex, after, limit);
+            
+            return readDonors(stmt);
+            
+        } catch (SQLException e) {
+            System.err.println("Error finding eligible donors near location: " + e.getMessage());
+        }
+        
+        return new ArrayList<>();
+    }
+    
+    /**
+     * Cursor condition, rank order and row limit of a SQL donor search
+     * Ties on score are broken by donor ID, as in the DonorRanker.
+     */
+    private static String rankedPage(DonorRanker.Cursor after) {
+        String score = DonorRanker.SQL_SCORE;
+        return (after != null ? "AND (" + score + " < ? OR (" + score + " = ? AND donor_id > ?)) " : "") +
+               "ORDER BY " + score + " DESC, donor_id ASC LIMIT ?";
+    }
+    
+    private static void bindRankedPage(PreparedStatement stmt, int paramIndex, DonorRanker.Cursor after, int limit)
+            throws SQLException {
+        if (after != null) {
+            stmt.setInt(paramIndex++, after.getScore());
+            stmt.setInt(paramIndex++, after.getScore());
+            stmt.setInt(paramIndex++, after.getDonorId());
+        }
+        stmt.setInt(paramIndex, Math.max(0, Math.min(limit, MAX_SEARCH_RESULTS)));
+    }
+    
+    private List<Donor> readDonors(PreparedStatement stmt) throws SQLException {
+        List<Donor> donors = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                donors.add(mapResultSetToDonor(rs));
+            }
+        }
+        return donors;
+    }
+    
+    /**
+     * Stream all active donors, e.g. to build the resident DonorIndex
+     * @param consumer Receives each donor as it is read
+     * @return number of donors read, or -1 if the query failed
+     */
+    public int loadActiveDonors(Consumer<Donor> consumer) {
+        String sql = "SELECT * FROM donors WHERE is_active = true";
+        int count = 0;
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            
+            // Ask MySQL Connector/J to stream rows instead of buffering the table
+            stmt.setFetchSize(Integer.MIN_VALUE);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Donor donor = mapResultSetToDonor(rs);
-                    donors.add(donor);
+                    consumer.accept(mapResultSetToDonor(rs));
+                    count++;
                 }
             }
             
         } catch (SQLException e) {
-            System.err.println("Error finding eligible donors: " + e.getMessage());
+            System.err.println("Error loading active donors: " + e.getMessage());
+            return -1;
         }
         
-        return donors;
+        return count;
     }
     
     /**
@@ -207,7 +399,10 @@ public class DonorDAO {
             stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(3, donorId);
             
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                DonorIndex.getInstance().updateLastDonationDate(donorId, donationDate);
+                return true;
+            }
             
         } catch (SQLException e) {
             System.err.println("Error updating last donation date: " + e.getMessage());
@@ -226,6 +421,8 @@ public class DonorDAO {
                     "address = ?, city = ?, state = ?, zip_code = ?, latitude = ?, " +
                     "longitude = ?, updated_at = ? WHERE donor_id = ?";
         
+        geocode(donor);
+        
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
@@ -241,7 +438,10 @@ public class DonorDAO {
             stmt.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setInt(11, donor.getDonorId());
             
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                DonorIndex.getInstance().updateProfile(donor);
+                return true;
+            }
             
         } catch (SQLException e) {
             System.err.println("Error updating donor: " + e.getMessage());
@@ -250,6 +450,18 @@ public class DonorDAO {
         return false;
     }
     
+    /**
+     * Place a donor at the centroid of their ZIP code, if it is known;
+     * otherwise the coordinates are stored as given
+     */
+    private void geocode(Donor donor) {
+        double[] location = ZipCodeGeocoder.getInstance().locate(donor.getZipCode());
+        if (location != null) {
+            donor.setLatitude(location[0]);
+            donor.setLongitude(location[1]);
+        }
+    }
+    
     /**
      * Check if email already exists
      * @param email Email to check
@@ -311,61 +523,4 @@ public class DonorDAO {
         
         return donor;
     }
-    
-    /**
-     * Get compatible blood types for a given blood type
-     * @param bloodType Blood type to find compatible types for
-     * @return List of compatible blood types
-     */
-    private List<String> getCompatibleBloodTypes(String bloodType) {
-        List<String> compatible = new ArrayList<>();
-        
-        switch (bloodType.toUpperCase()) {
-            case "A+":
-                compatible.add("A+");
-                compatible.add("A-");
-                compatible.add("O+");
-                compatible.add("O-");
-                break;
-            case "A-":
-                compatible.add("A-");
-                compatible.add("O-");
-                break;
-            case "B+":
-                compatible.add("B+");
-                compatible.add("B-");
-                compatible.add("O+");
-                compatible.add("O-");
-                break;
-            case "B-":
-                compatible.add("B-");
-                compatible.add("O-");
-                break;
-            case "AB+":
-                compatible.add("A+");
-                compatible.add("A-");
-                compatible.add("B+");
-                compatible.add("B-");
-                compatible.add("AB+");
-                compatible.add("AB-");
-                compatible.add("O+");
-                compatible.add("O-");
-                break;
-            case "AB-":
-                compatible.add("A-");
-                compatible.add("B-");
-                compatible.add("AB-");
-                compatible.add("O-");
-                break;
-            case "O+":
-                compatible.add("O+");
-                compatible.add("O-");
-                break;
-            case "O-":
-                compatible.add("O-");
-                break;
-        }
-        
-        return compatible;
-    }
 }
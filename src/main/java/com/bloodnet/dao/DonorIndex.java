@@ -0,0 +1,398 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.Donor;
+import com.bloodnet.util.BloodTypeUtil;
+import com.bloodnet.util.EligibilityCalendar;
+import com.bloodnet.util.GeoGridIndex;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resident Donor Index for BloodNet Application
+ * Keeps active donors in memory so that donor searches do not query MySQL.
+ * Donor ids are partitioned into one bitset per blood group and one per
+ * city, so a compatibility search is a union of group bitsets intersected
+ * with the city bitset; radius searches go through a geo grid instead.
+ * Built from the donors table at startup and kept fresh by DonorDAO writes.
+ * Cached donors are copies without password hash or salt.
+ */
+public class DonorIndex {
+
+    private static final DonorIndex INSTANCE = new DonorIndex();
+
+    private static final double GRID_CELL_DEGREES = 0.1; // about 11 km
+    private final ConcurrentHashMap<Integer, Donor> donors = new ConcurrentHashMap<>();
+    private final GeoGridIndex geoIndex = new GeoGridIndex(GRID_CELL_DEGREES);
+    private final EligibilityCalendar eligibilityCalendar = new EligibilityCalendar();
+    private final BitSet[] groupMembers = new BitSet[BloodTypeUtil.GROUP_COUNT];
+    private final Map<String, BitSet> cityMembers = new HashMap<>();
+    private final ReentrantReadWriteLock membershipLock = new ReentrantReadWriteLock();
+    private final Set<Integer> updatedWhileLoading = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading = false;
+    private volatile boolean loaded = false;
+
+    private DonorIndex() {
+        for (int group = 0; group < groupMembers.length; group++) {
+            groupMembers[group] = new BitSet();
+        }
+    }
+
+    public static DonorIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load all active donors from the database
+     * Donors written while the load runs are kept in their newer state:
+     * an update to a donor the load has not reached yet cannot be applied to
+     * it, so the donor's streamed row is skipped and the donor is read again
+     * once the stream is done.
+     * @param donorDAO DAO used to stream the donors table
+     * @return number of donors loaded
+     */
+    public int load(DonorDAO donorDAO) {
+        long start = System.currentTimeMillis();
+        loading = true;
+        int count;
+        try {
+            count = donorDAO.loadActiveDonors(donor -> {
+                if (updatedWhileLoading.contains(donor.getDonorId())) {
+                    return;
+                }
+                Donor copy = copyOf(donor);
+                if (donors.putIfAbsent(copy.getDonorId(), copy) == null) {
+                    index(copy, null);
+                }
+            });
+            reloadUpdated(donorDAO);
+        } finally {
+            loading = false;
+            updatedWhileLoading.clear();
+        }
+
+        if (count >= 0) {
+            loaded = true;
+            System.out.println("Donor index loaded " + count + " donors (" + geoIndex.size()
+                             + " geocoded) in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return count;
+    }
+
+    /**
+     * Read the donors updated during the load again, until none are left
+     * An update that lands after its donor was read again finds the donor
+     * in the index and is applied to it directly.
+     */
+    private void reloadUpdated(DonorDAO donorDAO) {
+        while (!updatedWhileLoading.isEmpty()) {
+            for (Integer donorId : new ArrayList<>(updatedWhileLoading)) {
+                updatedWhileLoading.remove(donorId);
+
+                Donor donor = donorDAO.getDonorById(donorId);
+                if (donor != null && donor.isActive()) {
+                    Donor copy = copyOf(donor);
+                    index(copy, donors.put(donorId, copy));
+                } else {
+                    drop(donorId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the index reflects the full donors table
+     * @return true once the initial load has completed
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return donors.size();
+    }
+
+    /**
+     * Get the eligibility calendar of the indexed donors
+     * @return calendar tracking every donor in this index
+     */
+    public EligibilityCalendar getEligibilityCalendar() {
+        return eligibilityCalendar;
+    }
+
+    /**
+     * Get a cached donor
+     * @param donorId Donor ID
+     * @return cached donor or null if not indexed
+     */
+    public Donor getDonor(int donorId) {
+        return donors.get(donorId);
+    }
+
+    /**
+     * Add or replace a donor after it was written to the database
+     * @param donor Donor with a generated ID
+     */
+    void put(Donor donor) {
+        if (donor.getDonorId() <= 0) {
+            return;
+        }
+
+        if (!donor.isActive()) {
+            remove(donor.getDonorId());
+            return;
+        }
+
+        Donor copy = copyOf(donor);
+        index(copy, donors.put(copy.getDonorId(), copy));
+    }
+
+    /**
+     * Apply a profile update to a cached donor
+     * @param donor Donor carrying the fields written by DonorDAO.updateDonor
+     */
+    void updateProfile(Donor donor) {
+        if (loading) {
+            updatedWhileLoading.add(donor.getDonorId());
+        }
+        donors.computeIfPresent(donor.getDonorId(), (id, cached) -> {
+            Donor copy = copyOf(cached);
+            copy.setFirstName(donor.getFirstName());
+            copy.setLastName(donor.getLastName());
+            copy.setPhone(donor.getPhone());
+            copy.setAddress(donor.getAddress());
+            copy.setCity(donor.getCity());
+            copy.setState(donor.getState());
+            copy.setZipCode(donor.getZipCode());
+            copy.setLatitude(donor.getLatitude());
+            copy.setLongitude(donor.getLongitude());
+            index(copy, cached);
+            return copy;
+        });
+    }
+
+    /**
+     * Apply a new last donation date to a cached donor
+     * @param donorId Donor ID
+     * @param donationDate Date of donation
+     */
+    void updateLastDonationDate(int donorId, LocalDate donationDate) {
+        if (loading) {
+            updatedWhileLoading.add(donorId);
+        }
+        donors.computeIfPresent(donorId, (id, cached) -> {
+            Donor copy = copyOf(cached);
+            copy.setLastDonationDate(donationDate);
+            eligibilityCalendar.updateLastDonation(id, donationDate);
+            return copy;
+        });
+    }
+
+    /**
+     * Drop a donor from the index
+     * @param donorId Donor ID
+     */
+    void remove(int donorId) {
+        if (loading) {
+            updatedWhileLoading.add(donorId);
+        }
+        drop(donorId);
+    }
+
+    /**
+     * Find eligible donors in a city
+     * @param donorGroupMask Compatible donor groups from BloodTypeUtil
+     * @param city City
+     * @param state State
+     * @return eligible donors in donor ID order; the DonorRanker ranks them
+     */
+    List<Donor> findEligibleDonors(int donorGroupMask, String city, String state) {
+        BitSet candidates = new BitSet();
+
+        membershipLock.readLock().lock();
+        try {
+            BitSet inCity = cityMembers.get(cityKey(city, state));
+            if (inCity == null) {
+                return new ArrayList<>();
+            }
+
+            for (int group = 0; group < groupMembers.length; group++) {
+                if ((donorGroupMask & (1 << group)) != 0) {
+                    candidates.or(groupMembers[group]);
+                }
+            }
+            candidates.and(inCity);
+        } finally {
+            membershipLock.readLock().unlock();
+        }
+        eligibilityCalendar.retainEligibleToDonate(candidates);
+
+        List<Donor> eligible = new ArrayList<>(candidates.cardinality());
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            Donor donor = donors.get(id);
+            if (donor != null) {
+                eligible.add(donor);
+            }
+        }
+
+        return eligible;
+    }
+
+    /**
+     * Locate a city at the mean position of its geocoded donors
+     * Donors are placed at their ZIP code's centroid, so this approximates
+     * the middle of the ZIP codes the city's donors live in.
+     * @param city City
+     * @param state State
+     * @return {latitude, longitude}, or null if no donor of the city is geocoded
+     */
+    double[] locateCity(String city, String state) {
+        BitSet inCity;
+        membershipLock.readLock().lock();
+        try {
+            BitSet members = cityMembers.get(cityKey(city, state));
+            if (members == null) {
+                return null;
+            }
+            inCity = (BitSet) members.clone();
+        } finally {
+            membershipLock.readLock().unlock();
+        }
+
+        double latitudeSum = 0;
+        double longitudeSum = 0;
+        int located = 0;
+        for (int id = inCity.nextSetBit(0); id >= 0; id = inCity.nextSetBit(id + 1)) {
+            Donor donor = donors.get(id);
+            if (donor != null && GeoGridIndex.isGeocoded(donor.getLatitude(), donor.getLongitude())) {
+                latitudeSum += donor.getLatitude();
+                longitudeSum += donor.getLongitude();
+                located++;
+            }
+        }
+        return located == 0 ? null : new double[] {latitudeSum / located, longitudeSum / located};
+    }
+
+    /**
+     * Find eligible donors within a radius of a point
+     * @param donorGroupMask Compatible donor groups from BloodTypeUtil
+     * @param latitude Search center latitude
+     * @param longitude Search center longitude
+     * @param maxDistance Maximum distance in kilometers
+     * @return eligible donors in grid order; the DonorRanker ranks them
+     */
+    List<Donor> findEligibleDonorsNear(int donorGroupMask, double latitude,
+                                       double longitude, double maxDistance) {
+
+        GeoGridIndex.Hits hits = geoIndex.search(latitude, longitude, maxDistance);
+
+        List<Donor> eligible = new ArrayList<>(hits.size());
+        for (int position = 0; position < hits.size(); position++) {
+            Donor donor = donors.get(hits.getId(position));
+            if (donor != null && BloodTypeUtil.matches(donorGroupMask, donor.getBloodType())
+                    && eligibilityCalendar.isEligibleToDonate(donor.getDonorId())) {
+                eligible.add(donor);
+            }
+        }
+
+        return eligible;
+    }
+
+    /**
+     * Move a donor's ids to the bitsets and grid cell of its current state
+     * @param donor Current state
+     * @param previous Previously indexed state, or null
+     */
+    private void index(Donor donor, Donor previous) {
+        membershipLock.writeLock().lock();
+        try {
+            if (previous != null) {
+                clearMembership(previous);
+            }
+            int id = donor.getDonorId();
+            int group = BloodTypeUtil.groupOf(donor.getBloodType());
+            if (group >= 0) {
+                groupMembers[group].set(id);
+            }
+            cityMembers.computeIfAbsent(cityKey(donor.getCity(), donor.getState()), key -> new BitSet()).set(id);
+        } finally {
+            membershipLock.writeLock().unlock();
+        }
+        geoIndex.put(donor.getDonorId(), donor.getLatitude(), donor.getLongitude());
+        eligibilityCalendar.update(donor.getDonorId(), donor.getDateOfBirth(), donor.getLastDonationDate());
+    }
+
+    private void drop(int donorId) {
+        Donor removed = donors.remove(donorId);
+        if (removed != null) {
+            unindex(removed);
+        }
+    }
+
+    private void unindex(Donor donor) {
+        membershipLock.writeLock().lock();
+        try {
+            clearMembership(donor);
+        } finally {
+            membershipLock.writeLock().unlock();
+        }
+        geoIndex.remove(donor.getDonorId());
+        eligibilityCalendar.remove(donor.getDonorId());
+    }
+
+    private void clearMembership(Donor donor) {
+        int id = donor.getDonorId();
+        int group = BloodTypeUtil.groupOf(donor.getBloodType());
+        if (group >= 0) {
+            groupMembers[group].clear(id);
+        }
+        String key = cityKey(donor.getCity(), donor.getState());
+        BitSet inCity = cityMembers.get(key);
+        if (inCity != null) {
+            inCity.clear(id);
+            if (inCity.isEmpty()) {
+                cityMembers.remove(key);
+            }
+        }
+    }
+
+    /**
+     * City lookup key, case-insensitive like the default MySQL collation
+     */
+    private static String cityKey(String city, String state) {
+        return (city == null ? "" : city.trim().toLowerCase()) + "|"
+             + (state == null ? "" : state.trim().toLowerCase());
+    }
+
+    /**
+     * Copy a donor without credentials
+     */
+    private static Donor copyOf(Donor donor) {
+        Donor copy = new Donor();
+        copy.setDonorId(donor.getDonorId());
+        copy.setFirstName(donor.getFirstName());
+        copy.setLastName(donor.getLastName());
+        copy.setEmail(donor.getEmail());
+        copy.setPhone(donor.getPhone());
+        copy.setDateOfBirth(donor.getDateOfBirth());
+        copy.setBloodType(donor.getBloodType());
+        copy.setLastDonationDate(donor.getLastDonationDate());
+        copy.setAddress(donor.getAddress());
+        copy.setCity(donor.getCity());
+        copy.setState(donor.getState());
+        copy.setZipCode(donor.getZipCode());
+        copy.setLatitude(donor.getLatitude());
+        copy.setLongitude(donor.getLongitude());
+        copy.setActive(donor.isActive());
+        copy.setCreatedAt(donor.getCreatedAt());
+        copy.setUpdatedAt(donor.getUpdatedAt());
+        return copy;
+    }
+}
@@ -0,0 +1,276 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.DonorMatch;
+import com.bloodnet.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Donor Match Data Access Object for BloodNet Application
+ * Handles contacting matched donors in waves and recording their responses.
+ * Matches themselves are written by the {@link DonorMatchWriter}.
+ */
+public class DonorMatchDAO {
+
+    /**
+     * Receives one contacted donor that has not responded yet
+     */
+    @FunctionalInterface
+    public interface OutstandingContact {
+        void accept(int requestId, int donorId, LocalDateTime contactedAt, String urgency);
+    }
+
+    /**
+     * Get the best-ranked matches of a request that were not contacted yet
+     * @param requestId Blood request ID
+     * @param limit Maximum number of matches
+     * @return matches, highest score first
+     */
+    public List<DonorMatch> getNextWave(int requestId, int limit) {
+        String sql = "SELECT match_id, donor_id, match_score, distance_km, response_status FROM donor_matches " +
+                    "WHERE request_id = ? AND is_contacted = FALSE AND response_status = 'pending' " +
+                    "ORDER BY match_score DESC, distance_km, donor_id LIMIT ?";
+        List<DonorMatch> matches = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, requestId);
+            stmt.setInt(2, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    DonorMatch match = new DonorMatch(requestId, rs.getInt("donor_id"),
+                                                      rs.getInt("match_score"), rs.getDouble("distance_km"));
+                    match.setMatchId(rs.getInt("match_id"));
+                    match.setResponseStatus(rs.getString("response_status"));
+                    matches.add(match);
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error getting next donor wave: " + e.getMessage());
+        }
+
+        return matches;
+    }
+
+    /**
+     * Mark a wave of matches as contacted now
+     * Matches that were contacted already, e.g. by a wave picked at the same
+     * time, are left alone and not returned.
+     * @return the matches this call marked, or null if nothing was committed
+     */
+    public List<DonorMatch> markContacted(int requestId, List<DonorMatch> wave, LocalDateTime contactedAt) {
+        String sql = "UPDATE donor_matches SET is_contacted = TRUE, contacted_at = ? " +
+                    "WHERE request_id = ? AND donor_id = ? AND is_contacted = FALSE";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (DonorMatch match : wave) {
+                    stmt.setTimestamp(1, Timestamp.valueOf(contactedAt));
+                    stmt.setInt(2, requestId);
+                    stmt.setInt(3, match.getDonorId());
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                conn.commit();
+
+                // A driver that cannot tell counts as marked rather than silently skipping a donor
+                List<DonorMatch> marked = new ArrayList<>(wave.size());
+                for (int i = 0; i < wave.size(); i++) {
+                    if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                        marked.add(wave.get(i));
+                    }
+                }
+                return marked;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error marking " + wave.size() + " donor(s) contacted: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Mark contacted donors that did not answer in time as no_response
+     * Donors who answered in the meantime keep their answer.
+     * @param keys Request and donor IDs, packed by {@link #key}
+     * @return true if the batch was committed
+     */
+    public boolean markNoResponse(List<Long> keys) {
+        String sql = "UPDATE donor_matches SET response_status = 'no_response', response_at = CURRENT_TIMESTAMP " +
+                    "WHERE request_id = ? AND donor_id = ? AND response_status = 'pending'";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            try {
+                for (long key : keys) {
+                    stmt.setInt(1, requestIdOf(key));
+                    stmt.setInt(2, donorIdOf(key));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+                return true;
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error marking " + keys.size() + " donor(s) as not responding: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Record a donor's answer to a request they were contacted about
+     * A late answer replaces no_response.
+     * @param status "accepted" or "declined"
+     * @return true if the donor was contacted about the request and the answer was stored
+     */
+    public boolean recordResponse(int requestId, int donorId, String status) {
+        String sql = "UPDATE donor_matches SET response_status = ?, response_at = CURRENT_TIMESTAMP " +
+                    "WHERE request_id = ? AND donor_id = ? AND is_contacted = TRUE " +
+                    "AND response_status IN ('pending', 'no_response')";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, status);
+            stmt.setInt(2, requestId);
+            stmt.setInt(3, donorId);
+            return stmt.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            System.err.println("Error recording donor response: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Count the donors who accepted a request
+     * @return count, or -1 on error
+     */
+    public int countAccepted(int requestId) {
+        String sql = "SELECT COUNT(*) FROM donor_matches WHERE request_id = ? AND response_status = 'accepted'";
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, requestId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error counting accepted donors: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Stream the contacted donors of pending requests that have not answered yet
+     * @return number of contacts, or -1 on error
+     */
+    public int loadOutstandingContacts(OutstandingContact consumer) {
+        String sql = "SELECT dm.request_id, dm.donor_id, dm.contacted_at, br.urgency FROM donor_matches dm " +
+                    "JOIN blood_requests br ON br.request_id = dm.request_id " +
+                    "WHERE br.status = 'pending' AND dm.is_contacted = TRUE AND dm.response_status = 'pending'";
+        int count = 0;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            // Ask MySQL Connector/J to stream rows instead of buffering the table
+            stmt.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp contactedAt = rs.getTimestamp("contacted_at");
+                    consumer.accept(rs.getInt("request_id"), rs.getInt("donor_id"),
+                                    contactedAt != null ? contactedAt.toLocalDateTime() : LocalDateTime.now(),
+                                    rs.getString("urgency"));
+                    count++;
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error loading outstanding donor contacts: " + e.getMessage());
+            return -1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Stream the pending requests that still have uncontacted matches but
+     * no contacted donor left to wait for
+     * @return number of requests, or -1 on error
+     */
+    public int loadRequestsAwaitingWave(IntConsumer consumer) {
+        String sql = "SELECT dm.request_id FROM donor_matches dm " +
+                    "JOIN blood_requests br ON br.request_id = dm.request_id " +
+                    "WHERE br.status = 'pending' GROUP BY dm.request_id " +
+                    "HAVING SUM(CASE WHEN dm.is_contacted = TRUE AND dm.response_status = 'pending' THEN 1 ELSE 0 END) = 0 " +
+                    "AND SUM(CASE WHEN dm.is_contacted = FALSE AND dm.response_status = 'pending' THEN 1 ELSE 0 END) > 0";
+        int count = 0;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getInt(1));
+                    count++;
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error loading requests awaiting a donor wave: " + e.getMessage());
+            return -1;
+        }
+
+        return count;
+    }
+
+    /**
+     * Pack a request and donor ID into one key
+     */
+    public static long key(int requestId, int donorId) {
+        return ((long) requestId << 32) | (donorId & 0xFFFFFFFFL);
+    }
+
+    public static int requestIdOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int donorIdOf(long key) {
+        return (int) key;
+    }
+}
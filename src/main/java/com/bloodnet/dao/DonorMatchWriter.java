@@ -0,0 +1,139 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.DonorMatch;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.DBConnection;
+import com.bloodnet.util.LatencyHistogram;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Donor Match Writer for BloodNet Application
+ * Persists the matches of a blood request in one transaction, as JDBC
+ * batches of up to {@code matching.writeBatchSize} rows. With
+ * rewriteBatchedStatements on the connection URL, Connector/J sends each
+ * batch as a single multi-row INSERT, so thousands of candidates cost a
+ * handful of round-trips. Rows are upserted on the unique_request_donor
+ * key: re-matching a request refreshes score and distance but keeps the
+ * donor's contact and response state.
+ */
+public class DonorMatchWriter {
+
+    private static final DonorMatchWriter INSTANCE = new DonorMatchWriter();
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO donor_matches (request_id, donor_id, match_score, distance_km) VALUES (?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE match_score = VALUES(match_score), distance_km = VALUES(distance_km)";
+
+    private final int batchSize;
+    private final LongAdder requestsWritten = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram batchMicros = new LatencyHistogram();
+    private final LatencyHistogram requestMillis = new LatencyHistogram();
+
+    private DonorMatchWriter() {
+        batchSize = Math.max(1, AppConfig.getInt("matching.writeBatchSize", 1000));
+    }
+
+    public static DonorMatchWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Write the matches of one blood request
+     * All batches commit together; on failure none of them is kept.
+     * @param requestId Blood request ID
+     * @param matches Matches of that request
+     * @return true if the matches were committed
+     */
+    public boolean write(int requestId, List<DonorMatch> matches) {
+        if (matches.isEmpty()) {
+            return true;
+        }
+
+        long start = System.nanoTime();
+        int batches = 0;
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+
+            conn.setAutoCommit(false);
+            try {
+                int buffered = 0;
+                for (DonorMatch match : matches) {
+                    stmt.setInt(1, requestId);
+                    stmt.setInt(2, match.getDonorId());
+                    stmt.setInt(3, match.getMatchScore());
+                    stmt.setDouble(4, match.getDistanceKm());
+                    stmt.addBatch();
+
+                    if (++buffered == batchSize) {
+                        executeBatch(stmt);
+                        batches++;
+                        buffered = 0;
+                    }
+                }
+                if (buffered > 0) {
+                    executeBatch(stmt);
+                    batches++;
+                }
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            failures.increment();
+            System.err.println("Error writing " + matches.size() + " donor match(es) for blood request "
+                             + requestId + ": " + e.getMessage());
+            return false;
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        requestMillis.record(elapsedMs);
+        requestsWritten.increment();
+        rowsWritten.add(matches.size());
+        System.out.println("Wrote " + matches.size() + " donor match(es) for blood request " + requestId
+                         + " in " + batches + " batch(es), " + elapsedMs + "ms");
+
+        return true;
+    }
+
+    private void executeBatch(PreparedStatement stmt) throws SQLException {
+        long start = System.nanoTime();
+        stmt.executeBatch();
+        batchMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        batchesWritten.increment();
+    }
+
+    /**
+     * Build a point-in-time view of the writer for the metrics endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("requests", requestsWritten.sum());
+        counters.put("rows", rowsWritten.sum());
+        counters.put("batches", batchesWritten.sum());
+        counters.put("failures", failures.sum());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("batchSize", batchSize);
+        snapshot.put("counters", counters);
+        snapshot.put("batchMicros", batchMicros.summary());
+        snapshot.put("requestMillis", requestMillis.summary());
+        return snapshot;
+    }
+}
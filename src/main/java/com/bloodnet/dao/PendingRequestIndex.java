@@ -0,0 +1,179 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.BloodRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Pending Request Index for BloodNet Application
+ * Keeps the pending blood requests in memory, ordered by urgency, then
+ * required date, then request date, in a concurrent skip list. The most
+ * urgent request is found in O(log n) and the top of the list is read
+ * without the per-query sort of pending_requests_view. Built from
+ * blood_requests at startup and kept fresh by BloodRequestDAO submissions
+ * and status changes.
+ */
+public class PendingRequestIndex {
+
+    // Most urgent first; without a required date a request sorts after those with one
+    private static final Comparator<Entry> URGENCY_ORDER = Comparator
+        .comparingInt((Entry entry) -> -entry.urgencyPriority)
+        .thenComparing(entry -> entry.requiredDate, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(entry -> entry.requestDate, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparingInt(entry -> entry.requestId);
+
+    private static final PendingRequestIndex INSTANCE = new PendingRequestIndex();
+
+    private final ConcurrentSkipListSet<Entry> queue = new ConcurrentSkipListSet<>(URGENCY_ORDER);
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Integer> closedWhileLoading = ConcurrentHashMap.newKeySet();
+    private volatile boolean loading = false;
+    private volatile boolean loaded = false;
+
+    private PendingRequestIndex() {}
+
+    public static PendingRequestIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load all pending requests from the database
+     * Requests submitted or closed while the load runs keep their newer state.
+     * @param bloodRequestDAO DAO used to stream the pending requests
+     * @return number of requests loaded
+     */
+    public int load(BloodRequestDAO bloodRequestDAO) {
+        long start = System.currentTimeMillis();
+        loading = true;
+        int count;
+        try {
+            count = bloodRequestDAO.loadPendingRequests(request -> {
+                if (!closedWhileLoading.contains(request.getRequestId())) {
+                    entries.computeIfAbsent(request.getRequestId(), id -> {
+                        Entry entry = new Entry(request);
+                        queue.add(entry);
+                        return entry;
+                    });
+                }
+            });
+        } finally {
+            loading = false;
+            closedWhileLoading.clear();
+        }
+
+        if (count >= 0) {
+            loaded = true;
+            System.out.println("Pending request index loaded " + count + " requests in "
+                             + (System.currentTimeMillis() - start) + "ms");
+        }
+        return count;
+    }
+
+    /**
+     * Check whether the index reflects all pending requests
+     * @return true once the initial load has completed
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Add or replace a request after it was written to the database
+     * Requests that are no longer pending are removed instead.
+     * @param request Request with its ID and current status
+     */
+    public void put(BloodRequest request) {
+        if (request.getStatus() != null && !"pending".equals(request.getStatus())) {
+            remove(request.getRequestId());
+            return;
+        }
+
+        Entry entry = new Entry(request);
+        entries.compute(request.getRequestId(), (id, previous) -> {
+            if (previous != null) {
+                queue.remove(previous);
+            }
+            queue.add(entry);
+            return entry;
+        });
+    }
+
+    /**
+     * Remove a request that was matched, fulfilled or cancelled
+     * @param requestId Request ID
+     */
+    public void remove(int requestId) {
+        if (loading) {
+            closedWhileLoading.add(requestId);
+        }
+        entries.computeIfPresent(requestId, (id, previous) -> {
+            queue.remove(previous);
+            return null;
+        });
+    }
+
+    /**
+     * Get the most urgent pending request
+     * @return request, or null if none is pending
+     */
+    public BloodRequest first() {
+        Iterator<Entry> it = queue.iterator();
+        return it.hasNext() ? it.next().request : null;
+    }
+
+    /**
+     * Get the most urgent pending requests
+     * @param limit Maximum number of requests
+     * @return requests, most urgent first
+     */
+    public List<BloodRequest> top(int limit) {
+        List<BloodRequest> requests = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry entry : queue) {
+            if (requests.size() >= limit) {
+                break;
+            }
+            requests.add(entry.request);
+        }
+        return requests;
+    }
+
+    /**
+     * Get a pending request
+     * @param requestId Request ID
+     * @return request, or null if it is not pending
+     */
+    public BloodRequest get(int requestId) {
+        Entry entry = entries.get(requestId);
+        return entry != null ? entry.request : null;
+    }
+
+    /**
+     * A request with the sort keys it had when it was indexed
+     */
+    private static final class Entry {
+        private final BloodRequest request;
+        private final int requestId;
+        private final int urgencyPriority;
+        private final LocalDateTime requiredDate;
+        private final LocalDateTime requestDate;
+
+        Entry(BloodRequest request) {
+            this.request = request;
+            this.requestId = request.getRequestId();
+            this.urgencyPriority = request.getUrgency() != null ? request.getUrgencyPriority() : 0;
+            this.requiredDate = request.getRequiredDate();
+            this.requestDate = request.getRequestDate();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.service.UnreadCounterService;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read Receipt Tracker for BloodNet Application
+ * Coalesces read receipts: each call only raises an in-memory high-water
+ * mark per (request, reader), and a background thread periodically writes
+ * all marks in one transaction. Per conversation it reads the unread
+ * messages once, works out which of them each reader's mark covers, and
+ * sends one set-based UPDATE per mark, all marks in a single JDBC batch.
+ * A client that reports reads on every view or poll costs nothing until the
+ * next flush. Each flush also reports who wrote the marked messages to the
+ * unread counters.
+ */
+public class ReadReceiptTracker {
+
+    private static final ReadReceiptTracker INSTANCE = new ReadReceiptTracker();
+
+    private static final String UNREAD_SQL = "SELECT message_id, sender_id, sender_type FROM chat_messages " +
+                                             "WHERE request_id = ? AND message_id <= ? AND is_read = FALSE " +
+                                             "ORDER BY message_id FOR UPDATE";
+
+    private static final String UPDATE_SQL = "UPDATE chat_messages SET is_read = TRUE, read_at = CURRENT_TIMESTAMP " +
+                                             "WHERE request_id = ? AND message_id <= ? AND is_read = FALSE " +
+                                             "AND NOT (sender_id = ? AND sender_type = ?)";
+
+    private final Map<Reader, Integer> highWaterMarks = new ConcurrentHashMap<>();
+    private long flushIntervalMs;
+    private volatile boolean running = false;
+    private Thread flushThread;
+
+    private ReadReceiptTracker() {}
+
+    public static ReadReceiptTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start the flush thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        flushIntervalMs = AppConfig.getLong("chat.readReceipts.flushIntervalMs", 1000);
+        running = true;
+
+        flushThread = new Thread(this::flushLoop, "bloodnet-read-receipts");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Stop the flush thread and write the outstanding receipts
+     */
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = flushThread;
+            flushThread = null;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Receipts that raced with shutdown
+        flush();
+    }
+
+    /**
+     * Record that a reader has seen a conversation up to a message
+     * Marks below the reader's current mark are ignored.
+     * @param requestId Blood request ID
+     * @param readerId ID of the user reading
+     * @param readerType Type of the user reading ("donor" or "hospital")
+     * @param upToMessageId Newest message the reader has seen
+     */
+    void record(int requestId, int readerId, String readerType, int upToMessageId) {
+        highWaterMarks.merge(new Reader(requestId, readerId, readerType), upToMessageId, Math::max);
+
+        if (!running) {
+            flush();
+        }
+    }
+
+    /**
+     * Number of receipts waiting to be written
+     */
+    public int getPendingCount() {
+        return highWaterMarks.size();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                // Shutdown requested; the caller flushes
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Write all current marks in one transaction
+     */
+    private synchronized void flush() {
+        if (highWaterMarks.isEmpty()) {
+            return;
+        }
+
+        // Take each mark only if it was not raised meanwhile; a raised mark stays for the next flush
+        Map<Integer, List<Reader>> byRequest = new HashMap<>();
+        Map<Reader, Integer> marks = new HashMap<>();
+        for (Map.Entry<Reader, Integer> entry : highWaterMarks.entrySet()) {
+            if (highWaterMarks.remove(entry.getKey(), entry.getValue())) {
+                byRequest.computeIfAbsent(entry.getKey().requestId, id -> new ArrayList<>()).add(entry.getKey());
+                marks.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (marks.isEmpty()) {
+            return;
+        }
+
+        List<Reader> readers = new ArrayList<>(marks.size());
+        List<List<SenderCount>> bySender = new ArrayList<>(marks.size());
+        int[] counts;
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement select = conn.prepareStatement(UNREAD_SQL);
+                 PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+
+                for (Map.Entry<Integer, List<Reader>> conversation : byRequest.entrySet()) {
+                    int requestId = conversation.getKey();
+                    int highest = 0;
+                    for (Reader reader : conversation.getValue()) {
+                        highest = Math.max(highest, marks.get(reader));
+                    }
+
+                    // Unread messages any of this conversation's marks can reach, oldest first
+                    List<UnreadMessage> unread = new ArrayList<>();
+                    select.setInt(1, requestId);
+                    select.setInt(2, highest);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            unread.add(new UnreadMessage(rs.getInt(1), rs.getInt(2), rs.getString(3)));
+                        }
+                    }
+
+                    // Readers of one conversation can overlap; each update marks what the previous left
+                    for (Reader reader : conversation.getValue()) {
+                        int mark = marks.get(reader);
+                        Map<String, SenderCount> senders = new LinkedHashMap<>();
+                        for (UnreadMessage message : unread) {
+                            if (message.messageId > mark) {
+                                break;
+                            }
+                            if (!message.read && !(message.senderId == reader.readerId
+                                                   && message.senderType.equals(reader.readerType))) {
+                                message.read = true;
+                                senders.computeIfAbsent(message.senderId + ":" + message.senderType,
+                                        key -> new SenderCount(message.senderId, message.senderType)).count++;
+                            }
+                        }
+                        readers.add(reader);
+                        bySender.add(new ArrayList<>(senders.values()));
+
+                        bindReceipt(stmt, reader, mark);
+                        stmt.addBatch();
+                    }
+                }
+
+                counts = stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Error writing " + marks.size() + " read receipt(s): " + e.getMessage());
+            // Put the marks back so the next flush retries them
+            for (Map.Entry<Reader, Integer> entry : marks.entrySet()) {
+                highWaterMarks.merge(entry.getKey(), entry.getValue(), Math::max);
+            }
+            return;
+        }
+
+        ChatMessageCache cache = ChatMessageCache.getInstance();
+        UnreadCounterService unreadCounters = UnreadCounterService.getInstance();
+        for (int i = 0; i < readers.size(); i++) {
+            Reader reader = readers.get(i);
+
+            int expected = 0;
+            for (SenderCount sender : bySender.get(i)) {
+                expected += sender.count;
+            }
+            // The driver may not report per-statement counts; the rows were locked, so trust the prediction
+            int marked = counts[i] == Statement.SUCCESS_NO_INFO ? expected : counts[i];
+
+            // A differing row count means another writer got in between; reconciliation corrects it
+            if (marked == expected) {
+                for (SenderCount sender : bySender.get(i)) {
+                    unreadCounters.messagesRead(reader.requestId, sender.senderId, sender.senderType, sender.count);
+                }
+            }
+
+            if (marked > 0) {
+                cache.markRead(reader.requestId, reader.readerId, reader.readerType, marks.get(reader), marked);
+            }
+        }
+    }
+
+    private static void bindReceipt(PreparedStatement stmt, Reader reader, int upToMessageId) throws SQLException {
+        stmt.setInt(1, reader.requestId);
+        stmt.setInt(2, upToMessageId);
+        stmt.setInt(3, reader.readerId);
+        stmt.setString(4, reader.readerType);
+    }
+
+    /**
+     * Number of messages of one sender marked by a receipt
+     */
+    private static final class SenderCount {
+        private final int senderId;
+        private final String senderType;
+        private int count;
+
+        SenderCount(int senderId, String senderType) {
+            this.senderId = senderId;
+            this.senderType = senderType;
+        }
+    }
+
+    /**
+     * An unread message of a conversation being flushed
+     */
+    private static final class UnreadMessage {
+        private final int messageId;
+        private final int senderId;
+        private final String senderType;
+        private boolean read;
+
+        UnreadMessage(int messageId, int senderId, String senderType) {
+            this.messageId = messageId;
+            this.senderId = senderId;
+            this.senderType = senderType;
+        }
+    }
+
+    /**
+     * A reader of one conversation
+     */
+    private static final class Reader {
+        private final int requestId;
+        private final int readerId;
+        private final String readerType;
+
+        Reader(int requestId, int readerId, String readerType) {
+            this.requestId = requestId;
+            this.readerId = readerId;
+            this.readerType = readerType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Reader)) {
+                return false;
+            }
+            Reader other = (Reader) o;
+            return requestId == other.requestId && readerId == other.readerId
+                && readerType.equals(other.readerType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(requestId, readerId, readerType);
+        }
+    }
+}
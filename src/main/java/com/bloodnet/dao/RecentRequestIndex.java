@@ -0,0 +1,185 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.util.AppConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent Request Index for BloodNet Application
+ * Remembers the blood requests submitted within the duplicate window under
+ * their client idempotency key and their fingerprint (patient, blood type,
+ * hospital). A double-click or a client retry finds the first submission
+ * here and gets its request ID back, so it never reaches MySQL or the donor
+ * matching behind it. A submission still being inserted is claimed too; a
+ * duplicate arriving meanwhile waits for its ID instead of inserting again.
+ */
+public class RecentRequestIndex {
+
+    private static final RecentRequestIndex INSTANCE = new RecentRequestIndex();
+
+    private final long windowMs;
+    private final Map<String, Submission> submissions = new ConcurrentHashMap<>();
+    private volatile long lastSweepAt = System.currentTimeMillis();
+    private volatile boolean seeded = false;
+
+    private RecentRequestIndex() {
+        this(AppConfig.getLong("bloodRequests.duplicateWindowMs", 600000));
+    }
+
+    /**
+     * Index with the given duplicate window; the application uses {@link #getInstance}
+     */
+    RecentRequestIndex(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public static RecentRequestIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Length of the duplicate window in milliseconds
+     */
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * Claim the keys of a new submission
+     * Either all keys are claimed for the returned submission, which the
+     * caller must then {@link #complete} or {@link #release}, or an earlier
+     * submission within the window holds one of them and is returned. Keys
+     * are taken in sorted order so that overlapping claims cannot all lose.
+     * @param keys Idempotency and fingerprint keys of the submission
+     * @param claim New pending submission
+     * @return the earlier submission, or null if the keys were claimed
+     */
+    Submission claim(List<String> keys, Submission claim) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+
+        List<String> ordered = new ArrayList<>(keys);
+        Collections.sort(ordered);
+
+        List<String> claimed = new ArrayList<>(ordered.size());
+        for (String key : ordered) {
+            Submission existing = submissions.putIfAbsent(key, claim);
+            while (existing != null && existing.isExpired(now, windowMs)) {
+                existing = submissions.replace(key, existing, claim) ? null : submissions.putIfAbsent(key, claim);
+            }
+
+            if (existing != null) {
+                // Give back what was taken so far; the earlier submission answers for all of it
+                for (String taken : claimed) {
+                    submissions.remove(taken, claim);
+                }
+                // A duplicate may have found this claim on a key just given back
+                follow(claim, existing);
+                return existing;
+            }
+            claimed.add(key);
+        }
+        return null;
+    }
+
+    /**
+     * The claimed submission was inserted
+     */
+    void complete(Submission claim, int requestId) {
+        claim.requestId.complete(requestId);
+    }
+
+    /**
+     * The claimed submission was not inserted; its keys become free again
+     */
+    void release(List<String> keys, Submission claim, Throwable cause) {
+        for (String key : keys) {
+            submissions.remove(key, claim);
+        }
+        claim.requestId.completeExceptionally(cause);
+    }
+
+    /**
+     * Complete a lost claim with the outcome of the submission it lost to
+     */
+    private static void follow(Submission claim, Submission existing) {
+        existing.requestId.whenComplete((requestId, error) -> {
+            if (error != null) {
+                claim.requestId.completeExceptionally(error);
+            } else {
+                claim.requestId.complete(requestId);
+            }
+        });
+    }
+
+    /**
+     * Whether requests stored before the last restart have been added
+     */
+    boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Add a request stored before this node started
+     * Keys that are already claimed are left alone.
+     */
+    void seed(String key, int requestId, long submittedAt) {
+        Submission submission = new Submission(submittedAt);
+        submission.requestId.complete(requestId);
+        submissions.putIfAbsent(key, submission);
+    }
+
+    void markSeeded() {
+        seeded = true;
+    }
+
+    /**
+     * Number of keys currently remembered
+     */
+    public int size() {
+        return submissions.size();
+    }
+
+    /**
+     * Drop expired keys, at most once per window
+     */
+    private void sweep(long now) {
+        if (now - lastSweepAt < windowMs) {
+            return;
+        }
+        lastSweepAt = now;
+
+        for (Map.Entry<String, Submission> entry : submissions.entrySet()) {
+            if (entry.getValue().isExpired(now, windowMs)) {
+                // Only if no new submission took the key meanwhile
+                submissions.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * One submission: when it arrived and, once inserted, its request ID
+     */
+    static final class Submission {
+        private final long submittedAt;
+        private final CompletableFuture<Integer> requestId = new CompletableFuture<>();
+
+        Submission(long submittedAt) {
+            this.submittedAt = submittedAt;
+        }
+
+        CompletableFuture<Integer> getRequestId() {
+            return requestId;
+        }
+
+        boolean isExpired(long now, long windowMs) {
+            // A submission still being inserted never expires; its owner completes or releases it
+            return requestId.isDone() && now - submittedAt >= windowMs;
+        }
+    }
+}
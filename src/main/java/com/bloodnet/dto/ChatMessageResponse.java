@@ -0,0 +1,109 @@
+package com.bloodnet.dto;
+
+import com.bloodnet.model.ChatAttachment;
+import com.bloodnet.model.ChatMessage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Chat Message Response for BloodNet Application
+ * JSON view of a {@link ChatMessage} as returned by the chat API. Image and
+ * file messages show the file name as their text and describe the file in
+ * an "attachment" object.
+ */
+public final class ChatMessageResponse implements JsonWritable {
+
+    private static final SerializedString MESSAGE_ID = new SerializedString("messageId");
+    private static final SerializedString SENDER_ID = new SerializedString("senderId");
+    private static final SerializedString SENDER_TYPE = new SerializedString("senderType");
+    private static final SerializedString SENDER_NAME = new SerializedString("senderName");
+    private static final SerializedString MESSAGE = new SerializedString("message");
+    private static final SerializedString MESSAGE_TYPE = new SerializedString("messageType");
+    private static final SerializedString IS_READ = new SerializedString("isRead");
+    private static final SerializedString SENT_AT = new SerializedString("sentAt");
+    private static final SerializedString FORMATTED_TIME = new SerializedString("formattedTime");
+    private static final SerializedString IS_FROM_DONOR = new SerializedString("isFromDonor");
+    private static final SerializedString IS_FROM_HOSPITAL = new SerializedString("isFromHospital");
+    private static final SerializedString ATTACHMENT = new SerializedString("attachment");
+    private static final SerializedString FILE_NAME = new SerializedString("fileName");
+    private static final SerializedString CONTENT_TYPE = new SerializedString("contentType");
+    private static final SerializedString SIZE = new SerializedString("size");
+    private static final SerializedString URL = new SerializedString("url");
+    private static final SerializedString THUMBNAIL_URL = new SerializedString("thumbnailUrl");
+
+    private static final String ATTACHMENT_PATH = "chat/attachment?messageId=";
+
+    private final ChatMessage message;
+
+    /**
+     * Wrap a message; fields are read when the response is written
+     * @param message Chat message
+     */
+    public ChatMessageResponse(ChatMessage message) {
+        this.message = message;
+    }
+
+    public ChatMessage getMessage() {
+        return message;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        ChatAttachment attachment = message.getAttachment();
+
+        generator.writeStartObject();
+        generator.writeFieldName(MESSAGE_ID);
+        generator.writeNumber(message.getMessageId());
+        generator.writeFieldName(SENDER_ID);
+        generator.writeNumber(message.getSenderId());
+        generator.writeFieldName(SENDER_TYPE);
+        generator.writeString(message.getSenderType());
+        generator.writeFieldName(SENDER_NAME);
+        generator.writeString(message.getSenderName());
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(attachment != null ? attachment.getFileName() : message.getMessage());
+        generator.writeFieldName(MESSAGE_TYPE);
+        generator.writeString(message.getMessageType());
+        generator.writeFieldName(IS_READ);
+        generator.writeBoolean(message.isRead());
+        generator.writeFieldName(SENT_AT);
+        if (message.getSentAt() != null) {
+            generator.writeString(message.getSentAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            generator.writeFieldName(FORMATTED_TIME);
+            generator.writeString(message.getFormattedTime());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName(IS_FROM_DONOR);
+        generator.writeBoolean(message.isFromDonor());
+        generator.writeFieldName(IS_FROM_HOSPITAL);
+        generator.writeBoolean(message.isFromHospital());
+        if (attachment != null) {
+            writeAttachment(generator, attachment);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeAttachment(JsonGenerator generator, ChatAttachment attachment) throws IOException {
+        String url = ATTACHMENT_PATH + message.getMessageId();
+
+        generator.writeFieldName(ATTACHMENT);
+        generator.writeStartObject();
+        generator.writeFieldName(FILE_NAME);
+        generator.writeString(attachment.getFileName());
+        generator.writeFieldName(CONTENT_TYPE);
+        generator.writeString(attachment.getContentType());
+        generator.writeFieldName(SIZE);
+        generator.writeNumber(attachment.getSize());
+        generator.writeFieldName(URL);
+        generator.writeString(url);
+        if (attachment.isImage()) {
+            generator.writeFieldName(THUMBNAIL_URL);
+            generator.writeString(url + "&thumbnail=true");
+        }
+        generator.writeEndObject();
+    }
+}
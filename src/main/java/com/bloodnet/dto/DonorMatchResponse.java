@@ -0,0 +1,129 @@
+package com.bloodnet.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Donor Match Response for BloodNet Application
+ * One ranked donor in a donor search result. Contact details are masked
+ * by the caller before they are placed here.
+ */
+public final class DonorMatchResponse implements JsonWritable {
+
+    private static final SerializedString DONOR_ID = new SerializedString("donorId");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString BLOOD_TYPE = new SerializedString("bloodType");
+    private static final SerializedString CITY = new SerializedString("city");
+    private static final SerializedString STATE = new SerializedString("state");
+    private static final SerializedString PHONE = new SerializedString("phone");
+    private static final SerializedString EMAIL = new SerializedString("email");
+    private static final SerializedString IS_ELIGIBLE = new SerializedString("isEligible");
+    private static final SerializedString IS_ELIGIBLE_AGE = new SerializedString("isEligibleAge");
+    private static final SerializedString AGE = new SerializedString("age");
+    private static final SerializedString LAST_DONATION_DATE = new SerializedString("lastDonationDate");
+    private static final SerializedString PRIORITY_SCORE = new SerializedString("priorityScore");
+    private static final SerializedString ESTIMATED_DISTANCE = new SerializedString("estimatedDistance");
+    private static final SerializedString DISTANCE_UNIT = new SerializedString("distanceUnit");
+    private static final SerializedString AVAILABILITY = new SerializedString("availability");
+    private static final SerializedString RESPONSE_TIME = new SerializedString("responseTime");
+
+    private final int donorId;
+    private final String name;
+    private final String bloodType;
+    private final String city;
+    private final String state;
+    private final String maskedPhone;
+    private final String maskedEmail;
+    private final boolean eligible;
+    private final boolean eligibleAge;
+    private final int age;
+    private final LocalDate lastDonationDate;
+    private final int priorityScore;
+    private final double distanceKm;
+    private final String availability;
+    private final String responseTime;
+
+    /**
+     * Create a donor match
+     * @param distanceKm Distance from the search center, or NaN when unknown
+     */
+    public DonorMatchResponse(int donorId, String name, String bloodType, String city, String state,
+                              String maskedPhone, String maskedEmail, boolean eligible, boolean eligibleAge,
+                              int age, LocalDate lastDonationDate, int priorityScore, double distanceKm,
+                              String availability, String responseTime) {
+        this.donorId = donorId;
+        this.name = name;
+        this.bloodType = bloodType;
+        this.city = city;
+        this.state = state;
+        this.maskedPhone = maskedPhone;
+        this.maskedEmail = maskedEmail;
+        this.eligible = eligible;
+        this.eligibleAge = eligibleAge;
+        this.age = age;
+        this.lastDonationDate = lastDonationDate;
+        this.priorityScore = priorityScore;
+        this.distanceKm = distanceKm;
+        this.availability = availability;
+        this.responseTime = responseTime;
+    }
+
+    public int getDonorId() {
+        return donorId;
+    }
+
+    public int getPriorityScore() {
+        return priorityScore;
+    }
+
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(DONOR_ID);
+        generator.writeNumber(donorId);
+        generator.writeFieldName(NAME);
+        generator.writeString(name);
+        generator.writeFieldName(BLOOD_TYPE);
+        generator.writeString(bloodType);
+        generator.writeFieldName(CITY);
+        generator.writeString(city);
+        generator.writeFieldName(STATE);
+        generator.writeString(state);
+        generator.writeFieldName(PHONE);
+        generator.writeString(maskedPhone);
+        generator.writeFieldName(EMAIL);
+        generator.writeString(maskedEmail);
+        generator.writeFieldName(IS_ELIGIBLE);
+        generator.writeBoolean(eligible);
+        generator.writeFieldName(IS_ELIGIBLE_AGE);
+        generator.writeBoolean(eligibleAge);
+        generator.writeFieldName(AGE);
+        generator.writeNumber(age);
+        generator.writeFieldName(LAST_DONATION_DATE);
+        if (lastDonationDate != null) {
+            generator.writeString(lastDonationDate.toString());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName(PRIORITY_SCORE);
+        generator.writeNumber(priorityScore);
+        if (!Double.isNaN(distanceKm)) {
+            generator.writeFieldName(ESTIMATED_DISTANCE);
+            generator.writeNumber(distanceKm);
+            generator.writeFieldName(DISTANCE_UNIT);
+            generator.writeString("km");
+        }
+        generator.writeFieldName(AVAILABILITY);
+        generator.writeString(availability);
+        generator.writeFieldName(RESPONSE_TIME);
+        generator.writeString(responseTime);
+        generator.writeEndObject();
+    }
+}
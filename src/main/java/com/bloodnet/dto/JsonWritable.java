@@ -0,0 +1,20 @@
+package com.bloodnet.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Response object that writes itself as JSON
+ * Implementations write their fields directly with pre-encoded field names,
+ * so serializing them needs no reflection, maps or hashing.
+ */
+public interface JsonWritable {
+
+    /**
+     * Write this object as a JSON object
+     * @param generator Target generator
+     * @throws IOException if writing fails
+     */
+    void writeJson(JsonGenerator generator) throws IOException;
+}
@@ -0,0 +1,89 @@
+package com.bloodnet.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+
+/**
+ * Login Response for BloodNet Application
+ * Result of a login or logout call.
+ */
+public final class LoginResponse implements JsonWritable {
+
+    private static final SerializedString SUCCESS = new SerializedString("success");
+    private static final SerializedString MESSAGE = new SerializedString("message");
+    private static final SerializedString REDIRECT_URL = new SerializedString("redirectUrl");
+    private static final SerializedString USER_TYPE = new SerializedString("userType");
+
+    private final boolean success;
+    private final String message;
+    private final String redirectUrl;
+    private final String userType;
+
+    private LoginResponse(boolean success, String message, String redirectUrl, String userType) {
+        this.success = success;
+        this.message = message;
+        this.redirectUrl = redirectUrl;
+        this.userType = userType;
+    }
+
+    /**
+     * Successful login
+     * @param message Welcome message
+     * @param redirectUrl Page to open next
+     * @param userType "donor" or "hospital"
+     */
+    public static LoginResponse success(String message, String redirectUrl, String userType) {
+        return new LoginResponse(true, message, redirectUrl, userType);
+    }
+
+    /**
+     * Successful call that carries only a message, e.g. logout
+     */
+    public static LoginResponse success(String message) {
+        return new LoginResponse(true, message, null, null);
+    }
+
+    /**
+     * Failed login
+     * @param message Reason shown to the user
+     */
+    public static LoginResponse failure(String message) {
+        return new LoginResponse(false, message, null, null);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getRedirectUrl() {
+        return redirectUrl;
+    }
+
+    public String getUserType() {
+        return userType;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(SUCCESS);
+        generator.writeBoolean(success);
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(message);
+        if (redirectUrl != null) {
+            generator.writeFieldName(REDIRECT_URL);
+            generator.writeString(redirectUrl);
+        }
+        if (userType != null) {
+            generator.writeFieldName(USER_TYPE);
+            generator.writeString(userType);
+        }
+        generator.writeEndObject();
+    }
+}
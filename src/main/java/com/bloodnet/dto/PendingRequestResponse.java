@@ -0,0 +1,93 @@
+package com.bloodnet.dto;
+
+import com.bloodnet.model.BloodRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Pending Request Response for BloodNet Application
+ * One open blood request on a dashboard, with the same fields as
+ * pending_requests_view.
+ */
+public final class PendingRequestResponse implements JsonWritable {
+
+    private static final SerializedString REQUEST_ID = new SerializedString("requestId");
+    private static final SerializedString REQUESTER_TYPE = new SerializedString("requesterType");
+    private static final SerializedString BLOOD_TYPE = new SerializedString("bloodType");
+    private static final SerializedString UNITS_REQUIRED = new SerializedString("unitsRequired");
+    private static final SerializedString URGENCY = new SerializedString("urgency");
+    private static final SerializedString PATIENT_NAME = new SerializedString("patientName");
+    private static final SerializedString HOSPITAL_NAME = new SerializedString("hospitalName");
+    private static final SerializedString CITY = new SerializedString("city");
+    private static final SerializedString STATE = new SerializedString("state");
+    private static final SerializedString CONTACT_PERSON = new SerializedString("contactPerson");
+    private static final SerializedString CONTACT_PHONE = new SerializedString("contactPhone");
+    private static final SerializedString REQUEST_DATE = new SerializedString("requestDate");
+    private static final SerializedString REQUIRED_DATE = new SerializedString("requiredDate");
+    private static final SerializedString DAYS_REMAINING = new SerializedString("daysRemaining");
+
+    private final BloodRequest request;
+
+    public PendingRequestResponse(BloodRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * Days until the required date, or until a week after the request date
+     * when no required date was given
+     */
+    private long daysRemaining() {
+        LocalDateTime due = request.getRequiredDate();
+        if (due == null && request.getRequestDate() != null) {
+            due = request.getRequestDate().plusDays(7);
+        }
+        return due == null ? 0 : ChronoUnit.DAYS.between(LocalDate.now(), due.toLocalDate());
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(REQUEST_ID);
+        generator.writeNumber(request.getRequestId());
+        generator.writeFieldName(REQUESTER_TYPE);
+        generator.writeString(request.getRequesterType());
+        generator.writeFieldName(BLOOD_TYPE);
+        generator.writeString(request.getBloodType());
+        generator.writeFieldName(UNITS_REQUIRED);
+        generator.writeNumber(request.getUnitsRequired());
+        generator.writeFieldName(URGENCY);
+        generator.writeString(request.getUrgency());
+        generator.writeFieldName(PATIENT_NAME);
+        generator.writeString(request.getPatientName());
+        generator.writeFieldName(HOSPITAL_NAME);
+        generator.writeString(request.getHospitalName());
+        generator.writeFieldName(CITY);
+        generator.writeString(request.getCity());
+        generator.writeFieldName(STATE);
+        generator.writeString(request.getState());
+        generator.writeFieldName(CONTACT_PERSON);
+        generator.writeString(request.getContactPerson());
+        generator.writeFieldName(CONTACT_PHONE);
+        generator.writeString(request.getContactPhone());
+        generator.writeFieldName(REQUEST_DATE);
+        if (request.getRequestDate() != null) {
+            generator.writeString(request.getRequestDate().toString());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName(REQUIRED_DATE);
+        if (request.getRequiredDate() != null) {
+            generator.writeString(request.getRequiredDate().toString());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName(DAYS_REMAINING);
+        generator.writeNumber(daysRemaining());
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,106 @@
+package com.bloodnet.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Request Submission Response for BloodNet Application
+ * Result of submitting a blood request.
+ */
+public final class RequestSubmissionResponse implements JsonWritable {
+
+    private static final SerializedString SUCCESS = new SerializedString("success");
+    private static final SerializedString MESSAGE = new SerializedString("message");
+    private static final SerializedString REQUEST_ID = new SerializedString("requestId");
+    private static final SerializedString REDIRECT_URL = new SerializedString("redirectUrl");
+    private static final SerializedString ERRORS = new SerializedString("errors");
+
+    private final boolean success;
+    private final String message;
+    private final int requestId;
+    private final String redirectUrl;
+    private final Map<String, String> errors;
+
+    private RequestSubmissionResponse(boolean success, String message, int requestId,
+                                      String redirectUrl, Map<String, String> errors) {
+        this.success = success;
+        this.message = message;
+        this.requestId = requestId;
+        this.redirectUrl = redirectUrl;
+        this.errors = errors;
+    }
+
+    /**
+     * Request was saved
+     * @param message Confirmation message
+     * @param requestId Generated request ID
+     * @param redirectUrl Status page of the request
+     */
+    public static RequestSubmissionResponse submitted(String message, int requestId, String redirectUrl) {
+        return new RequestSubmissionResponse(true, message, requestId, redirectUrl, null);
+    }
+
+    /**
+     * Request was not saved
+     * @param message Reason shown to the user
+     */
+    public static RequestSubmissionResponse failure(String message) {
+        return new RequestSubmissionResponse(false, message, 0, null, null);
+    }
+
+    /**
+     * Request was not saved and the user must go somewhere else first, e.g. login
+     */
+    public static RequestSubmissionResponse failure(String message, String redirectUrl) {
+        return new RequestSubmissionResponse(false, message, 0, redirectUrl, null);
+    }
+
+    /**
+     * Request failed field validation
+     * @param errors Error message per form field
+     */
+    public static RequestSubmissionResponse invalid(Map<String, String> errors) {
+        return new RequestSubmissionResponse(false, "Validation failed", 0, null, errors);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public void writeJson(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(SUCCESS);
+        generator.writeBoolean(success);
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(message);
+        if (success) {
+            generator.writeFieldName(REQUEST_ID);
+            generator.writeNumber(requestId);
+        }
+        if (redirectUrl != null) {
+            generator.writeFieldName(REDIRECT_URL);
+            generator.writeString(redirectUrl);
+        }
+        if (errors != null) {
+            generator.writeFieldName(ERRORS);
+            generator.writeStartObject();
+            for (Map.Entry<String, String> error : errors.entrySet()) {
+                generator.writeStringField(error.getKey(), error.getValue());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+}
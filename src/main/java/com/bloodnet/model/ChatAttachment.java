@@ -0,0 +1,86 @@
+package com.bloodnet.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * Chat Attachment Model Class for BloodNet Application
+ * Reference to a stored file shared in a chat. Files are stored once per
+ * content hash; the message text of an image or file message holds the
+ * reference as "hash|size|contentType|fileName".
+ */
+public class ChatAttachment {
+    
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    
+    private final String hash;
+    private final long size;
+    private final String contentType;
+    private final String fileName;
+    
+    public ChatAttachment(String hash, long size, String contentType, String fileName) {
+        this.hash = hash;
+        this.size = size;
+        this.contentType = contentType;
+        this.fileName = fileName;
+    }
+    
+    /**
+     * Parse the message text of an image or file message
+     * @param text Message text
+     * @return attachment, or null if the text is not a valid reference
+     */
+    public static ChatAttachment parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        
+        String[] parts = text.split("\\|", 4);
+        if (parts.length != 4 || !isValidHash(parts[0])) {
+            return null;
+        }
+        
+        try {
+            return new ChatAttachment(parts[0], Long.parseLong(parts[1]), parts[2], parts[3]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Check that a string is a lowercase hex SHA-256 digest
+     */
+    public static boolean isValidHash(String hash) {
+        return hash != null && SHA256_HEX.matcher(hash).matches();
+    }
+    
+    /**
+     * Format as message text
+     */
+    public String toMessageText() {
+        return hash + "|" + size + "|" + contentType + "|" + fileName;
+    }
+    
+    public String getHash() {
+        return hash;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    /**
+     * Check if the attachment is an image
+     * @return true for image content types
+     */
+    public boolean isImage() {
+        return contentType.startsWith("image/");
+    }
+}
@@ -136,6 +136,17 @@ public class ChatMessage {
         }
     }
     
+    /**
+     * Get the attachment of an image or file message
+     * @return attachment, or null for text messages
+     */
+    public ChatAttachment getAttachment() {
+        if (!"image".equals(messageType) && !"file".equals(messageType)) {
+            return null;
+        }
+        return ChatAttachment.parse(message);
+    }
+    
     /**
      * Check if message is from donor
      * @return true if sender is donor
@@ -210,7 +210,7 @@ public class Donor {
     
     /**
      * Check if donor is eligible to donate based on last donation date
-     * @return true if eligible (more than 56 days since last donation)
+     * @return true if eligible (56 days or more since last donation)
      */
     public boolean isEligibleToDonate() {
         if (lastDonationDate == null) {
@@ -218,7 +218,7 @@ public class Donor {
         }
         
         LocalDate eligibleDate = lastDonationDate.plusDays(56); // 8 weeks
-        return LocalDate.now().isAfter(eligibleDate);
+        return !LocalDate.now().isBefore(eligibleDate);
     }
     
     /**
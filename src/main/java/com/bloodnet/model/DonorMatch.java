@@ -0,0 +1,87 @@
+package com.bloodnet.model;
+
+/**
+ * Donor Match Model Class for BloodNet Application
+ * Represents a donor matched to a blood request
+ */
+public class DonorMatch {
+    
+    private int matchId;
+    private int requestId;
+    private int donorId;
+    private int matchScore;
+    private double distanceKm;
+    private String responseStatus; // "pending", "accepted", "declined", "no_response"
+    
+    // Default constructor
+    public DonorMatch() {}
+    
+    // Constructor for new match
+    public DonorMatch(int requestId, int donorId, int matchScore, double distanceKm) {
+        this.requestId = requestId;
+        this.donorId = donorId;
+        this.matchScore = matchScore;
+        this.distanceKm = distanceKm;
+        this.responseStatus = "pending";
+    }
+    
+    // Getters and Setters
+    public int getMatchId() {
+        return matchId;
+    }
+    
+    public void setMatchId(int matchId) {
+        this.matchId = matchId;
+    }
+    
+    public int getRequestId() {
+        return requestId;
+    }
+    
+    public void setRequestId(int requestId) {
+        this.requestId = requestId;
+    }
+    
+    public int getDonorId() {
+        return donorId;
+    }
+    
+    public void setDonorId(int donorId) {
+        this.donorId = donorId;
+    }
+    
+    public int getMatchScore() {
+        return matchScore;
+    }
+    
+    public void setMatchScore(int matchScore) {
+        this.matchScore = matchScore;
+    }
+    
+    public double getDistanceKm() {
+        return distanceKm;
+    }
+    
+    public void setDistanceKm(double distanceKm) {
+        this.distanceKm = distanceKm;
+    }
+    
+    public String getResponseStatus() {
+        return responseStatus;
+    }
+    
+    public void setResponseStatus(String responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+    
+    @Override
+    public String toString() {
+        return "DonorMatch{" +
+                "requestId=" + requestId +
+                ", donorId=" + donorId +
+                ", matchScore=" + matchScore +
+                ", distanceKm=" + distanceKm +
+                ", responseStatus='" + responseStatus + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.bloodnet.model;
+
+/**
+ * Inventory Level Model Class for BloodNet Application
+ * Represents a hospital's stock of one blood type: units free to reserve
+ * and units held for blood requests
+ */
+public class InventoryLevel {
+    
+    private int hospitalId;
+    private String bloodType;
+    private int unitsAvailable;
+    private int unitsReserved;
+    
+    // Default constructor
+    public InventoryLevel() {}
+    
+    // Constructor with all fields
+    public InventoryLevel(int hospitalId, String bloodType, int unitsAvailable, int unitsReserved) {
+        this.hospitalId = hospitalId;
+        this.bloodType = bloodType;
+        this.unitsAvailable = unitsAvailable;
+        this.unitsReserved = unitsReserved;
+    }
+    
+    // Getters and Setters
+    public int getHospitalId() {
+        return hospitalId;
+    }
+    
+    public void setHospitalId(int hospitalId) {
+        this.hospitalId = hospitalId;
+    }
+    
+    public String getBloodType() {
+        return bloodType;
+    }
+    
+    public void setBloodType(String bloodType) {
+        this.bloodType = bloodType;
+    }
+    
+    public int getUnitsAvailable() {
+        return unitsAvailable;
+    }
+    
+    public void setUnitsAvailable(int unitsAvailable) {
+        this.unitsAvailable = unitsAvailable;
+    }
+    
+    public int getUnitsReserved() {
+        return unitsReserved;
+    }
+    
+    public void setUnitsReserved(int unitsReserved) {
+        this.unitsReserved = unitsReserved;
+    }
+    
+    @Override
+    public String toString() {
+        return "InventoryLevel{" +
+                "hospitalId=" + hospitalId +
+                ", bloodType='" + bloodType + '\'' +
+                ", unitsAvailable=" + unitsAvailable +
+                ", unitsReserved=" + unitsReserved +
+                '}';
+    }
+}
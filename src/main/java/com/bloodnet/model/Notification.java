@@ -0,0 +1,121 @@
+package com.bloodnet.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Notification Model Class for BloodNet Application
+ * Represents an in-app notification and its delivery over other channels
+ */
+public class Notification {
+    
+    private int notificationId;
+    private int userId;
+    private String userType; // "donor", "hospital" or "patient"
+    private String notificationType; // "blood_request", "donor_match", "message", "system"
+    private String title;
+    private String message;
+    private boolean urgent; // also sent by SMS
+    private boolean isRead;
+    private LocalDateTime createdAt;
+    
+    // Default constructor
+    public Notification() {}
+    
+    // Constructor for new notification
+    public Notification(int userId, String userType, String notificationType,
+                        String title, String message, boolean urgent) {
+        this.userId = userId;
+        this.userType = userType;
+        this.notificationType = notificationType;
+        this.title = title;
+        this.message = message;
+        this.urgent = urgent;
+        this.isRead = false;
+        this.createdAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public int getNotificationId() {
+        return notificationId;
+    }
+    
+    public void setNotificationId(int notificationId) {
+        this.notificationId = notificationId;
+    }
+    
+    public int getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+    
+    public String getUserType() {
+        return userType;
+    }
+    
+    public void setUserType(String userType) {
+        this.userType = userType;
+    }
+    
+    public String getNotificationType() {
+        return notificationType;
+    }
+    
+    public void setNotificationType(String notificationType) {
+        this.notificationType = notificationType;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
+    public boolean isUrgent() {
+        return urgent;
+    }
+    
+    public void setUrgent(boolean urgent) {
+        this.urgent = urgent;
+    }
+    
+    public boolean isRead() {
+        return isRead;
+    }
+    
+    public void setRead(boolean read) {
+        isRead = read;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    @Override
+    public String toString() {
+        return "Notification{" +
+                "notificationId=" + notificationId +
+                ", userId=" + userId +
+                ", userType='" + userType + '\'' +
+                ", notificationType='" + notificationType + '\'' +
+                ", title='" + title + '\'' +
+                ", urgent=" + urgent +
+                '}';
+    }
+}
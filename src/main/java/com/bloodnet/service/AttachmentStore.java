@@ -0,0 +1,322 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.ChatAttachment;
+import com.bloodnet.util.AppConfig;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Attachment Store for BloodNet Application
+ * Content-addressed file storage for chat attachments. Uploads are streamed
+ * to disk while their SHA-256 is computed and stored once per hash under
+ * {@code <dir>/<first two hex digits>/<hash>}, so the same scan shared in
+ * several chats takes space once. Image thumbnails are rendered on a small
+ * bounded pool from a subsampled decode, so large scans neither block
+ * request threads nor load at full resolution into the heap.
+ */
+public class AttachmentStore {
+
+    private static final AttachmentStore INSTANCE = new AttachmentStore();
+
+    // Types served inline or as downloads; SVG and HTML are left out because browsers run scripts in them
+    private static final Set<String> ALLOWED_TYPES = Set.of(
+        "image/jpeg", "image/png", "image/gif", "image/webp", "application/pdf", "text/plain");
+
+    private static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+
+    private Path root;
+    private long maxBytes;
+    private int thumbnailSize;
+    private ThreadPoolExecutor thumbnailPool;
+    private final Set<String> thumbnailsInProgress = ConcurrentHashMap.newKeySet();
+
+    private AttachmentStore() {}
+
+    public static AttachmentStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create the storage directory and the thumbnail pool
+     */
+    public synchronized void start() {
+        if (thumbnailPool != null) {
+            return;
+        }
+
+        root = Paths.get(AppConfig.getString("attachments.dir",
+                System.getProperty("user.home") + "/bloodnet/attachments"));
+        maxBytes = AppConfig.getLong("attachments.maxBytes", 10L * 1024 * 1024);
+        thumbnailSize = AppConfig.getInt("attachments.thumbnailSize", 256);
+        int threads = AppConfig.getInt("attachments.thumbnailThreads", 2);
+        int queueCapacity = AppConfig.getInt("attachments.thumbnailQueue", 100);
+
+        try {
+            Files.createDirectories(root.resolve("tmp"));
+        } catch (IOException e) {
+            System.err.println("Error creating attachment directory " + root + ": " + e.getMessage());
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        thumbnailPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "bloodnet-thumbnail-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+    }
+
+    /**
+     * Stop rendering thumbnails
+     */
+    public synchronized void shutdown() {
+        if (thumbnailPool != null) {
+            thumbnailPool.shutdownNow();
+            thumbnailPool = null;
+        }
+    }
+
+    /**
+     * Check whether a content type can be uploaded
+     */
+    public static boolean isAllowedType(String contentType) {
+        return contentType != null && ALLOWED_TYPES.contains(contentType);
+    }
+
+    /**
+     * Maximum upload size in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Store an uploaded file
+     * @param input File content; closed when done
+     * @param contentType Declared content type, one of the allowed types
+     * @param fileName Name to show and offer for download
+     * @return reference to the stored content
+     * @throws IllegalArgumentException if the type is not allowed or the file is too large
+     * @throws IOException if the file cannot be written
+     */
+    public ChatAttachment store(InputStream input, String contentType, String fileName) throws IOException {
+        if (root == null) {
+            input.close();
+            throw new IOException("Attachment storage is not started");
+        }
+        if (!isAllowedType(contentType)) {
+            input.close();
+            throw new IllegalArgumentException("File type not allowed");
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        Path tmpDir = root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            long size = 0;
+            try (InputStream in = input; OutputStream out = Files.newOutputStream(tmp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("File is too large (maximum " + (maxBytes / (1024 * 1024)) + " MB)");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String hash = toHex(digest.digest());
+            Path target = getBlobPath(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Stored by a concurrent upload of the same content
+                }
+            }
+
+            ChatAttachment attachment = new ChatAttachment(hash, size, contentType, sanitizeFileName(fileName));
+            if (attachment.isImage()) {
+                scheduleThumbnail(hash);
+            }
+            return attachment;
+
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Get the stored content of a hash
+     * @return path, or null if nothing is stored under the hash
+     */
+    public Path getBlob(String hash) {
+        if (root == null || !ChatAttachment.isValidHash(hash)) {
+            return null;
+        }
+        Path path = getBlobPath(hash);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * Get the thumbnail of an image, rendering it in the background if missing
+     * @return path, or null if it is not rendered yet
+     */
+    public Path getThumbnail(String hash) {
+        if (getBlob(hash) == null) {
+            return null;
+        }
+
+        Path path = getThumbnailPath(hash);
+        if (Files.isRegularFile(path)) {
+            return path;
+        }
+        scheduleThumbnail(hash);
+        return null;
+    }
+
+    private Path getBlobPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path getThumbnailPath(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash + THUMBNAIL_SUFFIX);
+    }
+
+    private void scheduleThumbnail(String hash) {
+        ThreadPoolExecutor pool = thumbnailPool;
+        if (pool == null || Files.exists(getThumbnailPath(hash)) || !thumbnailsInProgress.add(hash)) {
+            return;
+        }
+
+        try {
+            pool.execute(() -> {
+                try {
+                    renderThumbnail(hash);
+                } finally {
+                    thumbnailsInProgress.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool is busy; the next request for the thumbnail tries again
+            thumbnailsInProgress.remove(hash);
+        }
+    }
+
+    /**
+     * Render a JPEG thumbnail that fits into thumbnailSize x thumbnailSize
+     */
+    private void renderThumbnail(String hash) {
+        Path source = getBlobPath(hash);
+        Path target = getThumbnailPath(hash);
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return;
+            }
+
+            ImageReader reader = readers.next();
+            BufferedImage image;
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // Decode only every n-th pixel so a large scan never exists at full size in memory
+                int step = Math.max(1, Math.max(width, height) / (thumbnailSize * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+            double scale = Math.min(1.0, (double) thumbnailSize / Math.max(image.getWidth(), image.getHeight()));
+            int thumbWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+            int thumbHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+            BufferedImage thumbnail = new BufferedImage(thumbWidth, thumbHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = thumbnail.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, thumbWidth, thumbHeight);
+                graphics.drawImage(image, 0, 0, thumbWidth, thumbHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            Path tmp = Files.createTempFile(root.resolve("tmp"), "thumb-", ".part");
+            try {
+                ImageIO.write(thumbnail, "jpg", tmp.toFile());
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error rendering thumbnail for " + hash + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reduce a client supplied file name to its last path element
+     */
+    private static String sanitizeFileName(String fileName) {
+        if (fileName == null) {
+            return "attachment";
+        }
+
+        String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+        name = name.replaceAll("[\\p{Cntrl}\"]", "").trim();
+        if (name.isEmpty()) {
+            return "attachment";
+        }
+        return name.length() > 200 ? name.substring(name.length() - 200) : name;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
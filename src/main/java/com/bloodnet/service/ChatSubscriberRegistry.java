@@ -0,0 +1,395 @@
+package com.bloodnet.service;
+
+import com.bloodnet.dto.ChatMessageResponse;
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.JsonResponseWriter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Chat Subscriber Registry for BloodNet Application
+ * Holds the open Server-Sent Events streams of chat clients, grouped into one
+ * room per blood request. A committed message is serialized once and queued
+ * for every subscriber of its request; a small delivery pool drains each
+ * subscriber's queue with at most one task at a time, so events reach a
+ * client in commit order and senders never wait on slow clients. Streams
+ * are written with non-blocking output: a drain writes only while the
+ * container can take data and otherwise leaves the rest to the stream's
+ * write listener, so stalled clients never hold a delivery thread. Idle
+ * streams get a periodic comment line, queued the same way, that keeps
+ * proxies from closing them and detects clients that went away.
+ */
+public class ChatSubscriberRegistry {
+
+    private static final ChatSubscriberRegistry INSTANCE = new ChatSubscriberRegistry();
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETRY = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<Integer, Set<Subscriber>> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ExecutorService deliveryExecutor;
+    private ScheduledExecutorService heartbeatScheduler;
+    private long streamTimeoutMs = 30 * 60 * 1000L;
+    private int maxPendingEvents = 1000;
+    private volatile boolean running = false;
+
+    private ChatSubscriberRegistry() {}
+
+    public static ChatSubscriberRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start the delivery pool and heartbeat
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        int deliveryThreads = AppConfig.getInt("chat.push.deliveryThreads", 4);
+        long heartbeatMs = AppConfig.getLong("chat.push.heartbeatMs", 25000);
+        streamTimeoutMs = AppConfig.getLong("chat.push.streamTimeoutMs", 30 * 60 * 1000L);
+        maxPendingEvents = Math.max(1, AppConfig.getInt("chat.push.maxPendingEvents", 1000));
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        deliveryExecutor = Executors.newFixedThreadPool(deliveryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "bloodnet-chat-push-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bloodnet-chat-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatScheduler.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    /**
+     * Close every stream and stop the background threads
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        heartbeatScheduler.shutdownNow();
+        deliveryExecutor.shutdownNow();
+        for (Set<Subscriber> room : rooms.values()) {
+            for (Subscriber subscriber : room) {
+                subscriber.close();
+            }
+        }
+        rooms.clear();
+    }
+
+    /**
+     * Register an async request as a subscriber of a blood request's chat
+     * The subscriber joins its room before the backlog is read, so a message
+     * committed meanwhile is either in the backlog or queued live; live
+     * events the backlog already covered are dropped. If the backlog cannot
+     * be read or the stream fails, the async context is completed.
+     * The response must already be set up as an event stream.
+     * @param requestId Blood request ID
+     * @param asyncContext Started async context of the subscribing request
+     * @param backlog Reads the messages to send first, e.g. those missed since Last-Event-ID
+     * @return false if push delivery is not running
+     */
+    public boolean subscribe(int requestId, AsyncContext asyncContext, Supplier<List<ChatMessage>> backlog) {
+        if (!running) {
+            return false;
+        }
+
+        ServletOutputStream out;
+        try {
+            out = asyncContext.getResponse().getOutputStream();
+        } catch (IOException e) {
+            asyncContext.complete();
+            return true;
+        }
+
+        Subscriber subscriber = new Subscriber(requestId, asyncContext, out);
+        asyncContext.setTimeout(streamTimeoutMs);
+        asyncContext.addListener(subscriber);
+
+        // Join the room first; live events wait in the queue until the backlog is out
+        rooms.computeIfAbsent(requestId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        List<ChatMessage> missed;
+        try {
+            missed = backlog.get();
+        } catch (RuntimeException e) {
+            // The client reconnects with its Last-Event-ID
+            subscriber.close();
+            return true;
+        }
+
+        // Tell EventSource how soon to reconnect, then catch the client up
+        subscriber.backlog.add(RETRY);
+        for (ChatMessage message : missed) {
+            subscriber.backlog.add(toEvent(message));
+            subscriber.lastSentId = Math.max(subscriber.lastSentId, message.getMessageId());
+        }
+
+        out.setWriteListener(subscriber);
+        subscriber.resume();
+        return true;
+    }
+
+    /**
+     * Push a committed message to the subscribers of its request
+     * Called in commit order; each subscriber receives its events in call order.
+     * @param message Saved message with its generated ID
+     */
+    public void publish(ChatMessage message) {
+        Set<Subscriber> room = rooms.get(message.getRequestId());
+        if (room == null || room.isEmpty() || !running) {
+            return;
+        }
+
+        Event event = new Event(message.getMessageId(), toEvent(message));
+        for (Subscriber subscriber : room) {
+            subscriber.enqueue(event);
+        }
+    }
+
+    /**
+     * Number of open streams
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Queue a heartbeat for every idle stream; the delivery pool writes it
+     */
+    private void sendHeartbeats() {
+        Event heartbeat = new Event(-1, HEARTBEAT);
+        for (Set<Subscriber> room : rooms.values()) {
+            for (Subscriber subscriber : room) {
+                if (subscriber.pending.isEmpty()) {
+                    subscriber.enqueue(heartbeat);
+                }
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        Set<Subscriber> room = rooms.get(subscriber.requestId);
+        if (room != null && room.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+            if (room.isEmpty()) {
+                rooms.remove(subscriber.requestId, room);
+            }
+        }
+    }
+
+    /**
+     * Format a message as one SSE event; the id lets clients resume with Last-Event-ID
+     */
+    private static byte[] toEvent(ChatMessage message) {
+        String event = "id: " + message.getMessageId() + "\n"
+                     + "event: message\n"
+                     + "data: " + JsonResponseWriter.toJson(new ChatMessageResponse(message)) + "\n\n";
+        return event.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A serialized event; heartbeats have no message ID
+     */
+    private static final class Event {
+        private final int messageId;
+        private final byte[] bytes;
+
+        Event(int messageId, byte[] bytes) {
+            this.messageId = messageId;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * One open event stream
+     * Events are queued and handed to the stream by at most one delivery task
+     * at a time, and only while the stream is ready; when it is not, the
+     * container calls {@link #onWritePossible} once it can take more. Nothing
+     * is written before the backlog is in place and {@link #resume} is called.
+     */
+    private final class Subscriber implements AsyncListener, WriteListener {
+        private final int requestId;
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream out;
+        private final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        private volatile int lastSentId = -1;
+
+        // Written under the subscriber's lock
+        private final ArrayDeque<byte[]> backlog = new ArrayDeque<>();
+        private boolean started = false;
+        private boolean unflushed = false;
+        private boolean closed = false;
+
+        Subscriber(int requestId, AsyncContext asyncContext, ServletOutputStream out) {
+            this.requestId = requestId;
+            this.asyncContext = asyncContext;
+            this.out = out;
+        }
+
+        /**
+         * Queue an event; a client that falls too far behind is disconnected
+         * and catches up from its Last-Event-ID when it reconnects
+         */
+        void enqueue(Event event) {
+            if (pendingCount.incrementAndGet() > maxPendingEvents) {
+                pendingCount.decrementAndGet();
+                close();
+                return;
+            }
+            pending.add(event);
+            scheduleDrain();
+        }
+
+        /**
+         * Start delivery once the backlog is in place
+         */
+        void resume() {
+            synchronized (this) {
+                started = true;
+            }
+            draining.set(false);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                deliveryExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            // Cleared first: an event queued from here on schedules another drain
+            draining.set(false);
+            write();
+        }
+
+        /**
+         * Write the backlog and queued events while the stream can take them
+         * Never blocks; whatever is left is written from onWritePossible.
+         */
+        private synchronized void write() {
+            if (closed || !started) {
+                return;
+            }
+
+            try {
+                while (out.isReady()) {
+                    byte[] bytes = backlog.poll();
+                    if (bytes == null) {
+                        Event event = pending.poll();
+                        if (event == null) {
+                            if (!unflushed) {
+                                return;
+                            }
+                            unflushed = false;
+                            out.flush();
+                            continue;
+                        }
+                        pendingCount.decrementAndGet();
+                        // Already sent with the backlog
+                        if (event.messageId >= 0 && event.messageId <= lastSentId) {
+                            continue;
+                        }
+                        bytes = event.bytes;
+                    }
+                    out.write(bytes);
+                    unflushed = true;
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client disconnected
+                pending.clear();
+                close();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            write();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            remove(this);
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            synchronized (this) {
+                closed = true;
+            }
+            remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Client reconnects and resumes from its Last-Event-ID
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
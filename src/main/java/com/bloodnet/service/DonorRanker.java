@@ -0,0 +1,364 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.Donor;
+import com.bloodnet.util.EligibilityCalendar;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Donor Ranker for BloodNet Application
+ * Scores candidate donors into a primitive array and selects the best
+ * {@code limit} of them with a bounded heap, so ranking a large search costs
+ * O(n log k) and callers only build response objects for the returned page.
+ * Donors are ordered by priority score, highest first, then by donor ID;
+ * a {@link Cursor} on that key continues a search after the previous page.
+ */
+public class DonorRanker {
+
+    /**
+     * The urgency independent score of {@link #score} as a SQL expression over
+     * the donors table, for donors evaluated from their own dates. SQL searches
+     * order, cap and page by it so they keep the donors that rank highest.
+     * Keep the two in step.
+     */
+    public static final String SQL_SCORE =
+        "(CASE WHEN last_donation_date IS NULL OR last_donation_date <= DATE_SUB(CURDATE(), INTERVAL 56 DAY) " +
+        "THEN 100 ELSE 0 END" +
+        " + CASE WHEN YEAR(CURDATE()) - YEAR(date_of_birth) BETWEEN 18 AND 65 THEN 50 ELSE 0 END" +
+        " + CASE WHEN last_donation_date IS NULL THEN 100" +
+        " WHEN last_donation_date <= DATE_SUB(CURDATE(), INTERVAL 56 DAY) THEN 80" +
+        " WHEN last_donation_date <= DATE_SUB(CURDATE(), INTERVAL 30 DAY) THEN 40 ELSE 0 END" +
+        " + CASE WHEN YEAR(CURDATE()) - YEAR(date_of_birth) BETWEEN 25 AND 45 THEN 30" +
+        " WHEN YEAR(CURDATE()) - YEAR(date_of_birth) BETWEEN 18 AND 65 THEN 20 ELSE 0 END)";
+
+    private final EligibilityCalendar calendar;
+
+    /**
+     * Create a ranker
+     * @param calendar Precomputed eligibility for indexed donors; other donors
+     *                 are evaluated from their own dates
+     */
+    public DonorRanker(EligibilityCalendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * Rank candidates and keep the top entries
+     * @param candidates Eligible donors from a search
+     * @param urgency Request urgency (critical, high, medium, low), may be null
+     * @param limit Maximum number of donors to return
+     * @return ranked page of positions into {@code candidates}
+     */
+    public Ranking rank(List<Donor> candidates, String urgency, int limit) {
+        return rank(candidates, urgency, limit, null);
+    }
+
+    /**
+     * Rank candidates and keep the top entries that come after a cursor
+     * @param candidates Eligible donors from a search
+     * @param urgency Request urgency (critical, high, medium, low), may be null
+     * @param limit Maximum number of donors to return
+     * @param after Last entry of the previous page, or null for the first page
+     * @return ranked page of positions into {@code candidates}
+     */
+    public Ranking rank(List<Donor> candidates, String urgency, int limit, Cursor after) {
+        int count = candidates.size();
+        int urgencyBonus = urgencyBonus(urgency);
+        int[] scores = new int[count];
+        int[] donorIds = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            Donor donor = candidates.get(i);
+            donorIds[i] = donor.getDonorId();
+            scores[i] = score(donor) + urgencyBonus;
+        }
+
+        // Min-heap of candidate positions with the weakest kept candidate at the root
+        int capacity = Math.max(0, Math.min(limit, count));
+        int[] heap = new int[capacity];
+        int size = 0;
+        int remaining = 0;
+        for (int i = 0; i < count; i++) {
+            if (after != null && !after.precedes(scores[i], donorIds[i])) {
+                continue;
+            }
+
+            remaining++;
+            if (capacity == 0) {
+                continue;
+            }
+            if (size < capacity) {
+                heap[size] = i;
+                siftUp(heap, size++, scores, donorIds);
+            } else if (ranksBefore(i, heap[0], scores, donorIds)) {
+                heap[0] = i;
+                siftDown(heap, size, 0, scores, donorIds);
+            }
+        }
+
+        // Drain weakest first into the tail to leave the page in rank order
+        int[] positions = new int[size];
+        int[] pageScores = new int[size];
+        for (int slot = size - 1; slot >= 0; slot--) {
+            int position = heap[0];
+            positions[slot] = position;
+            pageScores[slot] = scores[position];
+            heap[0] = heap[--size];
+            siftDown(heap, size, 0, scores, donorIds);
+        }
+
+        return new Ranking(positions, pageScores, count, remaining > positions.length);
+    }
+
+    /**
+     * Check whether the donation interval has passed
+     */
+    public boolean isEligibleToDonate(Donor donor) {
+        int donorId = donor.getDonorId();
+        return calendar.contains(donorId) ? calendar.isEligibleToDonate(donorId) : donor.isEligibleToDonate();
+    }
+
+    /**
+     * Check whether the donor is within the donor age range
+     */
+    public boolean isEligibleAge(Donor donor) {
+        int donorId = donor.getDonorId();
+        return calendar.contains(donorId) ? calendar.isEligibleAge(donorId) : donor.isEligibleAge();
+    }
+
+    /**
+     * Get the donor's age in years
+     */
+    public int getAge(Donor donor) {
+        int donorId = donor.getDonorId();
+        return calendar.contains(donorId) ? calendar.getAge(donorId) : donor.getAge();
+    }
+
+    /**
+     * Get the days since the donor's last donation
+     * @return days, or {@link EligibilityCalendar#UNKNOWN} if the donor never donated
+     */
+    public int getDaysSinceDonation(Donor donor) {
+        int donorId = donor.getDonorId();
+        if (calendar.contains(donorId)) {
+            return calendar.getDaysSinceDonation(donorId);
+        }
+        if (donor.getLastDonationDate() == null) {
+            return EligibilityCalendar.UNKNOWN;
+        }
+        return (int) ChronoUnit.DAYS.between(donor.getLastDonationDate(), LocalDate.now());
+    }
+
+    /**
+     * Calculate the urgency independent part of a donor's priority score
+     */
+    private int score(Donor donor) {
+        int score = 0;
+
+        // Base score for being eligible
+        if (isEligibleToDonate(donor)) {
+            score += 100;
+        }
+
+        // Age eligibility bonus
+        if (isEligibleAge(donor)) {
+            score += 50;
+        }
+
+        // Last donation date bonus (longer time since last donation = higher score)
+        int daysSinceDonation = getDaysSinceDonation(donor);
+        if (daysSinceDonation == EligibilityCalendar.UNKNOWN) {
+            score += 100; // Never donated before
+        } else if (daysSinceDonation >= 56) {
+            score += 80;
+        } else if (daysSinceDonation >= 30) {
+            score += 40;
+        }
+
+        // Age preference (prefer donors in prime age range)
+        int age = getAge(donor);
+        if (age >= 25 && age <= 45) {
+            score += 30;
+        } else if (age >= 18 && age <= 65) {
+            score += 20;
+        }
+
+        return score;
+    }
+
+    /**
+     * Score added to every donor for the request urgency
+     */
+    private static int urgencyBonus(String urgency) {
+        if (urgency == null) {
+            return 0;
+        }
+
+        switch (urgency.toLowerCase()) {
+            case "critical":
+                return 200;
+            case "high":
+                return 150;
+            case "medium":
+                return 100;
+            case "low":
+                return 50;
+            default:
+                return 0;
+        }
+    }
+
+    private static boolean ranksBefore(int a, int b, int[] scores, int[] donorIds) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        return donorIds[a] < donorIds[b];
+    }
+
+    private static void siftUp(int[] heap, int index, int[] scores, int[] donorIds) {
+        int position = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(heap[parent], position, scores, donorIds)) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = position;
+    }
+
+    private static void siftDown(int[] heap, int size, int index, int[] scores, int[] donorIds) {
+        if (size == 0) {
+            return;
+        }
+
+        int position = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && ranksBefore(heap[child], heap[right], scores, donorIds)) {
+                child = right;
+            }
+            if (!ranksBefore(position, heap[child], scores, donorIds)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = position;
+    }
+
+    /**
+     * A ranked page of candidates
+     */
+    public static final class Ranking {
+        private final int[] positions;
+        private final int[] scores;
+        private final int candidateCount;
+        private final boolean hasMore;
+
+        Ranking(int[] positions, int[] scores, int candidateCount, boolean hasMore) {
+            this.positions = positions;
+            this.scores = scores;
+            this.candidateCount = candidateCount;
+            this.hasMore = hasMore;
+        }
+
+        public int size() {
+            return positions.length;
+        }
+
+        /**
+         * Position of the i-th ranked donor in the candidate list
+         */
+        public int getPosition(int rank) {
+            return positions[rank];
+        }
+
+        public int getScore(int rank) {
+            return scores[rank];
+        }
+
+        /**
+         * Number of candidates that were ranked
+         */
+        public int getCandidateCount() {
+            return candidateCount;
+        }
+
+        /**
+         * Check whether more candidates rank after this page
+         */
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+
+    /**
+     * Position in the ranking: score and donor ID of the last donor on a page
+     * Encoded for clients as an opaque URL-safe token.
+     */
+    public static final class Cursor {
+        private static final String VERSION = "1";
+
+        private final int score;
+        private final int donorId;
+
+        public Cursor(int score, int donorId) {
+            this.score = score;
+            this.donorId = donorId;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getDonorId() {
+            return donorId;
+        }
+
+        /**
+         * The same position in terms of {@link #SQL_SCORE}, which leaves out the urgency bonus
+         * @param urgency Urgency of the search the cursor was issued for
+         */
+        public Cursor withoutUrgency(String urgency) {
+            return new Cursor(score - urgencyBonus(urgency), donorId);
+        }
+
+        /**
+         * Check whether a donor ranks after this cursor
+         */
+        boolean precedes(int otherScore, int otherDonorId) {
+            return otherScore < score || (otherScore == score && otherDonorId > donorId);
+        }
+
+        public String encode() {
+            String raw = VERSION + ":" + score + ":" + donorId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Decode a client supplied cursor
+         * @param token Value of a previous nextCursor
+         * @return cursor, or null if the token is malformed
+         */
+        public static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.US_ASCII);
+                String[] parts = raw.split(":");
+                if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                    return null;
+                }
+                return new Cursor(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package com.bloodnet.service;
+
+import com.bloodnet.dao.BloodRequestDAO;
+import com.bloodnet.dao.DonorMatchDAO;
+import com.bloodnet.dao.PendingRequestIndex;
+import com.bloodnet.model.BloodRequest;
+import com.bloodnet.model.DonorMatch;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.TimingWheel;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Escalation Scheduler for BloodNet Application
+ * Keeps every open deadline of the matching process on two in-memory
+ * {@link TimingWheel}s instead of having a job scan the tables:
+ *
+ * - Response deadlines: matched donors are contacted in waves of the best
+ *   ranked. A contacted donor who has not answered by the deadline for the
+ *   request's urgency is marked no_response, and once nobody of a wave is
+ *   left to wait for, the next wave is contacted.
+ * - Urgency deadlines: a pending request becomes medium, high and critical
+ *   urgency as its required date draws near. Each step re-sorts the pending
+ *   index and contacts another wave. A step that cannot be saved is retried
+ *   with exponential backoff. Requests without a required date keep the
+ *   urgency they were submitted with.
+ *
+ * Scheduling and cancelling a deadline are O(1). One timer thread turns the
+ * wheels; due deadlines are handled in batches on a small worker pool.
+ * Deadlines live in memory only and are rebuilt from the database on start.
+ */
+public class EscalationScheduler {
+
+    private static final EscalationScheduler INSTANCE = new EscalationScheduler();
+
+    private static final String[] URGENCY_LEVELS = {"low", "medium", "high", "critical"};
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_LEVELS = 4;
+    private static final int NO_RESPONSE_BATCH = 500;
+
+    private final Map<Long, TimingWheel.Timeout<Long>> responseTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, TimingWheel.Timeout<Integer>> urgencyTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> outstanding = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> escalationAttempts = new ConcurrentHashMap<>();
+    private final LongAdder wavesContacted = new LongAdder();
+    private final LongAdder donorsContacted = new LongAdder();
+    private final LongAdder noResponses = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder escalations = new LongAdder();
+    private final LongAdder escalationFailures = new LongAdder();
+
+    private final BloodRequestDAO bloodRequestDAO;
+    private final DonorMatchDAO donorMatchDAO;
+    private TimingWheel<Long> responseWheel;
+    private TimingWheel<Integer> urgencyWheel;
+    private ThreadPoolExecutor workers;
+    private Thread timerThread;
+    private long tickMs;
+    private int waveSize;
+    private long[] responseTimeoutMs;
+    private long[] escalateWithinMs;
+    private long escalationRetryMs;
+    private volatile boolean running = false;
+
+    private EscalationScheduler() {
+        this(new BloodRequestDAO(), new DonorMatchDAO());
+    }
+
+    /**
+     * Scheduler working through the given DAOs; the application uses {@link #getInstance}
+     */
+    EscalationScheduler(BloodRequestDAO bloodRequestDAO, DonorMatchDAO donorMatchDAO) {
+        this.bloodRequestDAO = bloodRequestDAO;
+        this.donorMatchDAO = donorMatchDAO;
+    }
+
+    public static EscalationScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start the timer thread and rebuild the deadlines of pending requests in the background
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        tickMs = AppConfig.getLong("escalation.tickMs", 1000);
+        waveSize = AppConfig.getInt("escalation.waveSize", 10);
+        responseTimeoutMs = new long[] {
+            AppConfig.getLong("escalation.lowResponseMs", TimeUnit.HOURS.toMillis(6)),
+            AppConfig.getLong("escalation.mediumResponseMs", TimeUnit.HOURS.toMillis(2)),
+            AppConfig.getLong("escalation.highResponseMs", TimeUnit.MINUTES.toMillis(30)),
+            AppConfig.getLong("escalation.criticalResponseMs", TimeUnit.MINUTES.toMillis(15))
+        };
+        // Time before the due date at which a request reaches medium, high and critical
+        escalateWithinMs = new long[] {
+            Long.MAX_VALUE,
+            TimeUnit.HOURS.toMillis(AppConfig.getInt("escalation.mediumWithinHours", 168)),
+            TimeUnit.HOURS.toMillis(AppConfig.getInt("escalation.highWithinHours", 72)),
+            TimeUnit.HOURS.toMillis(AppConfig.getInt("escalation.criticalWithinHours", 24))
+        };
+        escalationRetryMs = Math.max(tickMs, AppConfig.getLong("escalation.retryDelayMs", 5000));
+
+        long now = System.currentTimeMillis();
+        responseWheel = new TimingWheel<>(tickMs, WHEEL_BITS, WHEEL_LEVELS, now);
+        urgencyWheel = new TimingWheel<>(tickMs, WHEEL_BITS, WHEEL_LEVELS, now);
+
+        int threads = AppConfig.getInt("escalation.workerThreads", 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(AppConfig.getInt("escalation.workQueue", 10000)), runnable -> {
+                Thread thread = new Thread(runnable, "bloodnet-escalation-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        // A full queue slows the timer thread down rather than losing deadlines
+        workers.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        running = true;
+
+        timerThread = new Thread(this::timerLoop, "bloodnet-escalation-timer");
+        timerThread.setDaemon(true);
+        timerThread.start();
+
+        Thread loader = new Thread(this::recover, "bloodnet-escalation-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Stop the timer; pending deadlines are rebuilt on the next start
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        timerThread.interrupt();
+        timerThread = null;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(AppConfig.getLong("escalation.shutdownTimeoutMs", 5000), TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+
+        responseTimers.clear();
+        urgencyTimers.clear();
+        outstanding.clear();
+        escalationAttempts.clear();
+    }
+
+    /**
+     * Start tracking a newly saved request for urgency escalation
+     */
+    public void track(BloodRequest request) {
+        if (running) {
+            scheduleEscalation(request, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Donors were matched to a request; tell the requester and contact the first wave
+     */
+    public void matched(BloodRequest request, List<DonorMatch> matches) {
+        if (!running || matches.isEmpty()) {
+            return;
+        }
+
+        NotificationDispatcher.getInstance().donorsMatched(request, matches.size());
+        execute(() -> contactNextWave(request.getRequestId()));
+    }
+
+    /**
+     * A donor answered a request they were contacted about
+     * @param status "accepted" or "declined"
+     */
+    public void donorResponded(int requestId, int donorId, String status) {
+        if (!running) {
+            return;
+        }
+        responses.increment();
+
+        long key = DonorMatchDAO.key(requestId, donorId);
+        TimingWheel.Timeout<Long> timer = responseTimers.remove(key);
+        boolean waveDone = timer != null && responseWheel.cancel(timer) && settle(requestId);
+
+        if ("accepted".equals(status)) {
+            execute(() -> checkFulfilled(requestId, waveDone));
+        } else if (waveDone) {
+            execute(() -> contactNextWave(requestId));
+        }
+    }
+
+    private void timerLoop() {
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // Keep turning the wheels; the deadlines of this tick are lost until the next start
+                System.err.println("Error in escalation timer: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hand the deadlines that fell due by {@code now} to the workers
+     */
+    private void tick(long now) {
+        List<TimingWheel.Timeout<Long>> dueResponses = responseWheel.advance(now);
+        List<TimingWheel.Timeout<Integer>> dueEscalations = urgencyWheel.advance(now);
+
+        List<Long> keys = new ArrayList<>(Math.min(dueResponses.size(), NO_RESPONSE_BATCH));
+        for (TimingWheel.Timeout<Long> timer : dueResponses) {
+            if (responseTimers.remove(timer.getValue(), timer)) {
+                keys.add(timer.getValue());
+            }
+            if (keys.size() == NO_RESPONSE_BATCH) {
+                List<Long> batch = keys;
+                execute(() -> expireResponses(batch));
+                keys = new ArrayList<>(NO_RESPONSE_BATCH);
+            }
+        }
+        if (!keys.isEmpty()) {
+            List<Long> batch = keys;
+            execute(() -> expireResponses(batch));
+        }
+
+        for (TimingWheel.Timeout<Integer> timer : dueEscalations) {
+            if (urgencyTimers.remove(timer.getValue(), timer)) {
+                execute(() -> escalate(timer.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Mark donors who let their deadline pass and move on where a wave is done
+     */
+    private void expireResponses(List<Long> keys) {
+        List<Long> open = new ArrayList<>(keys.size());
+        Set<Integer> closedRequests = new LinkedHashSet<>();
+        for (long key : keys) {
+            int requestId = DonorMatchDAO.requestIdOf(key);
+            if (closedRequests.contains(requestId)) {
+                continue;
+            }
+            if (pendingRequest(requestId) == null) {
+                closedRequests.add(requestId);
+                outstanding.remove(requestId);
+                continue;
+            }
+            open.add(key);
+        }
+
+        if (open.isEmpty() || !donorMatchDAO.markNoResponse(open)) {
+            return;
+        }
+        noResponses.add(open.size());
+
+        for (long key : open) {
+            int requestId = DonorMatchDAO.requestIdOf(key);
+            if (settle(requestId)) {
+                contactNextWave(requestId);
+            }
+        }
+    }
+
+    /**
+     * Contact the best-ranked donors of a request that were not contacted yet
+     * Waves of one request may be picked concurrently, e.g. by an escalation
+     * and a settled wave; each donor is marked, scheduled and alerted only by
+     * the wave that actually marked them.
+     */
+    private void contactNextWave(int requestId) {
+        BloodRequest request = pendingRequest(requestId);
+        if (request == null) {
+            outstanding.remove(requestId);
+            return;
+        }
+
+        int size = "critical".equals(request.getUrgency()) ? waveSize * 2 : waveSize;
+        List<DonorMatch> wave = donorMatchDAO.getNextWave(requestId, size);
+        if (wave.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime contactedAt = LocalDateTime.now();
+        List<DonorMatch> contacted = donorMatchDAO.markContacted(requestId, wave, contactedAt);
+        if (contacted == null || contacted.isEmpty()) {
+            return;
+        }
+
+        // Contacted donors join the request's chat
+        UnreadCounterService.getInstance().invalidateParticipants(requestId);
+
+        long deadline = System.currentTimeMillis() + responseTimeout(request.getUrgency());
+        int scheduled = 0;
+        for (DonorMatch match : contacted) {
+            if (scheduleResponse(requestId, match.getDonorId(), deadline)) {
+                scheduled++;
+            }
+        }
+        if (scheduled > 0) {
+            outstanding.merge(requestId, scheduled, Integer::sum);
+        }
+
+        wavesContacted.increment();
+        donorsContacted.add(contacted.size());
+        NotificationDispatcher.getInstance().donorsContacted(request, contacted);
+    }
+
+    /**
+     * Close a request once enough donors accepted it
+     */
+    private void checkFulfilled(int requestId, boolean waveDone) {
+        BloodRequest request = pendingRequest(requestId);
+        if (request == null) {
+            return;
+        }
+
+        int accepted = donorMatchDAO.countAccepted(requestId);
+        if (accepted >= 0 && accepted >= request.getUnitsRequired()) {
+            if (bloodRequestDAO.updateStatus(requestId, "matched")) {
+                outstanding.remove(requestId);
+                forgetEscalation(requestId);
+                System.out.println("Blood request " + requestId + " matched with " + accepted + " donor(s)");
+            }
+        } else if (waveDone) {
+            contactNextWave(requestId);
+        }
+    }
+
+    /**
+     * Raise the urgency of a request whose due date came closer and widen the search
+     */
+    private void escalate(int requestId) {
+        BloodRequest request = pendingRequest(requestId);
+        if (request == null) {
+            escalationAttempts.remove(requestId);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int current = levelOf(request.getUrgency());
+        int due = levelAt(request, now);
+        if (due > current) {
+            if (!bloodRequestDAO.updateUrgency(request, URGENCY_LEVELS[due])) {
+                // Scheduling for now would retry on every tick
+                escalationFailures.increment();
+                int attempt = escalationAttempts.merge(requestId, 1, Integer::sum);
+                scheduleUrgencyTimer(requestId, now + (escalationRetryMs << Math.min(attempt - 1, 10)));
+                return;
+            }
+            escalationAttempts.remove(requestId);
+            escalations.increment();
+            System.out.println("Blood request " + requestId + " escalated to " + URGENCY_LEVELS[due] + " urgency");
+            contactNextWave(requestId);
+        }
+
+        scheduleEscalation(request, now);
+    }
+
+    /**
+     * Schedule the next urgency step of a request, if it has one left
+     * Without a required date there is nothing to draw near, so the
+     * submitted urgency is kept.
+     */
+    private void scheduleEscalation(BloodRequest request, long now) {
+        int current = levelOf(request.getUrgency());
+        if (request.getRequiredDate() == null || current >= URGENCY_LEVELS.length - 1) {
+            forgetEscalation(request.getRequestId());
+            return;
+        }
+
+        long dueMs = dueMillis(request);
+        long at = levelAt(request, now) > current ? now : dueMs - escalateWithinMs[current + 1];
+        scheduleUrgencyTimer(request.getRequestId(), at);
+    }
+
+    private void scheduleUrgencyTimer(int requestId, long at) {
+        TimingWheel.Timeout<Integer> timer = urgencyWheel.schedule(at, requestId);
+        TimingWheel.Timeout<Integer> previous = urgencyTimers.put(requestId, timer);
+        if (previous != null) {
+            urgencyWheel.cancel(previous);
+        }
+    }
+
+    private void forgetEscalation(int requestId) {
+        escalationAttempts.remove(requestId);
+        TimingWheel.Timeout<Integer> timer = urgencyTimers.remove(requestId);
+        if (timer != null) {
+            urgencyWheel.cancel(timer);
+        }
+    }
+
+    /**
+     * Add a response deadline unless the donor already has one
+     * @return true if a deadline was added
+     */
+    private boolean scheduleResponse(int requestId, int donorId, long deadlineMs) {
+        long key = DonorMatchDAO.key(requestId, donorId);
+        boolean[] added = {false};
+        responseTimers.computeIfAbsent(key, k -> {
+            added[0] = true;
+            return responseWheel.schedule(deadlineMs, k);
+        });
+        return added[0];
+    }
+
+    /**
+     * Count one contacted donor of a request as settled
+     * @return true if it was the last one the request was waiting for
+     */
+    private boolean settle(int requestId) {
+        boolean[] last = {false};
+        outstanding.computeIfPresent(requestId, (id, count) -> {
+            if (count <= 1) {
+                last[0] = true;
+                return null;
+            }
+            return count - 1;
+        });
+        return last[0];
+    }
+
+    /**
+     * Rebuild deadlines from the database after a start
+     */
+    private void recover() {
+        long now = System.currentTimeMillis();
+
+        int requests = bloodRequestDAO.loadPendingRequests(request -> scheduleEscalation(request, now));
+
+        int contacts = donorMatchDAO.loadOutstandingContacts((requestId, donorId, contactedAt, urgency) -> {
+            long contactedMs = contactedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (scheduleResponse(requestId, donorId, contactedMs + responseTimeout(urgency))) {
+                outstanding.merge(requestId, 1, Integer::sum);
+            }
+        });
+
+        int stalled = donorMatchDAO.loadRequestsAwaitingWave(requestId -> execute(() -> contactNextWave(requestId)));
+
+        System.out.println("Escalation scheduler tracking " + requests + " pending request(s), "
+                         + contacts + " outstanding donor contact(s), " + stalled + " stalled request(s)");
+    }
+
+    private void execute(Runnable task) {
+        if (!running) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error in escalation task: " + e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected after shutdown
+        }
+    }
+
+    /**
+     * Current state of a request if it is still pending, or null
+     */
+    private BloodRequest pendingRequest(int requestId) {
+        PendingRequestIndex index = PendingRequestIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.get(requestId);
+        }
+        BloodRequest request = bloodRequestDAO.getBloodRequestById(requestId);
+        return request != null && "pending".equals(request.getStatus()) ? request : null;
+    }
+
+    private long responseTimeout(String urgency) {
+        return responseTimeoutMs[levelOf(urgency)];
+    }
+
+    /**
+     * Urgency level a request should have at a given time
+     */
+    private int levelAt(BloodRequest request, long timeMs) {
+        if (request.getRequiredDate() == null) {
+            return 0;
+        }
+        long remaining = dueMillis(request) - timeMs;
+        for (int level = URGENCY_LEVELS.length - 1; level > 0; level--) {
+            if (remaining <= escalateWithinMs[level]) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    private static long dueMillis(BloodRequest request) {
+        return request.getRequiredDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static int levelOf(String urgency) {
+        for (int level = 0; level < URGENCY_LEVELS.length; level++) {
+            if (URGENCY_LEVELS[level].equals(urgency)) {
+                return level;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Build a point-in-time view of the scheduler for the metrics endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("wavesContacted", wavesContacted.sum());
+        counters.put("donorsContacted", donorsContacted.sum());
+        counters.put("responses", responses.sum());
+        counters.put("noResponses", noResponses.sum());
+        counters.put("escalations", escalations.sum());
+        counters.put("escalationFailures", escalationFailures.sum());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("running", running);
+        if (running) {
+            snapshot.put("responseDeadlines", responseWheel.size());
+            snapshot.put("urgencyDeadlines", urgencyWheel.size());
+            snapshot.put("queuedTasks", workers.getQueue().size());
+        }
+        snapshot.put("requestsAwaitingResponses", outstanding.size());
+        snapshot.put("counters", counters);
+        return snapshot;
+    }
+}
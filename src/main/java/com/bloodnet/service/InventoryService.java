@@ -0,0 +1,381 @@
+package com.bloodnet.service;
+
+import com.bloodnet.dao.BloodInventoryDAO;
+import com.bloodnet.model.InventoryLevel;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.BloodTypeUtil;
+import com.bloodnet.util.LatencyHistogram;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inventory Service for BloodNet Application
+ * Keeps every hospital's stock of each blood type in memory and reserves,
+ * releases and consumes units without touching the database. A stock's
+ * available and reserved counts are packed into one AtomicLong, so each
+ * operation is a single compare-and-set that moves units between the two
+ * and fails instead of letting either count go negative: concurrent
+ * reservations can never over-commit a stock, and they never wait on an
+ * InnoDB row lock.
+ *
+ * Changed stocks are marked dirty and a background thread writes them
+ * back every {@code inventory.flushIntervalMs} as one batched upsert of
+ * their current counts, so any number of operations on a stock between
+ * flushes cost one row write. The service owns blood_inventory while it
+ * runs: rows changed behind its back are overwritten on the next write
+ * to the same stock, and it assumes a single application instance.
+ */
+public class InventoryService {
+
+    private static final InventoryService INSTANCE = new InventoryService();
+
+    private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+    private final Set<Stock> dirty = ConcurrentHashMap.newKeySet();
+    private final BloodInventoryDAO inventoryDAO;
+
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder consumptions = new LongAdder();
+    private final LongAdder restocks = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LatencyHistogram flushMicros = new LatencyHistogram();
+
+    private long flushIntervalMs;
+    private int writeBatchSize;
+    private volatile boolean loaded = false;
+    private volatile boolean running = false;
+    private Thread flushThread;
+
+    private InventoryService() {
+        this(new BloodInventoryDAO());
+    }
+
+    /**
+     * Service writing through the given DAO; the application uses {@link #getInstance}
+     */
+    InventoryService(BloodInventoryDAO inventoryDAO) {
+        this.inventoryDAO = inventoryDAO;
+    }
+
+    public static InventoryService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load the stock levels and start the write-behind thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        flushIntervalMs = AppConfig.getLong("inventory.flushIntervalMs", 500);
+        writeBatchSize = Math.max(1, AppConfig.getInt("inventory.writeBatchSize", 500));
+        load();
+        running = true;
+
+        flushThread = new Thread(this::flushLoop, "bloodnet-inventory-writer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Stop the write-behind thread and write the outstanding changes
+     */
+    public void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = flushThread;
+            flushThread = null;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Changes that raced with shutdown
+        flush();
+    }
+
+    /**
+     * Hold units of a blood type for a blood request
+     * @return true if reserved, false if fewer units are available or the stock is unknown
+     */
+    public boolean reserve(int hospitalId, String bloodType, int units) {
+        if (apply(find(hospitalId, bloodType), units, -units, units)) {
+            reservations.increment();
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Return reserved units to the available stock
+     * @return true if released, false if fewer units are reserved or the stock is unknown
+     */
+    public boolean release(int hospitalId, String bloodType, int units) {
+        if (apply(find(hospitalId, bloodType), units, units, -units)) {
+            releases.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take reserved units out of stock once they are transfused or shipped
+     * @return true if consumed, false if fewer units are reserved or the stock is unknown
+     */
+    public boolean consume(int hospitalId, String bloodType, int units) {
+        if (apply(find(hospitalId, bloodType), units, 0, -units)) {
+            consumptions.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add donated or delivered units to the available stock
+     * Creates the stock if the hospital has none of this blood type yet.
+     * @return true if added, false if the blood type is unknown or the inventory is not loaded
+     */
+    public boolean restock(int hospitalId, String bloodType, int units) {
+        int group = BloodTypeUtil.groupOf(bloodType);
+        if (group < 0 || !loaded) {
+            return false;
+        }
+
+        Stock stock = stocks.computeIfAbsent(key(hospitalId, group), k -> new Stock(hospitalId, group, 0, 0));
+        if (apply(stock, units, units, 0)) {
+            restocks.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the current stock of one blood type
+     * @return level, or null if the hospital has no stock of it
+     */
+    public InventoryLevel getLevel(int hospitalId, String bloodType) {
+        Stock stock = find(hospitalId, bloodType);
+        return stock != null ? stock.toLevel() : null;
+    }
+
+    /**
+     * Get the current stock of every blood type a hospital holds
+     * @return levels in blood type order
+     */
+    public List<InventoryLevel> getLevels(int hospitalId) {
+        List<InventoryLevel> levels = new ArrayList<>();
+        for (int group = 0; group < BloodTypeUtil.GROUP_COUNT; group++) {
+            Stock stock = stocks.get(key(hospitalId, group));
+            if (stock != null) {
+                levels.add(stock.toLevel());
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Whether the stock levels have been loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private Stock find(int hospitalId, String bloodType) {
+        int group = BloodTypeUtil.groupOf(bloodType);
+        return group < 0 ? null : stocks.get(key(hospitalId, group));
+    }
+
+    /**
+     * Move units between the available and reserved counts in one step
+     * @return false, leaving the stock unchanged, if a count would leave [0, Integer.MAX_VALUE]
+     */
+    private boolean apply(Stock stock, int units, int availableDelta, int reservedDelta) {
+        if (stock == null || units <= 0) {
+            return false;
+        }
+
+        while (true) {
+            long current = stock.state.get();
+            long available = availableOf(current) + (long) availableDelta;
+            long reserved = reservedOf(current) + (long) reservedDelta;
+            if (available < 0 || reserved < 0 || available > Integer.MAX_VALUE || reserved > Integer.MAX_VALUE) {
+                return false;
+            }
+            if (stock.state.compareAndSet(current, pack((int) available, (int) reserved))) {
+                break;
+            }
+            casRetries.increment();
+        }
+
+        // Marked after the change, so a flush that already took the stock picks it up next time
+        dirty.add(stock);
+        if (!running) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Read blood_inventory into memory, replacing nothing that is already there
+     */
+    private void load() {
+        List<InventoryLevel> levels = inventoryDAO.loadAll();
+        if (levels == null) {
+            // Retried by the write-behind thread; until then only reads succeed, and they find nothing
+            return;
+        }
+
+        for (InventoryLevel level : levels) {
+            int group = BloodTypeUtil.groupOf(level.getBloodType());
+            if (group >= 0) {
+                stocks.putIfAbsent(key(level.getHospitalId(), group),
+                        new Stock(level.getHospitalId(), group,
+                                  Math.max(0, level.getUnitsAvailable()), Math.max(0, level.getUnitsReserved())));
+            }
+        }
+        loaded = true;
+        System.out.println("✓ Blood inventory loaded: " + levels.size() + " stock level(s)");
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                // Shutdown requested; the caller flushes
+                return;
+            }
+            try {
+                if (loaded) {
+                    flush();
+                } else {
+                    load();
+                }
+            } catch (RuntimeException e) {
+                // Keep the writer alive; dirty stocks stay marked for the next flush
+                System.err.println("Error in blood inventory writer: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the current counts of all dirty stocks in one transaction
+     * Never throws: on any failure the stocks are marked dirty again.
+     */
+    private synchronized void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        // Unmark each stock before reading it; a change after the read marks it again
+        List<Stock> taken = new ArrayList<>();
+        List<InventoryLevel> levels = new ArrayList<>();
+        for (Stock stock : dirty) {
+            if (dirty.remove(stock)) {
+                taken.add(stock);
+                levels.add(stock.toLevel());
+            }
+        }
+        if (levels.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            inventoryDAO.writeLevels(levels, writeBatchSize);
+            flushMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            flushes.increment();
+            rowsWritten.add(levels.size());
+        } catch (SQLException | RuntimeException e) {
+            writeFailures.increment();
+            System.err.println("Error writing " + levels.size() + " blood inventory level(s): " + e.getMessage());
+            // Mark them again so the next flush retries with whatever the counts are then
+            dirty.addAll(taken);
+        }
+    }
+
+    /**
+     * Build a point-in-time view of the inventory for the metrics endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("reservations", reservations.sum());
+        counters.put("rejections", rejections.sum());
+        counters.put("releases", releases.sum());
+        counters.put("consumptions", consumptions.sum());
+        counters.put("restocks", restocks.sum());
+        counters.put("casRetries", casRetries.sum());
+        counters.put("flushes", flushes.sum());
+        counters.put("rowsWritten", rowsWritten.sum());
+        counters.put("writeFailures", writeFailures.sum());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("loaded", loaded);
+        snapshot.put("stocks", stocks.size());
+        snapshot.put("pendingWrites", dirty.size());
+        snapshot.put("counters", counters);
+        snapshot.put("flushMicros", flushMicros.summary());
+        return snapshot;
+    }
+
+    private static long key(int hospitalId, int group) {
+        return ((long) hospitalId << 3) | group;
+    }
+
+    private static long pack(int available, int reserved) {
+        return ((long) available << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int availableOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int reservedOf(long state) {
+        return (int) state;
+    }
+
+    /**
+     * One hospital's stock of one blood type
+     */
+    private static final class Stock {
+        private final int hospitalId;
+        private final int group;
+        private final AtomicLong state;
+
+        Stock(int hospitalId, int group, int available, int reserved) {
+            this.hospitalId = hospitalId;
+            this.group = group;
+            this.state = new AtomicLong(pack(available, reserved));
+        }
+
+        InventoryLevel toLevel() {
+            long current = state.get();
+            return new InventoryLevel(hospitalId, BloodTypeUtil.typeOf(group),
+                                      availableOf(current), reservedOf(current));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.Notification;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.function.Predicate;
+
+/**
+ * Log Notification Channel for BloodNet Application
+ * Stand-in for an SMS or email gateway: appends each notification as one
+ * tab-separated line to {@code <outbox dir>/<channel name>.log}. Recipients
+ * are logged by user type and ID only, never by phone or address.
+ */
+public class LogNotificationChannel implements NotificationChannel {
+
+    private final String name;
+    private final Path file;
+    private final Predicate<Notification> filter;
+    private BufferedWriter writer;
+
+    /**
+     * @param name Channel name, e.g. "sms"
+     * @param outboxDir Directory of the log file
+     * @param filter Notifications this channel sends
+     */
+    public LogNotificationChannel(String name, Path outboxDir, Predicate<Notification> filter) {
+        this.name = name;
+        this.file = outboxDir.resolve(name + ".log");
+        this.filter = filter;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean accepts(Notification notification) {
+        return filter.test(notification);
+    }
+
+    @Override
+    public synchronized void send(Notification notification) throws IOException {
+        if (writer == null) {
+            Files.createDirectories(file.getParent());
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                             StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        try {
+            writer.write(LocalDateTime.now() + "\t" + notification.getUserType() + ":" + notification.getUserId()
+                       + "\t" + notification.getNotificationType() + "\t" + oneLine(notification.getTitle())
+                       + "\t" + oneLine(notification.getMessage()));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            // Reopen on the next attempt
+            closeWriter();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeWriter();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error closing " + file + ": " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private static String oneLine(String text) {
+        return text == null ? "" : text.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,374 @@
+package com.bloodnet.service;
+
+import com.bloodnet.dao.DonorDAO;
+import com.bloodnet.dao.DonorIndex;
+import com.bloodnet.dao.DonorMatchWriter;
+import com.bloodnet.model.BloodRequest;
+import com.bloodnet.model.Donor;
+import com.bloodnet.model.DonorMatch;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.GeoGridIndex;
+import com.bloodnet.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Matching Pipeline for BloodNet Application
+ * Matches donors to newly submitted blood requests in the background. A
+ * request passes three stages, each with its own thread pool and a bounded
+ * number of slots: candidate retrieval, scoring with the {@link DonorRanker},
+ * and a batched upsert into donor_matches, after which the
+ * {@link EscalationScheduler} contacts the best-ranked donors in waves. A
+ * stage that is full blocks the stage before it, so a burst backs up to the
+ * entrance instead of piling up in memory. Within every stage the most
+ * urgent request runs first, and the entrance keeps some slots free for high
+ * and critical requests only. Requests without coordinates are searched
+ * around their ZIP code or city when it can be located; otherwise their
+ * whole city is searched without the radius, which the unlocatedSearches
+ * counter reports.
+ */
+public class MatchingPipeline {
+
+    private static final MatchingPipeline INSTANCE = new MatchingPipeline();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder unlocatedSearches = new LongAdder();
+    private final LatencyHistogram matchMillis = new LatencyHistogram();
+    private final LatencyHistogram urgentMatchMillis = new LatencyHistogram();
+
+    private DonorDAO donorDAO;
+    private DonorRanker donorRanker;
+    private double maxDistanceKm;
+    private int maxMatchesPerRequest;
+    private int urgentReserve;
+    private Stage retrieval;
+    private Stage scoring;
+    private Stage persistence;
+    private volatile boolean running = false;
+
+    private MatchingPipeline() {}
+
+    public static MatchingPipeline getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start the stage pools
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        maxDistanceKm = AppConfig.getInt("matching.maxDistanceKm", 50);
+        maxMatchesPerRequest = AppConfig.getInt("matching.maxMatchesPerRequest", 500);
+        int capacity = AppConfig.getInt("matching.stageCapacity", 200);
+        urgentReserve = Math.min(capacity - 1, AppConfig.getInt("matching.urgentReserve", 20));
+
+        donorDAO = new DonorDAO();
+        donorRanker = new DonorRanker(DonorIndex.getInstance().getEligibilityCalendar());
+
+        retrieval = new Stage("retrieval", AppConfig.getInt("matching.retrievalThreads", 2), capacity);
+        scoring = new Stage("scoring", AppConfig.getInt("matching.scoringThreads", 2), capacity);
+        persistence = new Stage("persistence", AppConfig.getInt("matching.persistenceThreads", 2), capacity);
+        running = true;
+    }
+
+    /**
+     * Stop accepting requests and let each stage finish in order
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        long timeoutMs = AppConfig.getLong("matching.shutdownTimeoutMs", 5000);
+        retrieval.shutdown(timeoutMs);
+        scoring.shutdown(timeoutMs);
+        persistence.shutdown(timeoutMs);
+    }
+
+    /**
+     * Queue a saved blood request for matching
+     * Never blocks. When the entrance is full only high and critical
+     * requests are still taken; others stay pending without matches.
+     * @param request Saved blood request
+     * @return true if the request was queued
+     */
+    public boolean submit(BloodRequest request) {
+        if (!running) {
+            return false;
+        }
+
+        Job job = new Job(request, sequence.incrementAndGet());
+        int keepFree = job.isUrgent() ? 0 : urgentReserve;
+        if (!retrieval.tryEnqueue(job, this::retrieve, keepFree)) {
+            rejected.increment();
+            System.err.println("Matching pipeline full, blood request " + request.getRequestId() + " not matched");
+            return false;
+        }
+
+        submitted.increment();
+        return true;
+    }
+
+    /**
+     * Stage 1: find eligible donors around the request
+     */
+    private void retrieve(Job job) {
+        BloodRequest request = job.request;
+        if (GeoGridIndex.isGeocoded(request.getLatitude(), request.getLongitude())) {
+            job.center = new double[] {request.getLatitude(), request.getLongitude()};
+        } else {
+            job.center = donorDAO.locateSearchCenter(request.getZipCode(), request.getCity(), request.getState());
+        }
+
+        if (job.center != null) {
+            job.candidates = donorDAO.findEligibleDonorsNear(request.getBloodType(),
+                job.center[0], job.center[1], maxDistanceKm);
+        } else {
+            unlocatedSearches.increment();
+            System.out.println("Blood request " + request.getRequestId() + " could not be located; "
+                             + "searching all of " + request.getCity() + " without a radius");
+            job.candidates = donorDAO.findEligibleDonors(request.getBloodType(),
+                request.getCity(), request.getState());
+        }
+
+        handOff(scoring, job, this::score);
+    }
+
+    /**
+     * Stage 2: rank the candidates and keep the best
+     */
+    private void score(Job job) {
+        BloodRequest request = job.request;
+        List<Donor> candidates = job.candidates;
+        DonorRanker.Ranking ranking = donorRanker.rank(candidates, request.getUrgency(), maxMatchesPerRequest);
+        double[] center = job.center;
+
+        List<DonorMatch> matches = new ArrayList<>(ranking.size());
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            Donor donor = candidates.get(ranking.getPosition(rank));
+            double distance = 0.0;
+            if (center != null && GeoGridIndex.isGeocoded(donor.getLatitude(), donor.getLongitude())) {
+                distance = GeoGridIndex.distanceKm(center[0], center[1], donor.getLatitude(), donor.getLongitude());
+                distance = Math.round(distance * 100.0) / 100.0;
+            }
+            matches.add(new DonorMatch(request.getRequestId(), donor.getDonorId(), ranking.getScore(rank), distance));
+        }
+
+        job.candidates = null;
+        job.matches = matches;
+        handOff(persistence, job, this::persist);
+    }
+
+    /**
+     * Stage 3: write the matches in a few multi-row batches
+     */
+    private void persist(Job job) {
+        if (!DonorMatchWriter.getInstance().write(job.request.getRequestId(), job.matches)) {
+            failed.increment();
+            return;
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.submittedAtNanos);
+        matchMillis.record(elapsedMs);
+        if (job.isUrgent()) {
+            urgentMatchMillis.record(elapsedMs);
+        }
+        matched.increment();
+
+        EscalationScheduler.getInstance().matched(job.request, job.matches);
+    }
+
+    /**
+     * Pass a job to the next stage, waiting for a free slot there
+     */
+    private void handOff(Stage next, Job job, Consumer<Job> work) {
+        try {
+            next.enqueue(job, work);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+            System.err.println("Matching of blood request " + job.request.getRequestId() + " interrupted");
+        }
+    }
+
+    /**
+     * Build a point-in-time view of the pipeline for the metrics endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stages = new LinkedHashMap<>();
+        if (running) {
+            stages.put(retrieval.name, retrieval.snapshot());
+            stages.put(scoring.name, scoring.snapshot());
+            stages.put(persistence.name, persistence.snapshot());
+        }
+
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("submitted", submitted.sum());
+        counters.put("rejected", rejected.sum());
+        counters.put("matched", matched.sum());
+        counters.put("failed", failed.sum());
+        counters.put("unlocatedSearches", unlocatedSearches.sum());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("running", running);
+        snapshot.put("stages", stages);
+        snapshot.put("counters", counters);
+        snapshot.put("matchMillis", matchMillis.summary());
+        snapshot.put("urgentMatchMillis", urgentMatchMillis.summary());
+        return snapshot;
+    }
+
+    /**
+     * One blood request on its way through the pipeline
+     */
+    private static final class Job {
+        private final BloodRequest request;
+        private final int priority;
+        private final long sequence;
+        private final long submittedAtNanos = System.nanoTime();
+        private double[] center;
+        private List<Donor> candidates;
+        private List<DonorMatch> matches;
+
+        Job(BloodRequest request, long sequence) {
+            this.request = request;
+            this.priority = request.getUrgency() != null ? request.getUrgencyPriority() : 0;
+            this.sequence = sequence;
+        }
+
+        boolean isUrgent() {
+            return priority >= 3;
+        }
+    }
+
+    /**
+     * A stage's work on one job; more urgent jobs first, then in arrival order
+     */
+    private static final class Task implements Runnable, Comparable<Task> {
+        private final Job job;
+        private final Consumer<Job> work;
+        private final Semaphore slots;
+
+        Task(Job job, Consumer<Job> work, Semaphore slots) {
+            this.job = job;
+            this.work = work;
+            this.slots = slots;
+        }
+
+        @Override
+        public void run() {
+            try {
+                work.accept(job);
+            } catch (RuntimeException e) {
+                System.err.println("Error matching blood request " + job.request.getRequestId() + ": " + e.getMessage());
+            } finally {
+                slots.release();
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (job.priority != other.job.priority) {
+                return Integer.compare(other.job.priority, job.priority);
+            }
+            return Long.compare(job.sequence, other.job.sequence);
+        }
+    }
+
+    /**
+     * A thread pool with a bounded number of queued and running jobs
+     */
+    private static final class Stage {
+        private final String name;
+        private final int capacity;
+        private final Semaphore slots;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder completed = new LongAdder();
+
+        Stage(String name, int threads, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+            this.slots = new Semaphore(capacity);
+
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bloodnet-matching-" + name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+
+        /**
+         * Take a job if a slot is free, leaving {@code keepFree} slots for others
+         * The reserve is approximate under contention.
+         */
+        boolean tryEnqueue(Job job, Consumer<Job> work, int keepFree) {
+            if (slots.availablePermits() <= keepFree || !slots.tryAcquire()) {
+                return false;
+            }
+            return execute(job, work);
+        }
+
+        /**
+         * Take a job, waiting for a free slot
+         */
+        void enqueue(Job job, Consumer<Job> work) throws InterruptedException {
+            slots.acquire();
+            execute(job, work);
+        }
+
+        private boolean execute(Job job, Consumer<Job> work) {
+            try {
+                executor.execute(new Task(job, work.andThen(done -> completed.increment()), slots));
+                return true;
+            } catch (RuntimeException e) {
+                // Rejected after shutdown
+                slots.release();
+                return false;
+            }
+        }
+
+        void shutdown(long timeoutMs) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    System.err.println("Matching " + name + " stage did not finish, " + executor.getQueue().size() + " job(s) dropped");
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("threads", executor.getMaximumPoolSize());
+            snapshot.put("active", executor.getActiveCount());
+            snapshot.put("queued", executor.getQueue().size());
+            snapshot.put("capacity", capacity);
+            snapshot.put("completed", completed.sum());
+            return snapshot;
+        }
+    }
+}
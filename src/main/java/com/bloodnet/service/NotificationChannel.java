@@ -0,0 +1,34 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.Notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Notification Channel for BloodNet Application
+ * A way of reaching a user outside the app, such as SMS or email. The
+ * {@link NotificationDispatcher} paces each channel to its own rate limit
+ * and retries failed sends, so implementations only make one attempt.
+ */
+public interface NotificationChannel extends Closeable {
+
+    /**
+     * Channel name, also used for its configuration keys
+     */
+    String getName();
+
+    /**
+     * Whether a notification should go out over this channel
+     */
+    boolean accepts(Notification notification);
+
+    /**
+     * Send one notification
+     * @throws IOException if the send failed and may be retried
+     */
+    void send(Notification notification) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+}
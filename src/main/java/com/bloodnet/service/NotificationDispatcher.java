@@ -0,0 +1,666 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.BloodRequest;
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.model.DonorMatch;
+import com.bloodnet.model.Notification;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.DBConnection;
+import com.bloodnet.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Notification Dispatcher for BloodNet Application
+ * Turns application events (a submitted blood request, new donor matches,
+ * a chat message) into notifications. Callers only enqueue into a bounded
+ * queue and never wait; a single writer thread inserts what has arrived
+ * as one JDBC batch, so alerting thousands of donors holds one pooled
+ * connection for a few round-trips.
+ *
+ * Committed notifications are then handed to the registered
+ * {@link NotificationChannel}s. Each channel has a bounded outbox and a
+ * token-bucket rate limit; a small shared worker pool sends whatever the
+ * limits allow, so a slow or throttled channel never holds up the others.
+ * Failed sends wait in a bounded retry queue with exponential backoff.
+ */
+public class NotificationDispatcher {
+
+    private static final NotificationDispatcher INSTANCE = new NotificationDispatcher();
+
+    private static final String INSERT_SQL = "INSERT INTO notifications (user_id, user_type, notification_type, " +
+                                             "title, message, is_read, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_TITLE_LENGTH = 200;
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final List<ChannelState> channels = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> lastMessageNotice = new ConcurrentHashMap<>();
+    private final Object workSignal = new Object();
+    private final AtomicInteger retrySize = new AtomicInteger();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LatencyHistogram batchMillis = new LatencyHistogram();
+
+    private BlockingQueue<Notification> queue;
+    private DelayQueue<Delivery> retryQueue;
+    private int batchSize;
+    private int retryCapacity;
+    private int maxAttempts;
+    private long retryDelayMs;
+    private long messageCoalesceMs;
+    private volatile long lastCoalesceSweep = 0;
+    private volatile boolean running = false;
+    private volatile boolean flushed = false;
+    private Thread writerThread;
+    private Thread retryThread;
+    private ExecutorService deliveryPool;
+
+    private NotificationDispatcher() {}
+
+    public static NotificationDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start the writer, retry and delivery threads with the stand-in SMS and email channels
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(AppConfig.getInt("notifications.queueCapacity", 10000));
+        retryQueue = new DelayQueue<>();
+        retrySize.set(0);
+        batchSize = AppConfig.getInt("notifications.batchSize", 500);
+        retryCapacity = AppConfig.getInt("notifications.retryCapacity", 1000);
+        maxAttempts = AppConfig.getInt("notifications.maxAttempts", 5);
+        retryDelayMs = AppConfig.getLong("notifications.retryDelayMs", 1000);
+        messageCoalesceMs = AppConfig.getLong("notifications.messageCoalesceMs", 300000);
+
+        Path outboxDir = Paths.get(AppConfig.getString("notifications.outboxDir",
+                System.getProperty("user.home") + "/bloodnet/outbox"));
+        channels.clear();
+        register(new LogNotificationChannel("sms", outboxDir, Notification::isUrgent));
+        register(new LogNotificationChannel("email", outboxDir,
+            notification -> !"message".equals(notification.getNotificationType())));
+
+        running = true;
+        flushed = false;
+
+        writerThread = new Thread(this::writeLoop, "bloodnet-notification-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        retryThread = new Thread(this::retryLoop, "bloodnet-notification-retry");
+        retryThread.setDaemon(true);
+        retryThread.start();
+
+        int threads = AppConfig.getInt("notifications.deliveryThreads", 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        deliveryPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bloodnet-notification-delivery-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            deliveryPool.execute(this::deliveryLoop);
+        }
+    }
+
+    /**
+     * Stop accepting notifications, write what is queued and give the
+     * channels a bounded time to send their outboxes
+     */
+    public void shutdown() {
+        Thread writer;
+        Thread retry;
+        ExecutorService pool;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            writer = writerThread;
+            retry = retryThread;
+            pool = deliveryPool;
+            writerThread = null;
+            retryThread = null;
+            deliveryPool = null;
+        }
+
+        writer.interrupt();
+        retry.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Everything is routed now; delivery workers exit once the outboxes are empty
+        flushed = true;
+        wakeDeliveryWorkers();
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(AppConfig.getLong("notifications.shutdownTimeoutMs", 5000), TimeUnit.MILLISECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+
+        int unsent = retrySize.get();
+        for (ChannelState state : channels) {
+            unsent += state.outbox.size();
+            try {
+                state.channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing notification channel " + state.channel.getName() + ": " + e.getMessage());
+            }
+        }
+        if (unsent > 0) {
+            System.err.println("Notification dispatcher stopped with " + unsent + " unsent delivery(ies)");
+        }
+    }
+
+    /**
+     * Add a delivery channel, rate-limited by {@code notifications.<name>.ratePerSecond}
+     */
+    public void register(NotificationChannel channel) {
+        double ratePerSecond = AppConfig.getInt("notifications." + channel.getName() + ".ratePerSecond", 10);
+        int outboxCapacity = AppConfig.getInt("notifications.outboxCapacity", 10000);
+        channels.add(new ChannelState(channel, new ArrayBlockingQueue<>(outboxCapacity), ratePerSecond));
+    }
+
+    /**
+     * Queue a notification for the next batch
+     * Never blocks; when the queue is full the notification is dropped.
+     * @return true if the notification was queued
+     */
+    public boolean enqueue(Notification notification) {
+        if (!running) {
+            return false;
+        }
+
+        if (notification.getTitle() != null && notification.getTitle().length() > MAX_TITLE_LENGTH) {
+            notification.setTitle(notification.getTitle().substring(0, MAX_TITLE_LENGTH));
+        }
+
+        if (!queue.offer(notification)) {
+            dropped.increment();
+            return false;
+        }
+        queued.increment();
+        return true;
+    }
+
+    /**
+     * A blood request was saved; confirm it to its requester
+     */
+    public void bloodRequestSubmitted(BloodRequest request) {
+        enqueue(new Notification(request.getRequesterId(), request.getRequesterType(), "blood_request",
+            "Blood request #" + request.getRequestId() + " submitted",
+            "We are looking for " + request.getBloodType() + " donors near " + request.getCity()
+                + " for your request of " + request.getUnitsRequired() + " unit(s).",
+            false));
+    }
+
+    /**
+     * Donors were matched to a blood request; tell the requester
+     */
+    public void donorsMatched(BloodRequest request, int count) {
+        enqueue(new Notification(request.getRequesterId(), request.getRequesterType(), "donor_match",
+            count + " donor(s) matched to request #" + request.getRequestId(),
+            "The best-matched donors are being alerted and can reply in the request's chat.", false));
+    }
+
+    /**
+     * A wave of matched donors is being contacted about a blood request
+     * Donors of high and critical requests are also alerted by SMS.
+     */
+    public void donorsContacted(BloodRequest request, List<DonorMatch> wave) {
+        boolean urgent = request.isUrgent();
+        String title = (urgent ? "Urgent: " : "") + request.getBloodType() + " blood needed in " + request.getCity();
+        String message = request.getUnitsRequired() + " unit(s) of " + request.getBloodType() + " blood are needed at "
+                       + (request.getHospitalName() != null ? request.getHospitalName() : request.getCity())
+                       + (request.getRequiredDate() != null ? " by " + request.getRequiredDate().toLocalDate() : "")
+                       + ". You are a match for request #" + request.getRequestId() + "; reply in its chat.";
+
+        for (DonorMatch match : wave) {
+            if (!enqueue(new Notification(match.getDonorId(), "donor", "donor_match", title, message, urgent))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * A chat message was committed; tell the other participants
+     * A participant gets at most one message notification per request
+     * within {@code notifications.messageCoalesceMs}.
+     */
+    public void messageSent(ChatMessage message) {
+        if (!running) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        sweepMessageNotices(now);
+
+        UnreadCounterService.getInstance().forEachRecipient(message, (userId, userType) -> {
+            String key = userType + ":" + userId + ":" + message.getRequestId();
+            Long previous = lastMessageNotice.get(key);
+            if (previous != null && now - previous < messageCoalesceMs) {
+                return;
+            }
+            lastMessageNotice.put(key, now);
+
+            enqueue(new Notification(userId, userType, "message",
+                "New messages on request #" + message.getRequestId(),
+                message.getSenderName() + " sent you a message.", false));
+        });
+    }
+
+    /**
+     * Forget coalescing marks older than the window, at most once per window
+     */
+    private void sweepMessageNotices(long now) {
+        if (now - lastCoalesceSweep < messageCoalesceMs) {
+            return;
+        }
+        lastCoalesceSweep = now;
+        lastMessageNotice.values().removeIf(sentAt -> now - sentAt >= messageCoalesceMs);
+    }
+
+    private void writeLoop() {
+        List<Notification> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Notification first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // Shutdown requested; loop again to flush what is left
+                continue;
+            }
+
+            if (!running) {
+                // Clear a pending shutdown interrupt so the final flush can borrow a connection
+                Thread.interrupted();
+            }
+            try {
+                writeBatch(batch);
+                route(batch);
+            } catch (RuntimeException e) {
+                // Keep the writer alive; the batch is lost but later ones still go out
+                System.err.println("Error dispatching " + batch.size() + " notification(s): " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Insert a batch in one transaction and update the unread counters
+     * Never throws: a failed insert is counted and logged, and a failing
+     * counter update is logged without touching notifications already written.
+     */
+    private void writeBatch(List<Notification> batch) {
+        long start = System.nanoTime();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Notification notification : batch) {
+                    stmt.setInt(1, notification.getUserId());
+                    stmt.setString(2, notification.getUserType());
+                    stmt.setString(3, notification.getNotificationType());
+                    stmt.setString(4, notification.getTitle());
+                    stmt.setString(5, notification.getMessage());
+                    stmt.setBoolean(6, notification.isRead());
+                    stmt.setTimestamp(7, Timestamp.valueOf(notification.getCreatedAt()));
+                    stmt.addBatch();
+                }
+
+                stmt.executeBatch();
+                conn.commit();
+
+                // Keys come back in batch order
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (Notification notification : batch) {
+                        if (keys.next()) {
+                            notification.setNotificationId(keys.getInt(1));
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException | RuntimeException e) {
+            writeFailures.add(batch.size());
+            System.err.println("Error writing " + batch.size() + " notification(s): " + e.getMessage());
+            return;
+        }
+
+        batchMillis.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        written.add(batch.size());
+
+        UnreadCounterService unreadCounters = UnreadCounterService.getInstance();
+        for (Notification notification : batch) {
+            try {
+                unreadCounters.notificationCreated(notification.getUserId(), notification.getUserType());
+            } catch (RuntimeException e) {
+                System.err.println("Error counting notification " + notification.getNotificationId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Put a batch into the outboxes of the channels that take it
+     * Runs even if the insert failed, so urgent alerts still leave by SMS.
+     * A channel that fails to route is skipped for the rest of the batch.
+     */
+    private void route(List<Notification> batch) {
+        boolean any = false;
+        for (ChannelState state : channels) {
+            try {
+                for (Notification notification : batch) {
+                    if (state.channel.accepts(notification)) {
+                        if (state.outbox.offer(new Delivery(state, notification))) {
+                            any = true;
+                        } else {
+                            state.dropped.increment();
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error routing notifications to " + state.channel.getName() + ": " + e.getMessage());
+            }
+        }
+        if (any) {
+            wakeDeliveryWorkers();
+        }
+    }
+
+    /**
+     * Send from the outboxes as fast as their rate limits allow
+     * Channels are visited in turn so a busy channel cannot starve another.
+     */
+    private void deliveryLoop() {
+        int next = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            List<ChannelState> current = channels;
+            int count = current.size();
+            boolean sent = false;
+            boolean pending = false;
+            long waitNanos = MAX_IDLE_NANOS;
+
+            for (int i = 0; i < count; i++) {
+                ChannelState state = current.get((next + i) % count);
+                if (state.outbox.isEmpty()) {
+                    continue;
+                }
+                pending = true;
+
+                long wait = state.limiter.tryAcquire();
+                if (wait > 0) {
+                    waitNanos = Math.min(waitNanos, wait);
+                    continue;
+                }
+
+                Delivery delivery = state.outbox.poll();
+                if (delivery == null) {
+                    // Another worker took it
+                    state.limiter.release();
+                    continue;
+                }
+                send(delivery);
+                sent = true;
+            }
+            next = count == 0 ? 0 : (next + 1) % count;
+
+            if (flushed && !pending) {
+                return;
+            }
+            if (!sent) {
+                idle(waitNanos);
+            }
+        }
+    }
+
+    private void send(Delivery delivery) {
+        ChannelState state = delivery.state;
+        try {
+            state.channel.send(delivery.notification);
+            state.sent.increment();
+        } catch (IOException | RuntimeException e) {
+            state.failed.increment();
+            delivery.attempts++;
+            if (delivery.attempts >= maxAttempts) {
+                state.abandoned.increment();
+                System.err.println("Giving up on " + state.channel.getName() + " notification to "
+                                 + delivery.notification.getUserType() + " " + delivery.notification.getUserId()
+                                 + " after " + delivery.attempts + " attempt(s): " + e.getMessage());
+                return;
+            }
+            retryLater(delivery);
+        }
+    }
+
+    /**
+     * Park a failed delivery until its backoff has passed, if the retry queue has room
+     */
+    private void retryLater(Delivery delivery) {
+        if (retrySize.incrementAndGet() > retryCapacity) {
+            retrySize.decrementAndGet();
+            delivery.state.abandoned.increment();
+            return;
+        }
+
+        long delayMs = retryDelayMs << Math.min(delivery.attempts - 1, 10);
+        delivery.dueAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        retryQueue.put(delivery);
+    }
+
+    /**
+     * Move due retries back into their channel's outbox
+     */
+    private void retryLoop() {
+        while (running) {
+            Delivery delivery;
+            try {
+                delivery = retryQueue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            retrySize.decrementAndGet();
+
+            if (delivery.state.outbox.offer(delivery)) {
+                wakeDeliveryWorkers();
+            } else {
+                delivery.state.abandoned.increment();
+            }
+        }
+    }
+
+    private void idle(long nanos) {
+        synchronized (workSignal) {
+            try {
+                TimeUnit.NANOSECONDS.timedWait(workSignal, Math.max(nanos, TimeUnit.MILLISECONDS.toNanos(1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void wakeDeliveryWorkers() {
+        synchronized (workSignal) {
+            workSignal.notifyAll();
+        }
+    }
+
+    /**
+     * Number of notifications waiting to be written
+     */
+    public int getQueueSize() {
+        BlockingQueue<Notification> current = queue;
+        return current == null ? 0 : current.size();
+    }
+
+    /**
+     * Build a point-in-time view of the dispatcher for the metrics endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("queued", queued.sum());
+        counters.put("dropped", dropped.sum());
+        counters.put("written", written.sum());
+        counters.put("writeFailures", writeFailures.sum());
+
+        Map<String, Object> channelStats = new LinkedHashMap<>();
+        for (ChannelState state : channels) {
+            channelStats.put(state.channel.getName(), state.snapshot());
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("running", running);
+        snapshot.put("queueSize", getQueueSize());
+        snapshot.put("retryQueueSize", retrySize.get());
+        snapshot.put("counters", counters);
+        snapshot.put("channels", channelStats);
+        snapshot.put("batchMillis", batchMillis.summary());
+        return snapshot;
+    }
+
+    /**
+     * A channel with its outbox, rate limit and counters
+     */
+    private static final class ChannelState {
+        private final NotificationChannel channel;
+        private final BlockingQueue<Delivery> outbox;
+        private final RateLimiter limiter;
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder abandoned = new LongAdder();
+
+        ChannelState(NotificationChannel channel, BlockingQueue<Delivery> outbox, double ratePerSecond) {
+            this.channel = channel;
+            this.outbox = outbox;
+            this.limiter = new RateLimiter(ratePerSecond);
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("ratePerSecond", limiter.permitsPerSecond);
+            snapshot.put("outbox", outbox.size());
+            snapshot.put("sent", sent.sum());
+            snapshot.put("failed", failed.sum());
+            snapshot.put("dropped", dropped.sum());
+            snapshot.put("abandoned", abandoned.sum());
+            return snapshot;
+        }
+    }
+
+    /**
+     * One notification on its way out over one channel
+     */
+    private static final class Delivery implements Delayed {
+        private final ChannelState state;
+        private final Notification notification;
+        private int attempts = 0;
+        private long dueAtNanos;
+
+        Delivery(ChannelState state, Notification notification) {
+            this.state = state;
+            this.notification = notification;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtNanos, ((Delivery) other).dueAtNanos);
+        }
+    }
+
+    /**
+     * Token bucket allowing bursts of up to one second's worth of sends
+     */
+    private static final class RateLimiter {
+        private final double permitsPerSecond;
+        private final double capacity;
+        private final double nanosPerPermit;
+        private double tokens;
+        private long refilledAtNanos = System.nanoTime();
+
+        RateLimiter(double permitsPerSecond) {
+            this.permitsPerSecond = Math.max(permitsPerSecond, 0.01);
+            this.capacity = Math.max(1.0, this.permitsPerSecond);
+            this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / this.permitsPerSecond;
+            this.tokens = capacity;
+        }
+
+        /**
+         * Take a permit if one is available
+         * @return 0 if taken, otherwise nanoseconds until the next permit
+         */
+        synchronized long tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAtNanos) / nanosPerPermit);
+            refilledAtNanos = now;
+
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return 0;
+            }
+            return Math.max(1, (long) ((1.0 - tokens) * nanosPerPermit));
+        }
+
+        /**
+         * Return a permit that was not used
+         */
+        synchronized void release() {
+            tokens = Math.min(capacity, tokens + 1.0);
+        }
+    }
+}
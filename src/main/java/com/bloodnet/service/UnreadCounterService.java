@@ -0,0 +1,431 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.util.AppConfig;
+import com.bloodnet.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Unread Counter Service for BloodNet Application
+ * Keeps per-user counts of unread chat messages and notifications in memory
+ * so unread badges cost a map lookup instead of a COUNT(*) over is_read.
+ * The chat writer, the read receipt flush and the notification writer report
+ * changes as they commit; a periodic reconciliation recounts from the
+ * database and corrects any drift.
+ *
+ * Chat participants of a blood request are its requester and the matched
+ * donors that have been contacted. A message is unread for every
+ * participant except its sender until it is marked as read. Participants
+ * of the {@code unread.participantCacheSize} most recently active requests
+ * are cached; a request that is not cached is loaded on a background
+ * thread, and the changes reported meanwhile wait for it, so the chat
+ * writer never queries the database here.
+ */
+public class UnreadCounterService {
+
+    private static final UnreadCounterService INSTANCE = new UnreadCounterService();
+
+    private static final String PARTICIPANTS_SQL =
+        "SELECT requester_id, requester_type FROM blood_requests WHERE request_id = ? " +
+        "UNION SELECT donor_id, 'donor' FROM donor_matches WHERE request_id = ? AND is_contacted = TRUE";
+
+    private static final String UNREAD_MESSAGES_SQL =
+        "SELECT p.user_id, p.user_type, COUNT(*) FROM chat_messages cm JOIN (" +
+        "SELECT request_id, requester_id AS user_id, requester_type AS user_type FROM blood_requests " +
+        "UNION SELECT request_id, donor_id, 'donor' FROM donor_matches WHERE is_contacted = TRUE" +
+        ") p ON p.request_id = cm.request_id " +
+        "WHERE cm.is_read = FALSE AND NOT (cm.sender_id = p.user_id AND cm.sender_type = p.user_type) " +
+        "GROUP BY p.user_id, p.user_type";
+
+    private static final String UNREAD_NOTIFICATIONS_SQL =
+        "SELECT user_id, user_type, COUNT(*) FROM notifications WHERE is_read = FALSE GROUP BY user_id, user_type";
+
+    private final Map<UserKey, Counter> counters = new ConcurrentHashMap<>();
+    private final int maxCachedRequests;
+    private ScheduledExecutorService reconciler;
+    private ExecutorService participantLoader;
+    private volatile long lastReconciledAt = 0;
+
+    // Access-ordered, so the least recently used request is dropped first
+    private final LinkedHashMap<Integer, Participants> participants = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Participants> eldest) {
+            return size() > maxCachedRequests;
+        }
+    };
+
+    private UnreadCounterService() {
+        maxCachedRequests = Math.max(1, AppConfig.getInt("unread.participantCacheSize", 10000));
+    }
+
+    public static UnreadCounterService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Count from the database now and then periodically
+     */
+    public synchronized void start() {
+        if (reconciler != null) {
+            return;
+        }
+
+        long intervalMs = AppConfig.getLong("unread.reconcileIntervalMs", 300000);
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bloodnet-unread-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcile, 0, intervalMs, TimeUnit.MILLISECONDS);
+
+        participantLoader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bloodnet-unread-participants");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop reconciling
+     */
+    public synchronized void shutdown() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+            reconciler = null;
+        }
+        if (participantLoader != null) {
+            participantLoader.shutdownNow();
+            participantLoader = null;
+        }
+    }
+
+    /**
+     * A chat message was committed
+     */
+    public void messageSent(ChatMessage message) {
+        UserKey sender = new UserKey(message.getSenderId(), message.getSenderType());
+        withParticipants(message.getRequestId(), members -> {
+            for (UserKey member : members) {
+                if (!member.equals(sender)) {
+                    counter(member).messages.increment();
+                }
+            }
+        });
+    }
+
+    /**
+     * Call {@code action} with the user ID and type of every participant of a
+     * message's request except its sender
+     * If the participants are not cached, this happens later on the loader thread.
+     */
+    public void forEachRecipient(ChatMessage message, BiConsumer<Integer, String> action) {
+        UserKey sender = new UserKey(message.getSenderId(), message.getSenderType());
+        withParticipants(message.getRequestId(), members -> {
+            for (UserKey member : members) {
+                if (!member.equals(sender)) {
+                    action.accept(member.userId, member.userType);
+                }
+            }
+        });
+    }
+
+    /**
+     * Messages of one sender were marked as read
+     * They stop being unread for every participant except that sender.
+     * @param count Number of messages marked
+     */
+    public void messagesRead(int requestId, int senderId, String senderType, int count) {
+        UserKey sender = new UserKey(senderId, senderType);
+        withParticipants(requestId, members -> {
+            for (UserKey member : members) {
+                if (!member.equals(sender)) {
+                    counter(member).messages.add(-count);
+                }
+            }
+        });
+    }
+
+    /**
+     * A notification was created for a user
+     */
+    public void notificationCreated(int userId, String userType) {
+        counter(new UserKey(userId, userType)).notifications.increment();
+    }
+
+    /**
+     * Notifications of a user were marked as read
+     * @param count Number of notifications marked
+     */
+    public void notificationsRead(int userId, String userType, int count) {
+        counter(new UserKey(userId, userType)).notifications.add(-count);
+    }
+
+    /**
+     * Forget the cached participants of a request, e.g. after donors were contacted
+     */
+    public void invalidateParticipants(int requestId) {
+        synchronized (participants) {
+            participants.remove(requestId);
+        }
+    }
+
+    /**
+     * Unread chat messages of a user
+     */
+    public long getUnreadMessages(int userId, String userType) {
+        Counter counter = counters.get(new UserKey(userId, userType));
+        return counter == null ? 0 : counter.unreadMessages();
+    }
+
+    /**
+     * Unread notifications of a user
+     */
+    public long getUnreadNotifications(int userId, String userType) {
+        Counter counter = counters.get(new UserKey(userId, userType));
+        return counter == null ? 0 : counter.unreadNotifications();
+    }
+
+    /**
+     * Time of the last successful reconciliation, or 0 if none yet
+     */
+    public long getLastReconciledAt() {
+        return lastReconciledAt;
+    }
+
+    /**
+     * Recount unread messages and notifications from the database
+     * Updates made while the counts are read may be counted twice until the
+     * next reconciliation.
+     */
+    public void reconcile() {
+        // Remember what every counter had before the snapshot; later updates are kept on top
+        Map<UserKey, long[]> before = new HashMap<>();
+        for (Map.Entry<UserKey, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            before.put(entry.getKey(), new long[] {counter.messages.sum(), counter.notifications.sum()});
+        }
+
+        Map<UserKey, Long> unreadMessages;
+        Map<UserKey, Long> unreadNotifications;
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            unreadMessages = countByUser(stmt, UNREAD_MESSAGES_SQL);
+            unreadNotifications = countByUser(stmt, UNREAD_NOTIFICATIONS_SQL);
+
+        } catch (SQLException e) {
+            System.err.println("Error reconciling unread counts: " + e.getMessage());
+            return;
+        }
+
+        synchronized (participants) {
+            participants.clear();
+        }
+
+        for (Map.Entry<UserKey, long[]> entry : before.entrySet()) {
+            long[] sums = entry.getValue();
+            Counter counter = counters.get(entry.getKey());
+            counter.messageBase = unreadMessages.getOrDefault(entry.getKey(), 0L) - sums[0];
+            counter.notificationBase = unreadNotifications.getOrDefault(entry.getKey(), 0L) - sums[1];
+        }
+
+        // Counters created since the snapshot; their own updates are kept on top
+        for (Map.Entry<UserKey, Long> entry : unreadMessages.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                counter(entry.getKey()).messages.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<UserKey, Long> entry : unreadNotifications.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                counter(entry.getKey()).notifications.add(entry.getValue());
+            }
+        }
+
+        lastReconciledAt = System.currentTimeMillis();
+    }
+
+    private Map<UserKey, Long> countByUser(Statement stmt, String sql) throws SQLException {
+        Map<UserKey, Long> counts = new HashMap<>();
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                counts.put(new UserKey(rs.getInt(1), rs.getString(2)), rs.getLong(3));
+            }
+        }
+        return counts;
+    }
+
+    private Counter counter(UserKey user) {
+        return counters.computeIfAbsent(user, key -> new Counter());
+    }
+
+    /**
+     * Run {@code action} with the participants of a request
+     * Runs now if they are cached; otherwise starts loading them if nobody
+     * has yet and runs once they are loaded. If they cannot be read the
+     * action is dropped and the next reconciliation corrects the counts.
+     */
+    private void withParticipants(int requestId, Consumer<Set<UserKey>> action) {
+        Participants entry;
+        boolean load = false;
+        synchronized (participants) {
+            entry = participants.get(requestId);
+            if (entry == null) {
+                entry = new Participants();
+                participants.put(requestId, entry);
+                load = true;
+            }
+        }
+
+        Set<UserKey> members;
+        synchronized (entry) {
+            members = entry.members;
+            if (members == null) {
+                entry.waiting.add(action);
+            }
+        }
+        if (members != null) {
+            action.accept(members);
+        }
+
+        if (load) {
+            Participants loading = entry;
+            ExecutorService loader = participantLoader;
+            if (loader != null) {
+                try {
+                    loader.execute(() -> load(requestId, loading));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Shutting down; load it here instead
+                }
+            }
+            load(requestId, loading);
+        }
+    }
+
+    /**
+     * Read the participants of a request and run the actions waiting for them
+     */
+    private void load(int requestId, Participants entry) {
+        Set<UserKey> members = new HashSet<>();
+        boolean loaded;
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PARTICIPANTS_SQL)) {
+
+            stmt.setInt(1, requestId);
+            stmt.setInt(2, requestId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    members.add(new UserKey(rs.getInt(1), rs.getString(2)));
+                }
+            }
+            loaded = true;
+
+        } catch (SQLException e) {
+            System.err.println("Error loading chat participants of blood request " + requestId + ": " + e.getMessage());
+            loaded = false;
+        }
+
+        List<Consumer<Set<UserKey>>> waiting;
+        synchronized (entry) {
+            // A failed load leaves an empty set, so actions that still find this entry do nothing
+            entry.members = loaded ? Collections.unmodifiableSet(members) : Collections.emptySet();
+            waiting = entry.waiting;
+            entry.waiting = null;
+        }
+
+        if (!loaded) {
+            synchronized (participants) {
+                participants.remove(requestId, entry);
+            }
+            return;
+        }
+
+        for (Consumer<Set<UserKey>> action : waiting) {
+            try {
+                action.accept(entry.members);
+            } catch (RuntimeException e) {
+                System.err.println("Error updating unread counts of blood request " + requestId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unread counts of one user: database base plus changes since
+     */
+    private static final class Counter {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder notifications = new LongAdder();
+        private volatile long messageBase = 0;
+        private volatile long notificationBase = 0;
+
+        long unreadMessages() {
+            return Math.max(0, messageBase + messages.sum());
+        }
+
+        long unreadNotifications() {
+            return Math.max(0, notificationBase + notifications.sum());
+        }
+    }
+
+    /**
+     * Participants of one request, or the actions waiting for them while they load
+     */
+    private static final class Participants {
+        private Set<UserKey> members;
+        private List<Consumer<Set<UserKey>>> waiting = new ArrayList<>();
+    }
+
+    /**
+     * A user of a given type
+     */
+    private static final class UserKey {
+        private final int userId;
+        private final String userType;
+
+        UserKey(int userId, String userType) {
+            this.userId = userId;
+            this.userType = userType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            UserKey other = (UserKey) o;
+            return userId == other.userId && Objects.equals(userType, other.userType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, userType);
+        }
+    }
+}
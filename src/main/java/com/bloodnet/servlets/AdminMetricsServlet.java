@@ -0,0 +1,53 @@
+package com.bloodnet.servlets;
+
+import com.bloodnet.dao.DonorMatchWriter;
+import com.bloodnet.service.EscalationScheduler;
+import com.bloodnet.service.InventoryService;
+import com.bloodnet.service.MatchingPipeline;
+import com.bloodnet.service.NotificationDispatcher;
+import com.bloodnet.util.DBConnection;
+import com.bloodnet.util.JsonResponseWriter;
+import com.bloodnet.util.ZipCodeGeocoder;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * AdminMetricsServlet - Exposes operational metrics
+ * Reports connection pool saturation, borrow latency and usage so that
+ * pool pressure is visible before request latency spikes, and the queue
+ * depth and latency of donor matching, its match writes, escalation
+ * deadlines, notifications, ZIP code geocoding and blood inventory writes
+ */
+@WebServlet("/admin/metrics")
+public class AdminMetricsServlet extends HttpServlet {
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        // Set response content type
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        result.put("connectionPool", DBConnection.getMetrics().snapshot());
+        result.put("matchingPipeline", MatchingPipeline.getInstance().snapshot());
+        result.put("donorMatchWriter", DonorMatchWriter.getInstance().snapshot());
+        result.put("escalation", EscalationScheduler.getInstance().snapshot());
+        result.put("notifications", NotificationDispatcher.getInstance().snapshot());
+        result.put("geocoder", ZipCodeGeocoder.getInstance().snapshot());
+        result.put("inventory", InventoryService.getInstance().snapshot());
+        
+        JsonResponseWriter.write(response, result);
+    }
+}
@@ -0,0 +1,321 @@
+package com.bloodnet.servlets;
+
+import com.bloodnet.dao.ChatDAO;
+import com.bloodnet.dto.ChatMessageResponse;
+import com.bloodnet.model.ChatAttachment;
+import com.bloodnet.model.ChatMessage;
+import com.bloodnet.service.AttachmentStore;
+import com.bloodnet.util.JsonResponseWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.MultipartConfig;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.Part;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AttachmentServlet - Handles image and file chat messages
+ * POST uploads a file into a request's chat; GET serves a message's file or
+ * thumbnail with ETag and single byte-range support. Both are limited to the
+ * request's participants: its requester and the donors contacted for it. Files are
+ * sent with the container's sendfile when available and
+ * FileChannel.transferTo otherwise, so their content never passes through
+ * the heap.
+ */
+@WebServlet("/chat/attachment")
+@MultipartConfig(fileSizeThreshold = 64 * 1024, maxFileSize = 32L * 1024 * 1024, maxRequestSize = 33L * 1024 * 1024)
+public class AttachmentServlet extends HttpServlet {
+
+    private ChatDAO chatDAO;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        chatDAO = new ChatDAO();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Check if user is logged in
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("userType") == null) {
+            response.sendRedirect("../login.jsp");
+            return;
+        }
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new HashMap<>();
+
+        String userType = (String) session.getAttribute("userType");
+        Integer senderId = null;
+        String senderName = null;
+        if ("donor".equals(userType)) {
+            senderId = (Integer) session.getAttribute("donorId");
+            senderName = (String) session.getAttribute("donorName");
+        } else if ("hospital".equals(userType)) {
+            senderId = (Integer) session.getAttribute("hospitalId");
+            senderName = (String) session.getAttribute("hospitalName");
+        }
+
+        if (senderId == null || senderName == null) {
+            result.put("success", false);
+            result.put("message", "Invalid user session");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+
+        try {
+            String requestId = request.getParameter("requestId");
+            if (requestId == null || requestId.trim().isEmpty()) {
+                result.put("success", false);
+                result.put("message", "Request ID is required");
+                JsonResponseWriter.write(response, result);
+                return;
+            }
+            int id = Integer.parseInt(requestId.trim());
+
+            if (!chatDAO.isParticipant(id, senderId, userType)) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                result.put("success", false);
+                result.put("message", "You are not a participant of this request's chat");
+                JsonResponseWriter.write(response, result);
+                return;
+            }
+
+            Part file = request.getPart("file");
+            if (file == null || file.getSize() == 0) {
+                result.put("success", false);
+                result.put("message", "File is required");
+                JsonResponseWriter.write(response, result);
+                return;
+            }
+
+            AttachmentStore store = AttachmentStore.getInstance();
+            ChatAttachment attachment;
+            try {
+                attachment = store.store(file.getInputStream(), file.getContentType(), file.getSubmittedFileName());
+            } finally {
+                file.delete();
+            }
+
+            ChatMessage chatMessage = new ChatMessage(id, senderId, userType, senderName, attachment.toMessageText());
+            chatMessage.setMessageType(attachment.isImage() ? "image" : "file");
+
+            if (chatDAO.saveMessage(chatMessage)) {
+                result.put("success", true);
+                result.put("message", "File sent successfully");
+                result.put("chatMessage", new ChatMessageResponse(chatMessage));
+            } else {
+                result.put("success", false);
+                result.put("message", "Failed to send file");
+            }
+
+        } catch (NumberFormatException e) {
+            result.put("success", false);
+            result.put("message", "Invalid request ID");
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        } catch (IllegalStateException e) {
+            // Multipart limits exceeded
+            result.put("success", false);
+            result.put("message", "File is too large");
+        } catch (Exception e) {
+            System.err.println("Error uploading attachment: " + e.getMessage());
+            e.printStackTrace();
+
+            result.put("success", false);
+            result.put("message", "An error occurred while sending the file");
+        }
+
+        JsonResponseWriter.write(response, result);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Check if user is logged in
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("userType") == null) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        ChatMessage message;
+        ChatAttachment attachment;
+        try {
+            message = chatDAO.getMessageById(Integer.parseInt(request.getParameter("messageId")));
+            attachment = message == null ? null : message.getAttachment();
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid message ID");
+            return;
+        }
+        if (attachment == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String userType = (String) session.getAttribute("userType");
+        Integer userId = (Integer) session.getAttribute("donor".equals(userType) ? "donorId" : "hospitalId");
+        if (userId == null || !chatDAO.isParticipant(message.getRequestId(), userId, userType)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        AttachmentStore store = AttachmentStore.getInstance();
+        boolean thumbnail = "true".equals(request.getParameter("thumbnail")) && attachment.isImage();
+        Path path = thumbnail ? store.getThumbnail(attachment.getHash()) : store.getBlob(attachment.getHash());
+        if (path == null) {
+            // Thumbnails are rendered in the background; clients show the file icon meanwhile
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // Content is addressed by hash, so it never changes under the same tag
+        String etag = "\"" + attachment.getHash() + (thumbnail ? "-thumb" : "") + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "private, max-age=31536000, immutable");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (etagMatches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(thumbnail ? "image/jpeg" : attachment.getContentType());
+        String disposition = attachment.isImage() || thumbnail ? "inline" : "attachment";
+        response.setHeader("Content-Disposition", disposition + "; filename*=UTF-8''"
+            + URLEncoder.encode(attachment.getFileName(), StandardCharsets.UTF_8).replace("+", "%20"));
+
+        long length = Files.size(path);
+        long start = 0;
+        long end = length - 1;
+
+        // Honour a single byte range unless If-Range names another version
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        // Let the container send the file from the kernel page cache
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", path.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Parse a Range header
+     * @return {start, end} for one satisfiable range, an empty array to send
+     *         the whole file, or null if the range cannot be satisfied
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            // Multiple ranges are answered with the whole file
+            return new long[0];
+        }
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[] {start, end};
+
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static boolean etagMatches(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,7 +1,12 @@
 package com.bloodnet.servlets;
 
+import com.bloodnet.dao.ChatDAO;
+import com.bloodnet.dto.ChatMessageResponse;
 import com.bloodnet.model.ChatMessage;
+import com.bloodnet.service.ChatSubscriberRegistry;
+import com.bloodnet.util.JsonResponseWriter;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -12,17 +17,34 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * ChatServlet - Handles donor-hospital communication
- * Manages message exchange between donors and hospitals for blood requests
+ * Manages message exchange between donors and hospitals for blood requests.
+ * Clients can hold an event stream open (action=subscribe) to receive new
+ * messages as soon as they are saved instead of polling getMessages.
+ * Every action is limited to the request's chat participants: its requester
+ * and the donors contacted for it.
  */
-@WebServlet("/chat")
+@WebServlet(value = "/chat", asyncSupported = true)
 public class ChatServlet extends HttpServlet {
     
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    
+    private ChatDAO chatDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        chatDAO = new ChatDAO();
+    }
+    
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
@@ -37,10 +59,15 @@ public class ChatServlet extends HttpServlet {
         // Get request parameters
         String requestId = request.getParameter("requestId");
         String action = request.getParameter("action");
+        String userType = (String) session.getAttribute("userType");
+        Integer userId = (Integer) session.getAttribute("donor".equals(userType) ? "donorId" : "hospitalId");
         
         if ("getMessages".equals(action)) {
             // Get chat messages for a specific request
-            getChatMessages(requestId, response, session);
+            getChatMessages(requestId, userId, userType, request, response);
+        } else if ("subscribe".equals(action)) {
+            // Stream new messages for a specific request
+            subscribe(requestId, userId, userType, request, response);
         } else {
             // Forward to chat page
             request.setAttribute("requestId", requestId);
@@ -88,7 +115,16 @@ public class ChatServlet extends HttpServlet {
             if (senderId == null || senderName == null) {
                 result.put("success", false);
                 result.put("message", "Invalid user session");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
+                return;
+            }
+            
+            if (("sendMessage".equals(action) || "markAsRead".equals(action))
+                    && isOutsider(requestId, senderId, userType)) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                result.put("success", false);
+                result.put("message", "You are not a participant of this request's chat");
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
@@ -97,7 +133,7 @@ public class ChatServlet extends HttpServlet {
                 sendMessage(requestId, senderId, userType, senderName, message, messageType, result);
             } else if ("markAsRead".equals(action)) {
                 // Mark messages as read
-                markMessagesAsRead(requestId, senderId, result);
+                markMessagesAsRead(requestId, request.getParameter("upToMessageId"), senderId, userType, result);
             } else {
                 result.put("success", false);
                 result.put("message", "Invalid action");
@@ -111,13 +147,18 @@ public class ChatServlet extends HttpServlet {
             result.put("message", "An error occurred. Please try again.");
         }
         
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, result);
     }
     
     /**
      * Get chat messages for a specific request
+     * Without cursors the whole conversation is returned. sinceMessageId
+     * returns only newer messages and before pages back through older ones,
+     * both limited to pageSize. The conversation version is sent as an ETag
+     * so an unchanged chat is answered with 304 Not Modified.
      */
-    private void getChatMessages(String requestId, HttpServletResponse response, HttpSession session) 
+    private void getChatMessages(String requestId, Integer userId, String userType,
+                                 HttpServletRequest request, HttpServletResponse response) 
             throws IOException {
         
         response.setContentType("application/json");
@@ -129,37 +170,77 @@ public class ChatServlet extends HttpServlet {
             if (requestId == null || requestId.trim().isEmpty()) {
                 result.put("success", false);
                 result.put("message", "Request ID is required");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
-            // Get messages from database (placeholder implementation)
-            List<ChatMessage> messages = getMessagesFromDatabase(requestId);
+            int id = Integer.parseInt(requestId.trim());
+            if (userId == null || !chatDAO.isParticipant(id, userId, userType)) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                result.put("success", false);
+                result.put("message", "You are not a participant of this request's chat");
+                JsonResponseWriter.write(response, result);
+                return;
+            }
+            
+            Integer sinceMessageId = parseOptionalInt(request.getParameter("sinceMessageId"));
+            Integer beforeMessageId = parseOptionalInt(request.getParameter("before"));
+            Integer pageSize = parseOptionalInt(request.getParameter("pageSize"));
+            
+            // Answer unchanged conversations without reading any messages
+            String version = chatDAO.getConversationVersion(id);
+            if (version != null) {
+                String etag = "W/\"" + id + "-" + version + "\"";
+                response.setHeader("ETag", etag);
+                response.setHeader("Cache-Control", "private, no-cache");
+                if (matchesETag(request.getHeader("If-None-Match"), etag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+            
+            int limit = pageSize == null
+                      ? DEFAULT_PAGE_SIZE
+                      : Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+            
+            // Fetch one extra message to learn whether another page exists
+            List<ChatMessage> messages;
+            boolean hasMore = false;
+            if (sinceMessageId != null) {
+                messages = chatDAO.getMessagesAfter(id, sinceMessageId, limit + 1);
+                if (messages.size() > limit) {
+                    messages = messages.subList(0, limit);
+                    hasMore = true;
+                }
+            } else if (beforeMessageId != null) {
+                messages = chatDAO.getMessagesBefore(id, beforeMessageId, limit + 1);
+                if (messages.size() > limit) {
+                    messages = messages.subList(1, messages.size());
+                    hasMore = true;
+                }
+            } else {
+                messages = chatDAO.getMessagesByRequestId(id);
+            }
             
             // Convert to response format
-            List<Map<String, Object>> messageList = new ArrayList<>();
+            List<ChatMessageResponse> messageList = new ArrayList<>(messages.size());
             for (ChatMessage msg : messages) {
-                Map<String, Object> messageData = new HashMap<>();
-                messageData.put("messageId", msg.getMessageId());
-                messageData.put("senderId", msg.getSenderId());
-                messageData.put("senderType", msg.getSenderType());
-                messageData.put("senderName", msg.getSenderName());
-                messageData.put("message", msg.getMessage());
-                messageData.put("messageType", msg.getMessageType());
-                messageData.put("isRead", msg.isRead());
-                messageData.put("sentAt", msg.getSentAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-                messageData.put("formattedTime", msg.getFormattedTime());
-                messageData.put("isFromDonor", msg.isFromDonor());
-                messageData.put("isFromHospital", msg.isFromHospital());
-                
-                messageList.add(messageData);
+                messageList.add(new ChatMessageResponse(msg));
             }
             
             result.put("success", true);
             result.put("messages", messageList);
             result.put("requestId", requestId);
             result.put("totalMessages", messages.size());
+            result.put("hasMore", hasMore);
+            if (!messages.isEmpty()) {
+                result.put("oldestMessageId", messages.get(0).getMessageId());
+                result.put("newestMessageId", messages.get(messages.size() - 1).getMessageId());
+            }
             
+        } catch (NumberFormatException e) {
+            result.put("success", false);
+            result.put("message", "Invalid request ID or message cursor");
         } catch (Exception e) {
             System.err.println("Error getting chat messages: " + e.getMessage());
             e.printStackTrace();
@@ -168,7 +249,104 @@ public class ChatServlet extends HttpServlet {
             result.put("message", "Failed to retrieve messages");
         }
         
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, result);
+    }
+    
+    /**
+     * Parse an optional integer parameter
+     * @return value, or null if the parameter is absent
+     * @throws NumberFormatException if the parameter is not a number
+     */
+    private static Integer parseOptionalInt(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return Integer.valueOf(value.trim());
+    }
+    
+    /**
+     * Check whether a user is not a participant of a request's chat
+     * A missing or malformed request ID is left to the action to report.
+     */
+    private boolean isOutsider(String requestId, int userId, String userType) {
+        if (requestId == null || requestId.trim().isEmpty()) {
+            return false;
+        }
+        try {
+            return !chatDAO.isParticipant(Integer.parseInt(requestId.trim()), userId, userType);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Check an If-None-Match header against the current entity tag
+     */
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Open a Server-Sent Events stream of new messages for a request
+     * A reconnecting EventSource sends Last-Event-ID and first receives the
+     * messages it missed. On the first connect, where EventSource cannot send
+     * that header, clients pass the newest message they loaded as
+     * sinceMessageId so nothing sent in between is lost.
+     */
+    private void subscribe(String requestId, Integer userId, String userType,
+                           HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        
+        int id;
+        int lastEventId;
+        try {
+            if (requestId == null || requestId.trim().isEmpty()) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Request ID is required");
+                return;
+            }
+            id = Integer.parseInt(requestId.trim());
+            Integer lastEvent = parseOptionalInt(request.getHeader("Last-Event-ID"));
+            if (lastEvent == null) {
+                lastEvent = parseOptionalInt(request.getParameter("sinceMessageId"));
+            }
+            lastEventId = lastEvent == null ? -1 : lastEvent;
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid request ID or message cursor");
+            return;
+        }
+        
+        if (userId == null || !chatDAO.isParticipant(id, userId, userType)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+        
+        // Read by the registry once the stream is registered, so nothing falls in between
+        int resumeAfter = lastEventId;
+        Supplier<List<ChatMessage>> backlog = () -> resumeAfter >= 0
+                                                  ? chatDAO.getMessagesAfter(id, resumeAfter)
+                                                  : Collections.<ChatMessage>emptyList();
+        
+        AsyncContext asyncContext = request.startAsync();
+        if (!ChatSubscriberRegistry.getInstance().subscribe(id, asyncContext, backlog)) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+        }
     }
     
     /**
@@ -200,19 +378,22 @@ public class ChatServlet extends HttpServlet {
             
             // Create chat message
             ChatMessage chatMessage = new ChatMessage(
-                Integer.parseInt(requestId), 
+                Integer.parseInt(requestId.trim()), 
                 senderId, 
                 userType, 
                 senderName, 
                 message.trim()
             );
             
-            if (messageType != null && !messageType.trim().isEmpty()) {
-                chatMessage.setMessageType(messageType);
+            // Image and file messages are created by uploads to /chat/attachment
+            if (messageType != null && !messageType.trim().isEmpty() && !"text".equals(messageType.trim())) {
+                result.put("success", false);
+                result.put("message", "Attachments must be uploaded to chat/attachment");
+                return;
             }
             
-            // Save message to database (placeholder implementation)
-            boolean saveSuccess = saveMessageToDatabase(chatMessage);
+            // Save message to database
+            boolean saveSuccess = chatDAO.saveMessage(chatMessage);
             
             if (saveSuccess) {
                 result.put("success", true);
@@ -246,8 +427,11 @@ public class ChatServlet extends HttpServlet {
     
     /**
      * Mark messages as read
+     * Clients should pass upToMessageId, the newest message they displayed;
+     * without it everything sent so far is marked.
      */
-    private void markMessagesAsRead(String requestId, Integer userId, Map<String, Object> result) {
+    private void markMessagesAsRead(String requestId, String upToMessageId, Integer userId, String userType,
+                                    Map<String, Object> result) {
         try {
             if (requestId == null || requestId.trim().isEmpty()) {
                 result.put("success", false);
@@ -255,17 +439,22 @@ public class ChatServlet extends HttpServlet {
                 return;
             }
             
-            // Mark messages as read in database (placeholder implementation)
-            boolean updateSuccess = markMessagesAsReadInDatabase(requestId, userId);
+            // Record the receipt; it is written with the next read receipt flush
+            int markedUpTo = chatDAO.markMessagesAsRead(Integer.parseInt(requestId.trim()), userId, userType,
+                                                        parseOptionalInt(upToMessageId));
             
-            if (updateSuccess) {
+            if (markedUpTo >= 0) {
                 result.put("success", true);
                 result.put("message", "Messages marked as read");
+                result.put("markedUpTo", markedUpTo);
             } else {
                 result.put("success", false);
                 result.put("message", "Failed to mark messages as read");
             }
             
+        } catch (NumberFormatException e) {
+            result.put("success", false);
+            result.put("message", "Invalid request ID");
         } catch (Exception e) {
             System.err.println("Error marking messages as read: " + e.getMessage());
             e.printStackTrace();
@@ -274,200 +463,4 @@ public class ChatServlet extends HttpServlet {
             result.put("message", "An error occurred while marking messages as read");
         }
     }
-    
-    /**
-     * Get messages from database (placeholder implementation)
-     * In a real application, this would use a ChatDAO
-     */
-    private List<ChatMessage> getMessagesFromDatabase(String requestId) {
-        List<ChatMessage> messages = new ArrayList<>();
-        
-        try {
-            // For demo purposes, create some sample messages
-            // In real implementation, use ChatDAO.getMessagesByRequestId(requestId)
-            
-            ChatMessage message1 = new ChatMessage(
-                Integer.parseInt(requestId), 
-                1, 
-                "hospital", 
-                "BloodNet General Hospital", 
-                "Thank you for your interest in donating blood. We need 2 units of O+ blood urgently."
-            );
-            message1.setMessageId(1);
-            message1.setSentAt(LocalDateTime.now().minusHours(2));
-            message1.setRead(true);
-            messages.add(message1);
-            
-            ChatMessage message2 = new ChatMessage(
-                Integer.parseInt(requestId), 
-                2, 
-                "donor", 
-                "John Doe", 
-                "I'm available to donate. When would be the best time to come in?"
-            );
-            message2.setMessageId(2);
-            message2.setSentAt(LocalDateTime.now().minusHours(1));
-            message2.setRead(true);
-            messages.add(message2);
-            
-            ChatMessage message3 = new ChatMessage(
-                Integer.parseInt(requestId), 
-                1, 
-                "hospital", 
-                "BloodNet General Hospital", 
-                "We're open 24/7. You can come anytime today. Please bring a valid ID."
-            );
-            message3.setMessageId(3);
-            message3.setSentAt(LocalDateTime.now().minusMinutes(30));
-            message3.setRead(false);
-            messages.add(message3);
-            
-        } catch (NumberFormatException e) {
-            System.err.println("Invalid request ID: " + requestId);
-        }
-        
-        return messages;
-    }
-    
-    /**
-     * Save message to database (placeholder implementation)
-     * In a real application, this would use a ChatDAO
-     */
-    private boolean saveMessageToDatabase(ChatMessage message) {
-        try {
-            // For demo purposes, simulate database save
-            // In real implementation, use ChatDAO.saveMessage(message)
-            
-            // Generate a mock message ID
-            message.setMessageId((int) (System.currentTimeMillis() % 100000));
-            
-            // Simulate database operation delay
-            Thread.sleep(50);
-            
-            return true;
-            
-        } catch (Exception e) {
-            System.err.println("Error saving message: " + e.getMessage());
-            return false;
-        }
-    }
-    
-    /**
-     * Mark messages as read in database (placeholder implementation)
-     * In a real application, this would use a ChatDAO
-     */
-    private boolean markMessagesAsReadInDatabase(String requestId, Integer userId) {
-        try {
-            // For demo purposes, simulate database update
-            // In real implementation, use ChatDAO.markMessagesAsRead(requestId, userId)
-            
-            // Simulate database operation delay
-            Thread.sleep(50);
-            
-            return true;
-            
-        } catch (Exception e) {
-            System.err.println("Error marking messages as read: " + e.getMessage());
-            return false;
-        }
-    }
-    
-    /**
-     * Convert Map to JSON string (simple implementation)
-     */
-    private String convertToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            } else if (value instanceof Boolean || value instanceof Integer) {
-                json.append(value);
-            } else if (value instanceof List) {
-                json.append(convertListToJson((List<?>) value));
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Convert List to JSON string
-     */
-    private String convertListToJson(List<?> list) {
-        StringBuilder json = new StringBuilder("[");
-        boolean first = true;
-        
-        for (Object item : list) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            if (item instanceof Map) {
-                json.append(convertMapToJson((Map<?, ?>) item));
-            } else if (item instanceof String) {
-                json.append("\"").append(escapeJson(item.toString())).append("\"");
-            } else {
-                json.append(item);
-            }
-        }
-        
-        json.append("]");
-        return json.toString();
-    }
-    
-    /**
-     * Convert nested Map to JSON string
-     */
-    private String convertMapToJson(Map<?, ?> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<?, ?> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            } else if (value instanceof Boolean || value instanceof Integer) {
-                json.append(value);
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Escape special characters for JSON
-     */
-    private String escapeJson(String str) {
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\b", "\\b")
-                 .replace("\f", "\\f")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
-    }
 }
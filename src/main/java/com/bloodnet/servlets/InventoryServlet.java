@@ -0,0 +1,154 @@
+package com.bloodnet.servlets;
+
+import com.bloodnet.model.InventoryLevel;
+import com.bloodnet.service.InventoryService;
+import com.bloodnet.util.BloodTypeUtil;
+import com.bloodnet.util.JsonResponseWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * InventoryServlet - Shows and changes a hospital's blood stock
+ * GET lists the logged-in hospital's units per blood type; POST reserves,
+ * releases, consumes or restocks units of one blood type
+ */
+@WebServlet("/inventory")
+public class InventoryServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Set response content type
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        Integer hospitalId = hospitalOf(request);
+        if (hospitalId == null) {
+            writeUnauthorized(response, result);
+            return;
+        }
+
+        List<Map<String, Object>> levels = new ArrayList<>();
+        for (InventoryLevel level : InventoryService.getInstance().getLevels(hospitalId)) {
+            levels.add(describe(level));
+        }
+
+        result.put("success", true);
+        result.put("hospitalId", hospitalId);
+        result.put("inventory", levels);
+        JsonResponseWriter.write(response, result);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Set response content type
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        Integer hospitalId = hospitalOf(request);
+        if (hospitalId == null) {
+            writeUnauthorized(response, result);
+            return;
+        }
+
+        String action = request.getParameter("action");
+        String bloodType = request.getParameter("bloodType");
+        int units;
+        try {
+            units = Integer.parseInt(request.getParameter("units"));
+        } catch (NumberFormatException e) {
+            units = 0;
+        }
+
+        if (action == null || BloodTypeUtil.groupOf(bloodType) < 0 || units <= 0) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            result.put("success", false);
+            result.put("message", "An action, a valid blood type and a positive number of units are required");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+        bloodType = BloodTypeUtil.typeOf(BloodTypeUtil.groupOf(bloodType));
+
+        InventoryService inventory = InventoryService.getInstance();
+        boolean done;
+        String failure;
+        switch (action.trim().toLowerCase()) {
+            case "reserve":
+                done = inventory.reserve(hospitalId, bloodType, units);
+                failure = "Not enough " + bloodType + " units available to reserve " + units;
+                break;
+            case "release":
+                done = inventory.release(hospitalId, bloodType, units);
+                failure = "Fewer than " + units + " " + bloodType + " units are reserved";
+                break;
+            case "consume":
+                done = inventory.consume(hospitalId, bloodType, units);
+                failure = "Fewer than " + units + " " + bloodType + " units are reserved";
+                break;
+            case "restock":
+                done = inventory.restock(hospitalId, bloodType, units);
+                failure = "Inventory is not available right now, please try again";
+                break;
+            default:
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                result.put("success", false);
+                result.put("message", "Action must be reserve, release, consume or restock");
+                JsonResponseWriter.write(response, result);
+                return;
+        }
+
+        InventoryLevel level = inventory.getLevel(hospitalId, bloodType);
+        if (!done) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            result.put("success", false);
+            result.put("message", failure);
+        } else {
+            result.put("success", true);
+        }
+        if (level != null) {
+            result.put("level", describe(level));
+        }
+        JsonResponseWriter.write(response, result);
+    }
+
+    /**
+     * Hospital ID of a logged-in hospital, or null
+     */
+    private Integer hospitalOf(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        return session == null || !"hospital".equals(session.getAttribute("userType"))
+                ? null : (Integer) session.getAttribute("hospitalId");
+    }
+
+    private void writeUnauthorized(HttpServletResponse response, Map<String, Object> result) throws IOException {
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        result.put("success", false);
+        result.put("message", "Please log in as a hospital");
+        JsonResponseWriter.write(response, result);
+    }
+
+    private Map<String, Object> describe(InventoryLevel level) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("bloodType", level.getBloodType());
+        map.put("unitsAvailable", level.getUnitsAvailable());
+        map.put("unitsReserved", level.getUnitsReserved());
+        return map;
+    }
+}
@@ -1,7 +1,9 @@
 package com.bloodnet.servlets;
 
 import com.bloodnet.dao.DonorDAO;
+import com.bloodnet.dto.LoginResponse;
 import com.bloodnet.model.Donor;
+import com.bloodnet.util.JsonResponseWriter;
 import com.bloodnet.util.PasswordUtil;
 
 import javax.servlet.ServletException;
@@ -11,8 +13,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * LoginServlet - Handles user authentication
@@ -51,8 +51,6 @@ public class LoginServlet extends HttpServlet {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         
-        Map<String, Object> result = new HashMap<>();
-        
         try {
             // Get form parameters
             String email = request.getParameter("email");
@@ -62,40 +60,32 @@ public class LoginServlet extends HttpServlet {
             
             // Validate input
             if (email == null || email.trim().isEmpty()) {
-                result.put("success", false);
-                result.put("message", "Email is required");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, LoginResponse.failure("Email is required"));
                 return;
             }
             
             if (password == null || password.isEmpty()) {
-                result.put("success", false);
-                result.put("message", "Password is required");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, LoginResponse.failure("Password is required"));
                 return;
             }
             
             if (userType == null || (!userType.equals("donor") && !userType.equals("hospital"))) {
-                result.put("success", false);
-                result.put("message", "Please select user type");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, LoginResponse.failure("Please select user type"));
                 return;
             }
             
             // Authenticate user
             if ("donor".equals(userType)) {
-                authenticateDonor(email, password, request, response, result, rememberMe);
+                authenticateDonor(email, password, request, response, rememberMe);
             } else if ("hospital".equals(userType)) {
-                authenticateHospital(email, password, request, response, result, rememberMe);
+                authenticateHospital(email, password, request, response, rememberMe);
             }
             
         } catch (Exception e) {
             System.err.println("Login error: " + e.getMessage());
             e.printStackTrace();
             
-            result.put("success", false);
-            result.put("message", "An error occurred during login. Please try again.");
-            response.getWriter().write(convertToJson(result));
+            JsonResponseWriter.write(response, LoginResponse.failure("An error occurred during login. Please try again."));
         }
     }
     
@@ -103,16 +93,13 @@ public class LoginServlet extends HttpServlet {
      * Authenticate donor login
      */
     private void authenticateDonor(String email, String password, HttpServletRequest request, 
-                                 HttpServletResponse response, Map<String, Object> result, 
-                                 String rememberMe) throws IOException {
+                                 HttpServletResponse response, String rememberMe) throws IOException {
         
         // Get donor by email
         Donor donor = donorDAO.getDonorByEmail(email);
         
         if (donor == null) {
-            result.put("success", false);
-            result.put("message", "Invalid email or password");
-            response.getWriter().write(convertToJson(result));
+            JsonResponseWriter.write(response, LoginResponse.failure("Invalid email or password"));
             return;
         }
         
@@ -120,17 +107,13 @@ public class LoginServlet extends HttpServlet {
         boolean passwordValid = PasswordUtil.verifyPassword(password, donor.getPasswordHash(), donor.getSalt());
         
         if (!passwordValid) {
-            result.put("success", false);
-            result.put("message", "Invalid email or password");
-            response.getWriter().write(convertToJson(result));
+            JsonResponseWriter.write(response, LoginResponse.failure("Invalid email or password"));
             return;
         }
         
         // Check if donor is active
         if (!donor.isActive()) {
-            result.put("success", false);
-            result.put("message", "Your account has been deactivated. Please contact support.");
-            response.getWriter().write(convertToJson(result));
+            JsonResponseWriter.write(response, LoginResponse.failure("Your account has been deactivated. Please contact support."));
             return;
         }
         
@@ -151,20 +134,15 @@ public class LoginServlet extends HttpServlet {
             session.setMaxInactiveInterval(60 * 60); // 1 hour
         }
         
-        result.put("success", true);
-        result.put("message", "Login successful! Welcome back, " + donor.getFirstName() + "!");
-        result.put("redirectUrl", "dashboard.jsp");
-        result.put("userType", "donor");
-        
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, LoginResponse.success(
+            "Login successful! Welcome back, " + donor.getFirstName() + "!", "dashboard.jsp", "donor"));
     }
     
     /**
      * Authenticate hospital login (placeholder implementation)
      */
     private void authenticateHospital(String email, String password, HttpServletRequest request, 
-                                    HttpServletResponse response, Map<String, Object> result, 
-                                    String rememberMe) throws IOException {
+                                    HttpServletResponse response, String rememberMe) throws IOException {
         
         // For now, implement basic hospital authentication
         // In a real application, you would have a HospitalDAO and Hospital model
@@ -186,17 +164,12 @@ public class LoginServlet extends HttpServlet {
                 session.setMaxInactiveInterval(60 * 60); // 1 hour
             }
             
-            result.put("success", true);
-            result.put("message", "Login successful! Welcome to BloodNet Hospital Portal!");
-            result.put("redirectUrl", "dashboard.jsp");
-            result.put("userType", "hospital");
+            JsonResponseWriter.write(response, LoginResponse.success(
+                "Login successful! Welcome to BloodNet Hospital Portal!", "dashboard.jsp", "hospital"));
             
         } else {
-            result.put("success", false);
-            result.put("message", "Invalid hospital credentials");
+            JsonResponseWriter.write(response, LoginResponse.failure("Invalid hospital credentials"));
         }
-        
-        response.getWriter().write(convertToJson(result));
     }
     
     /**
@@ -214,52 +187,6 @@ public class LoginServlet extends HttpServlet {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         
-        Map<String, Object> result = new HashMap<>();
-        result.put("success", true);
-        result.put("message", "Logged out successfully");
-        
-        response.getWriter().write(convertToJson(result));
-    }
-    
-    /**
-     * Convert Map to JSON string (simple implementation)
-     */
-    private String convertToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            } else if (value instanceof Boolean) {
-                json.append(value);
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Escape special characters for JSON
-     */
-    private String escapeJson(String str) {
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\b", "\\b")
-                 .replace("\f", "\\f")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
+        JsonResponseWriter.write(response, LoginResponse.success("Logged out successfully"));
     }
 }
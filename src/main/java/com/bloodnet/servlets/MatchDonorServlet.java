@@ -1,7 +1,13 @@
 package com.bloodnet.servlets;
 
 import com.bloodnet.dao.DonorDAO;
+import com.bloodnet.dao.DonorIndex;
+import com.bloodnet.dto.DonorMatchResponse;
 import com.bloodnet.model.Donor;
+import com.bloodnet.service.DonorRanker;
+import com.bloodnet.util.EligibilityCalendar;
+import com.bloodnet.util.GeoGridIndex;
+import com.bloodnet.util.JsonResponseWriter;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -10,23 +16,32 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * MatchDonorServlet - Handles donor matching for blood requests
- * Finds and returns compatible donors based on blood type and location
+ * Finds and returns compatible donors based on blood type and location.
+ * Searches by city are centered on the zipCode parameter or the city's
+ * donors so that maxDistance applies; searchCriteria.radiusApplied is false
+ * when the place could not be located and the whole city was searched.
  */
 @WebServlet("/matchDonors")
 public class MatchDonorServlet extends HttpServlet {
     
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    
     private DonorDAO donorDAO;
+    private DonorRanker donorRanker;
     
     @Override
     public void init() throws ServletException {
         super.init();
         donorDAO = new DonorDAO();
+        donorRanker = new DonorRanker(DonorIndex.getInstance().getEligibilityCalendar());
     }
     
     @Override
@@ -46,26 +61,40 @@ public class MatchDonorServlet extends HttpServlet {
             String state = request.getParameter("state");
             String maxDistance = request.getParameter("maxDistance");
             String urgency = request.getParameter("urgency");
+            String cursorParam = request.getParameter("cursor");
+            double[] center = parseSearchCenter(request.getParameter("latitude"), request.getParameter("longitude"));
+            int pageSize = parsePageSize(request.getParameter("pageSize"));
             
             // Validate required parameters
             if (bloodType == null || bloodType.trim().isEmpty()) {
                 result.put("success", false);
                 result.put("message", "Blood type is required");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
-            if (city == null || city.trim().isEmpty()) {
+            DonorRanker.Cursor cursor = null;
+            if (cursorParam != null && !cursorParam.trim().isEmpty()) {
+                cursor = DonorRanker.Cursor.decode(cursorParam);
+                if (cursor == null) {
+                    result.put("success", false);
+                    result.put("message", "Invalid cursor");
+                    JsonResponseWriter.write(response, result);
+                    return;
+                }
+            }
+            
+            if (center == null && (city == null || city.trim().isEmpty())) {
                 result.put("success", false);
                 result.put("message", "City is required");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
-            if (state == null || state.trim().isEmpty()) {
+            if (center == null && (state == null || state.trim().isEmpty())) {
                 result.put("success", false);
                 result.put("message", "State is required");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
@@ -82,32 +111,45 @@ public class MatchDonorServlet extends HttpServlet {
                 }
             }
             
+            if (center == null) {
+                center = donorDAO.locateSearchCenter(request.getParameter("zipCode"), city, state);
+            }
+            
             // Find eligible donors
-            List<Donor> eligibleDonors = donorDAO.findEligibleDonors(bloodType, city, state, maxDist);
+            List<Donor> eligibleDonors = findEligibleDonors(bloodType, city, state, center, maxDist,
+                                                            urgency, cursor, pageSize);
             
-            // Filter and sort donors based on criteria
-            List<Map<String, Object>> donorMatches = processDonorMatches(eligibleDonors, urgency, maxDist);
+            // Rank donors and build the requested page
+            List<DonorMatchResponse> donorMatches = processDonorMatches(
+                eligibleDonors, urgency, center, cursor, pageSize, result);
             
-            if (donorMatches.isEmpty()) {
+            if (eligibleDonors.isEmpty()) {
                 result.put("success", true);
-                result.put("message", "No eligible donors found in the specified area. Try expanding your search radius.");
-                result.put("donors", donorMatches);
-                result.put("totalFound", 0);
+                result.put("message", center != null
+                    ? "No eligible donors found in the specified area. Try expanding your search radius."
+                    : "No eligible donors found in the specified city.");
             } else {
                 result.put("success", true);
-                result.put("message", "Found " + donorMatches.size() + " eligible donor(s)");
-                result.put("donors", donorMatches);
-                result.put("totalFound", donorMatches.size());
+                result.put("message", "Found " + (Boolean.TRUE.equals(result.get("totalIsApproximate")) ? "at least " : "")
+                                      + result.get("totalFound") + " eligible donor(s), showing " + donorMatches.size()
+                                      + (center != null ? "" : " (city could not be located, so the radius was not applied)"));
             }
             
             // Add search criteria to response
-            result.put("searchCriteria", Map.of(
-                "bloodType", bloodType,
-                "city", city,
-                "state", state,
-                "maxDistance", maxDist,
-                "urgency", urgency != null ? urgency : "medium"
-            ));
+            Map<String, Object> searchCriteria = new HashMap<>();
+            searchCriteria.put("bloodType", bloodType);
+            if (center != null) {
+                searchCriteria.put("latitude", center[0]);
+                searchCriteria.put("longitude", center[1]);
+            }
+            if (city != null && !city.trim().isEmpty()) {
+                searchCriteria.put("city", city);
+                searchCriteria.put("state", state);
+            }
+            searchCriteria.put("maxDistance", maxDist);
+            searchCriteria.put("radiusApplied", center != null);
+            searchCriteria.put("urgency", urgency != null ? urgency : "medium");
+            result.put("searchCriteria", searchCriteria);
             
         } catch (Exception e) {
             System.err.println("Donor matching error: " + e.getMessage());
@@ -117,7 +159,7 @@ public class MatchDonorServlet extends HttpServlet {
             result.put("message", "An error occurred while searching for donors. Please try again.");
         }
         
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, result);
     }
     
     @Override
@@ -145,37 +187,53 @@ public class MatchDonorServlet extends HttpServlet {
             String maxDistance = request.getParameter("maxDistance");
             String urgency = request.getParameter("urgency");
             String requestId = request.getParameter("requestId");
+            String cursorParam = request.getParameter("cursor");
+            double[] center = parseSearchCenter(request.getParameter("latitude"), request.getParameter("longitude"));
+            int pageSize = parsePageSize(request.getParameter("pageSize"));
             
             // Validate required parameters
             Map<String, String> validationErrors = validateSearchParameters(
-                bloodType, city, state, maxDistance
+                bloodType, city, state, maxDistance, center != null
             );
             
+            DonorRanker.Cursor cursor = null;
+            if (cursorParam != null && !cursorParam.trim().isEmpty()) {
+                cursor = DonorRanker.Cursor.decode(cursorParam);
+                if (cursor == null) {
+                    validationErrors.put("cursor", "Invalid cursor");
+                }
+            }
+            
             if (!validationErrors.isEmpty()) {
                 result.put("success", false);
                 result.put("message", "Validation failed");
                 result.put("errors", validationErrors);
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
             // Parse max distance
             double maxDist = Double.parseDouble(maxDistance);
+            if (center == null) {
+                center = donorDAO.locateSearchCenter(request.getParameter("zipCode"), city, state);
+            }
             
             // Find eligible donors
-            List<Donor> eligibleDonors = donorDAO.findEligibleDonors(bloodType, city, state, maxDist);
+            List<Donor> eligibleDonors = findEligibleDonors(bloodType, city, state, center, maxDist,
+                                                            urgency, cursor, pageSize);
             
             // Process and rank donors
-            List<Map<String, Object>> donorMatches = processDonorMatches(eligibleDonors, urgency, maxDist);
+            processDonorMatches(eligibleDonors, urgency, center, cursor, pageSize, result);
             
             // Log the search for analytics
-            logDonorSearch(session, bloodType, city, state, maxDist, donorMatches.size());
+            logDonorSearch(session, bloodType, city, state, maxDist, eligibleDonors.size());
             
             result.put("success", true);
             result.put("message", "Search completed successfully");
-            result.put("donors", donorMatches);
-            result.put("totalFound", donorMatches.size());
-            result.put("requestId", requestId);
+            result.put("radiusApplied", center != null);
+            if (requestId != null) {
+                result.put("requestId", requestId);
+            }
             
         } catch (Exception e) {
             System.err.println("Donor search error: " + e.getMessage());
@@ -185,138 +243,142 @@ public class MatchDonorServlet extends HttpServlet {
             result.put("message", "An error occurred during the search. Please try again.");
         }
         
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, result);
     }
     
     /**
-     * Process and rank donor matches
+     * Find eligible donors by radius around a point, or in the whole city without one
+     * A SQL search only reads the page after the cursor plus one donor, which
+     * tells whether more follow; the donor index returns every candidate.
      */
-    private List<Map<String, Object>> processDonorMatches(List<Donor> donors, String urgency, double maxDistance) {
-        return donors.stream()
-                .map(donor -> createDonorMatch(donor, urgency, maxDistance))
-                .sorted((a, b) -> {
-                    // Sort by priority score (higher is better)
-                    int scoreA = (Integer) a.get("priorityScore");
-                    int scoreB = (Integer) b.get("priorityScore");
-                    return Integer.compare(scoreB, scoreA);
-                })
-                .limit(20) // Limit to top 20 matches
-                .collect(java.util.stream.Collectors.toList());
+    private List<Donor> findEligibleDonors(String bloodType, String city, String state,
+                                           double[] center, double maxDistance,
+                                           String urgency, DonorRanker.Cursor cursor, int pageSize) {
+        DonorRanker.Cursor after = cursor != null ? cursor.withoutUrgency(urgency) : null;
+        if (center != null) {
+            return donorDAO.findEligibleDonorsNear(bloodType, center[0], center[1], maxDistance, after, pageSize + 1);
+        }
+        return donorDAO.findEligibleDonors(bloodType, city, state, after, pageSize + 1);
     }
     
     /**
-     * Create donor match object with additional information
+     * Parse optional search center coordinates
+     * @return {latitude, longitude}, or null if absent or invalid
      */
-    private Map<String, Object> createDonorMatch(Donor donor, String urgency, double maxDistance) {
-        Map<String, Object> match = new HashMap<>();
-        
-        // Basic donor information
-        match.put("donorId", donor.getDonorId());
-        match.put("name", donor.getFullName());
-        match.put("bloodType", donor.getBloodType());
-        match.put("city", donor.getCity());
-        match.put("state", donor.getState());
-        match.put("phone", maskPhoneNumber(donor.getPhone()));
-        match.put("email", maskEmail(donor.getEmail()));
-        
-        // Eligibility information
-        match.put("isEligible", donor.isEligibleToDonate());
-        match.put("isEligibleAge", donor.isEligibleAge());
-        match.put("age", donor.getAge());
-        match.put("lastDonationDate", donor.getLastDonationDate());
-        
-        // Calculate priority score
-        int priorityScore = calculatePriorityScore(donor, urgency);
-        match.put("priorityScore", priorityScore);
-        
-        // Distance information (placeholder - would use geocoding in real app)
-        match.put("estimatedDistance", calculateEstimatedDistance(donor, maxDistance));
-        match.put("distanceUnit", "km");
-        
-        // Availability status
-        match.put("availability", determineAvailability(donor));
-        match.put("responseTime", estimateResponseTime(donor));
+    private double[] parseSearchCenter(String latitude, String longitude) {
+        if (latitude == null || latitude.trim().isEmpty() || longitude == null || longitude.trim().isEmpty()) {
+            return null;
+        }
         
-        return match;
+        try {
+            double lat = Double.parseDouble(latitude.trim());
+            double lon = Double.parseDouble(longitude.trim());
+            return GeoGridIndex.isGeocoded(lat, lon) ? new double[] {lat, lon} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
     
     /**
-     * Calculate priority score for donor ranking
+     * Process and rank donor matches
+     * Only the requested page is turned into response objects. Adds the page,
+     * its paging fields and the total candidate count to the result.
+     * @return donor matches on the page
      */
-    private int calculatePriorityScore(Donor donor, String urgency) {
-        int score = 0;
-        
-        // Base score for being eligible
-        if (donor.isEligibleToDonate()) {
-            score += 100;
+    private List<DonorMatchResponse> processDonorMatches(List<Donor> donors, String urgency, double[] center,
+                                                          DonorRanker.Cursor cursor, int pageSize,
+                                                          Map<String, Object> result) {
+        DonorRanker.Ranking ranking = donorRanker.rank(donors, urgency, pageSize, cursor);
+        
+        List<DonorMatchResponse> matches = new ArrayList<>(ranking.size());
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            Donor donor = donors.get(ranking.getPosition(rank));
+            matches.add(createDonorMatch(donor, ranking.getScore(rank), center));
         }
         
-        // Age eligibility bonus
-        if (donor.isEligibleAge()) {
-            score += 50;
+        result.put("donors", matches);
+        result.put("pageSize", pageSize);
+        result.put("hasMore", ranking.hasMore());
+        if (ranking.hasMore()) {
+            int last = ranking.size() - 1;
+            Donor lastDonor = donors.get(ranking.getPosition(last));
+            result.put("nextCursor", new DonorRanker.Cursor(ranking.getScore(last), lastDonor.getDonorId()).encode());
         }
         
-        // Urgency multiplier
-        if (urgency != null) {
-            switch (urgency.toLowerCase()) {
-                case "critical":
-                    score += 200;
-                    break;
-                case "high":
-                    score += 150;
-                    break;
-                case "medium":
-                    score += 100;
-                    break;
-                case "low":
-                    score += 50;
-                    break;
-            }
+        // Exact when answered from the donor index; SQL reads one page at a time, so there it
+        // counts the donors read from this page on and is a lower bound while more follow
+        boolean fromIndex = DonorIndex.getInstance().isLoaded();
+        result.put("totalFound", ranking.getCandidateCount());
+        result.put("totalIsApproximate", !fromIndex && ranking.hasMore());
+        return matches;
+    }
+    
+    /**
+     * Parse the requested page size, clamped to 1..MAX_PAGE_SIZE
+     */
+    private int parsePageSize(String pageSize) {
+        if (pageSize == null || pageSize.trim().isEmpty()) {
+            return DEFAULT_PAGE_SIZE;
         }
         
-        // Last donation date bonus (longer time since last donation = higher score)
-        if (donor.getLastDonationDate() == null) {
-            score += 100; // Never donated before
-        } else {
-            long daysSinceDonation = java.time.temporal.ChronoUnit.DAYS.between(
-                donor.getLastDonationDate(), java.time.LocalDate.now()
-            );
-            if (daysSinceDonation >= 56) {
-                score += 80;
-            } else if (daysSinceDonation >= 30) {
-                score += 40;
-            }
+        try {
+            int size = Integer.parseInt(pageSize.trim());
+            return Math.max(1, Math.min(MAX_PAGE_SIZE, size));
+        } catch (NumberFormatException e) {
+            return DEFAULT_PAGE_SIZE;
         }
-        
-        // Age preference (prefer donors in prime age range)
-        int age = donor.getAge();
-        if (age >= 25 && age <= 45) {
-            score += 30;
-        } else if (age >= 18 && age <= 65) {
-            score += 20;
+    }
+    
+    /**
+     * Create donor match object with additional information
+     */
+    private DonorMatchResponse createDonorMatch(Donor donor, int priorityScore, double[] center) {
+        boolean eligibleToDonate = donorRanker.isEligibleToDonate(donor);
+        boolean eligibleAge = donorRanker.isEligibleAge(donor);
+        int daysSinceDonation = donorRanker.getDaysSinceDonation(donor);
+        
+        // Distance information, only known when searching around a point
+        double distance = Double.NaN;
+        if (center != null && GeoGridIndex.isGeocoded(donor.getLatitude(), donor.getLongitude())) {
+            distance = calculateDistance(donor, center);
         }
         
-        return score;
+        return new DonorMatchResponse(
+            donor.getDonorId(),
+            donor.getFullName(),
+            donor.getBloodType(),
+            donor.getCity(),
+            donor.getState(),
+            maskPhoneNumber(donor.getPhone()),
+            maskEmail(donor.getEmail()),
+            eligibleToDonate,
+            eligibleAge,
+            donorRanker.getAge(donor),
+            donor.getLastDonationDate(),
+            priorityScore,
+            distance,
+            determineAvailability(eligibleToDonate, eligibleAge),
+            estimateResponseTime(daysSinceDonation)
+        );
     }
     
     /**
-     * Calculate estimated distance (placeholder implementation)
+     * Calculate great-circle distance from the search center, rounded to 0.1 km
      */
-    private double calculateEstimatedDistance(Donor donor, double maxDistance) {
-        // In a real application, this would use geocoding APIs
-        // For demo purposes, return a random distance within the max range
-        return Math.random() * maxDistance;
+    private double calculateDistance(Donor donor, double[] center) {
+        double distance = GeoGridIndex.distanceKm(center[0], center[1], donor.getLatitude(), donor.getLongitude());
+        return Math.round(distance * 10.0) / 10.0;
     }
     
     /**
      * Determine donor availability status
      */
-    private String determineAvailability(Donor donor) {
-        if (!donor.isEligibleToDonate()) {
+    private String determineAvailability(boolean eligibleToDonate, boolean eligibleAge) {
+        if (!eligibleToDonate) {
             return "Not Available";
         }
         
-        if (!donor.isEligibleAge()) {
+        if (!eligibleAge) {
             return "Age Ineligible";
         }
         
@@ -326,16 +388,12 @@ public class MatchDonorServlet extends HttpServlet {
     /**
      * Estimate response time
      */
-    private String estimateResponseTime(Donor donor) {
+    private String estimateResponseTime(int daysSinceDonation) {
         // Simple estimation based on last activity
-        if (donor.getLastDonationDate() == null) {
+        if (daysSinceDonation == EligibilityCalendar.UNKNOWN) {
             return "Quick Response Expected";
         }
         
-        long daysSinceDonation = java.time.temporal.ChronoUnit.DAYS.between(
-            donor.getLastDonationDate(), java.time.LocalDate.now()
-        );
-        
         if (daysSinceDonation >= 90) {
             return "Quick Response Expected";
         } else if (daysSinceDonation >= 56) {
@@ -378,7 +436,7 @@ public class MatchDonorServlet extends HttpServlet {
      * Validate search parameters
      */
     private Map<String, String> validateSearchParameters(String bloodType, String city, 
-            String state, String maxDistance) {
+            String state, String maxDistance, boolean hasCenter) {
         
         Map<String, String> errors = new HashMap<>();
         
@@ -386,11 +444,11 @@ public class MatchDonorServlet extends HttpServlet {
             errors.put("bloodType", "Blood type is required");
         }
         
-        if (city == null || city.trim().isEmpty()) {
+        if (!hasCenter && (city == null || city.trim().isEmpty())) {
             errors.put("city", "City is required");
         }
         
-        if (state == null || state.trim().isEmpty()) {
+        if (!hasCenter && (state == null || state.trim().isEmpty())) {
             errors.put("state", "State is required");
         }
         
@@ -426,103 +484,4 @@ public class MatchDonorServlet extends HttpServlet {
             userId, userType, bloodType, city, state, maxDistance, resultsCount
         ));
     }
-    
-    /**
-     * Convert Map to JSON string (simple implementation)
-     */
-    private String convertToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            } else if (value instanceof Boolean || value instanceof Integer || value instanceof Double) {
-                json.append(value);
-            } else if (value instanceof List) {
-                json.append(convertListToJson((List<?>) value));
-            } else if (value instanceof Map) {
-                json.append(convertMapToJson((Map<?, ?>) value));
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Convert List to JSON string
-     */
-    private String convertListToJson(List<?> list) {
-        StringBuilder json = new StringBuilder("[");
-        boolean first = true;
-        
-        for (Object item : list) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            if (item instanceof Map) {
-                json.append(convertMapToJson((Map<?, ?>) item));
-            } else if (item instanceof String) {
-                json.append("\"").append(escapeJson(item.toString())).append("\"");
-            } else {
-                json.append(item);
-            }
-        }
-        
-        json.append("]");
-        return json.toString();
-    }
-    
-    /**
-     * Convert nested Map to JSON string
-     */
-    private String convertMapToJson(Map<?, ?> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<?, ?> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            } else {
-                json.append(value);
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Escape special characters for JSON
-     */
-    private String escapeJson(String str) {
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\b", "\\b")
-                 .replace("\f", "\\f")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
-    }
 }
@@ -0,0 +1,109 @@
+package com.bloodnet.servlets;
+
+import com.bloodnet.dao.DonorMatchDAO;
+import com.bloodnet.service.EscalationScheduler;
+import com.bloodnet.util.JsonResponseWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MatchResponseServlet - Records a donor's answer to a blood request
+ * A contacted donor accepts or declines; the answer stops their response
+ * deadline and may close the request or move on to the next donor wave
+ */
+@WebServlet("/respondToMatch")
+public class MatchResponseServlet extends HttpServlet {
+
+    private DonorMatchDAO donorMatchDAO;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        donorMatchDAO = new DonorMatchDAO();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Set response content type
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        // Only donors answer match requests
+        HttpSession session = request.getSession(false);
+        Integer donorId = session == null || !"donor".equals(session.getAttribute("userType"))
+                ? null : (Integer) session.getAttribute("donorId");
+        if (donorId == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            result.put("success", false);
+            result.put("message", "Please log in as a donor");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+
+        String status = parseStatus(request.getParameter("response"));
+        int requestId;
+        try {
+            requestId = Integer.parseInt(request.getParameter("requestId"));
+        } catch (NumberFormatException e) {
+            requestId = 0;
+        }
+
+        if (requestId <= 0 || status == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            result.put("success", false);
+            result.put("message", "A request ID and a response of accepted or declined are required");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+
+        if (!donorMatchDAO.recordResponse(requestId, donorId, status)) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            result.put("success", false);
+            result.put("message", "You have no open invitation for this blood request");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+
+        EscalationScheduler.getInstance().donorResponded(requestId, donorId, status);
+
+        result.put("success", true);
+        result.put("requestId", requestId);
+        result.put("response", status);
+        result.put("message", "accepted".equals(status)
+                ? "Thank you! The requester will contact you in the request's chat."
+                : "Thank you for letting us know.");
+        JsonResponseWriter.write(response, result);
+    }
+
+    /**
+     * Normalize the donor's answer
+     * @return "accepted", "declined" or null if not recognized
+     */
+    private String parseStatus(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value.trim().toLowerCase()) {
+            case "accept":
+            case "accepted":
+                return "accepted";
+            case "decline":
+            case "declined":
+                return "declined";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.bloodnet.servlets;
+
+import com.bloodnet.dao.BloodRequestDAO;
+import com.bloodnet.dao.PendingRequestIndex;
+import com.bloodnet.dto.PendingRequestResponse;
+import com.bloodnet.model.BloodRequest;
+import com.bloodnet.util.JsonResponseWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PendingRequestsServlet - Lists open blood requests, most urgent first
+ * Answers from the in-memory pending request index, so dashboards can
+ * poll it without sorting pending_requests_view on every read
+ */
+@WebServlet("/pendingRequests")
+public class PendingRequestsServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 200;
+
+    private BloodRequestDAO bloodRequestDAO;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        bloodRequestDAO = new BloodRequestDAO();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Set response content type
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        // Check if user is logged in
+        HttpSession session = request.getSession(false);
+        if (session == null || session.getAttribute("userType") == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            result.put("success", false);
+            result.put("message", "Please log in");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+
+        int limit = parseLimit(request.getParameter("limit"));
+        List<BloodRequest> pending = bloodRequestDAO.getPendingRequests(limit);
+
+        List<PendingRequestResponse> requests = new ArrayList<>(pending.size());
+        for (BloodRequest bloodRequest : pending) {
+            requests.add(new PendingRequestResponse(bloodRequest));
+        }
+
+        PendingRequestIndex index = PendingRequestIndex.getInstance();
+        result.put("success", true);
+        result.put("requests", requests);
+        if (index.isLoaded()) {
+            result.put("totalPending", index.size());
+        }
+
+        JsonResponseWriter.write(response, result);
+    }
+
+    /**
+     * Parse the requested number of requests, clamped to 1..MAX_LIMIT
+     */
+    private int parseLimit(String limit) {
+        if (limit == null || limit.trim().isEmpty()) {
+            return DEFAULT_LIMIT;
+        }
+
+        try {
+            return Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit.trim())));
+        } catch (NumberFormatException e) {
+            return DEFAULT_LIMIT;
+        }
+    }
+}
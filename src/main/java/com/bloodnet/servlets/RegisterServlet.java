@@ -2,6 +2,7 @@ package com.bloodnet.servlets;
 
 import com.bloodnet.dao.DonorDAO;
 import com.bloodnet.model.Donor;
+import com.bloodnet.util.JsonResponseWriter;
 import com.bloodnet.util.PasswordUtil;
 
 import javax.servlet.ServletException;
@@ -74,7 +75,7 @@ public class RegisterServlet extends HttpServlet {
                 result.put("success", false);
                 result.put("message", "Validation failed");
                 result.put("errors", validationErrors);
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
@@ -83,7 +84,7 @@ public class RegisterServlet extends HttpServlet {
                 result.put("success", false);
                 result.put("message", "Email already registered");
                 result.put("errors", Map.of("email", "This email is already registered"));
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
@@ -100,7 +101,7 @@ public class RegisterServlet extends HttpServlet {
                 result.put("success", false);
                 result.put("message", "Age must be between 18 and 65 years");
                 result.put("errors", Map.of("dateOfBirth", "Age must be between 18 and 65 years"));
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, result);
                 return;
             }
             
@@ -116,11 +117,7 @@ public class RegisterServlet extends HttpServlet {
             donor.setSalt(salt);
             donor.setLastDonationDate(lastDonation);
             
-            // Set default coordinates (can be updated later with geocoding)
-            donor.setLatitude(0.0);
-            donor.setLongitude(0.0);
-            
-            // Register donor
+            // Register donor; DonorDAO places them at their ZIP code's centroid
             boolean registrationSuccess = donorDAO.registerDonor(donor);
             
             if (registrationSuccess) {
@@ -148,7 +145,7 @@ public class RegisterServlet extends HttpServlet {
             result.put("message", "An error occurred during registration. Please try again.");
         }
         
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, result);
     }
     
     /**
@@ -276,56 +273,4 @@ public class RegisterServlet extends HttpServlet {
     private boolean isValidZipCode(String zipCode) {
         return zipCode.matches("^\\d{5}(-\\d{4})?$");
     }
-    
-    /**
-     * Convert Map to JSON string (simple implementation)
-     */
-    private String convertToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(value).append("\"");
-            } else if (value instanceof Boolean) {
-                json.append(value);
-            } else if (value instanceof Map) {
-                json.append(convertMapToJson((Map<?, ?>) value));
-            } else {
-                json.append("\"").append(value.toString()).append("\"");
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Convert nested Map to JSON string
-     */
-    private String convertMapToJson(Map<?, ?> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<?, ?> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            json.append("\"").append(entry.getValue()).append("\"");
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
 }
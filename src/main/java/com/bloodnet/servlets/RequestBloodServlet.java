@@ -1,6 +1,12 @@
 package com.bloodnet.servlets;
 
+import com.bloodnet.dao.BloodRequestDAO;
+import com.bloodnet.dto.RequestSubmissionResponse;
 import com.bloodnet.model.BloodRequest;
+import com.bloodnet.service.EscalationScheduler;
+import com.bloodnet.service.MatchingPipeline;
+import com.bloodnet.service.NotificationDispatcher;
+import com.bloodnet.util.JsonResponseWriter;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -16,11 +22,21 @@ import java.util.Map;
 
 /**
  * RequestBloodServlet - Handles blood request submissions
- * Processes blood requests from patients and hospitals
+ * Processes blood requests from patients and hospitals. Clients may send an
+ * Idempotency-Key header (or idempotencyKey parameter) with every attempt of
+ * one submission; repeats are answered with the first submission's ID.
  */
 @WebServlet("/requestBlood")
 public class RequestBloodServlet extends HttpServlet {
     
+    private BloodRequestDAO bloodRequestDAO;
+    
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        bloodRequestDAO = new BloodRequestDAO();
+    }
+    
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
@@ -43,16 +59,14 @@ public class RequestBloodServlet extends HttpServlet {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
         
-        Map<String, Object> result = new HashMap<>();
+        RequestSubmissionResponse result;
         
         try {
             // Check if user is logged in
             HttpSession session = request.getSession(false);
             if (session == null || session.getAttribute("userType") == null) {
-                result.put("success", false);
-                result.put("message", "Please login to submit a blood request");
-                result.put("redirectUrl", "login.jsp");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, RequestSubmissionResponse.failure(
+                    "Please login to submit a blood request", "login.jsp"));
                 return;
             }
             
@@ -91,19 +105,14 @@ public class RequestBloodServlet extends HttpServlet {
             );
             
             if (!validationErrors.isEmpty()) {
-                result.put("success", false);
-                result.put("message", "Validation failed");
-                result.put("errors", validationErrors);
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, RequestSubmissionResponse.invalid(validationErrors));
                 return;
             }
             
             // Parse and validate data
             int units = Integer.parseInt(unitsRequired);
             if (units <= 0 || units > 10) {
-                result.put("success", false);
-                result.put("message", "Units required must be between 1 and 10");
-                response.getWriter().write(convertToJson(result));
+                JsonResponseWriter.write(response, RequestSubmissionResponse.failure("Units required must be between 1 and 10"));
                 return;
             }
             
@@ -112,16 +121,14 @@ public class RequestBloodServlet extends HttpServlet {
                 try {
                     requiredDate = LocalDateTime.parse(requiredDateStr + "T00:00:00");
                 } catch (Exception e) {
-                    result.put("success", false);
-                    result.put("message", "Invalid required date format");
-                    response.getWriter().write(convertToJson(result));
+                    JsonResponseWriter.write(response, RequestSubmissionResponse.failure("Invalid required date format"));
                     return;
                 }
             }
             
             // Create blood request object
             BloodRequest bloodRequest = new BloodRequest(userType, requesterId, bloodType, 
-                                                       units, urgency, city, state);
+                                                       units, urgency.toLowerCase(), city, state);
             bloodRequest.setPatientName(patientName);
             bloodRequest.setPatientAge(patientAge);
             bloodRequest.setMedicalCondition(medicalCondition);
@@ -134,36 +141,48 @@ public class RequestBloodServlet extends HttpServlet {
             bloodRequest.setRequiredDate(requiredDate);
             bloodRequest.setAdditionalNotes(additionalNotes);
             
-            // Set default coordinates (can be updated with geocoding)
-            bloodRequest.setLatitude(0.0);
-            bloodRequest.setLongitude(0.0);
-            
-            // Save blood request to database
-            boolean saveSuccess = saveBloodRequest(bloodRequest);
+            // Save blood request to database unless it repeats a recent submission
+            String idempotencyKey = request.getHeader("Idempotency-Key");
+            if (idempotencyKey == null) {
+                idempotencyKey = request.getParameter("idempotencyKey");
+            }
+            BloodRequestDAO.SaveResult saveResult = bloodRequestDAO.saveBloodRequest(bloodRequest, idempotencyKey);
             
-            if (saveSuccess) {
-                result.put("success", true);
-                result.put("message", "Blood request submitted successfully! We'll notify matching donors.");
-                result.put("requestId", bloodRequest.getRequestId());
-                result.put("redirectUrl", "requestStatus.jsp?requestId=" + bloodRequest.getRequestId());
+            if (saveResult == BloodRequestDAO.SaveResult.CREATED) {
+                result = RequestSubmissionResponse.submitted(
+                    "Blood request submitted successfully! We'll notify matching donors.",
+                    bloodRequest.getRequestId(),
+                    "requestStatus.jsp?requestId=" + bloodRequest.getRequestId());
                 
                 // Log the request
                 System.out.println("Blood request submitted: " + bloodRequest.toString());
                 
+                // Confirm, match donors and watch the deadline in the background;
+                // the response does not wait for any of it
+                NotificationDispatcher.getInstance().bloodRequestSubmitted(bloodRequest);
+                MatchingPipeline.getInstance().submit(bloodRequest);
+                EscalationScheduler.getInstance().track(bloodRequest);
+                
+            } else if (saveResult == BloodRequestDAO.SaveResult.DUPLICATE) {
+                result = RequestSubmissionResponse.submitted(
+                    "This blood request was already submitted. We'll notify matching donors.",
+                    bloodRequest.getRequestId(),
+                    "requestStatus.jsp?requestId=" + bloodRequest.getRequestId());
+                
+                System.out.println("Duplicate blood request suppressed: " + bloodRequest.getRequestId());
+                
             } else {
-                result.put("success", false);
-                result.put("message", "Failed to submit blood request. Please try again.");
+                result = RequestSubmissionResponse.failure("Failed to submit blood request. Please try again.");
             }
             
         } catch (Exception e) {
             System.err.println("Blood request error: " + e.getMessage());
             e.printStackTrace();
             
-            result.put("success", false);
-            result.put("message", "An error occurred while submitting the request. Please try again.");
+            result = RequestSubmissionResponse.failure("An error occurred while submitting the request. Please try again.");
         }
         
-        response.getWriter().write(convertToJson(result));
+        JsonResponseWriter.write(response, result);
     }
     
     /**
@@ -242,29 +261,6 @@ public class RequestBloodServlet extends HttpServlet {
         return errors;
     }
     
-    /**
-     * Save blood request to database (placeholder implementation)
-     * In a real application, this would use a BloodRequestDAO
-     */
-    private boolean saveBloodRequest(BloodRequest bloodRequest) {
-        try {
-            // For demo purposes, simulate database save
-            // In real implementation, use BloodRequestDAO.saveBloodRequest(bloodRequest)
-            
-            // Generate a mock request ID
-            bloodRequest.setRequestId((int) (System.currentTimeMillis() % 100000));
-            
-            // Simulate database operation delay
-            Thread.sleep(100);
-            
-            return true;
-            
-        } catch (Exception e) {
-            System.err.println("Error saving blood request: " + e.getMessage());
-            return false;
-        }
-    }
-    
     /**
      * Validate blood type
      */
@@ -311,69 +307,4 @@ public class RequestBloodServlet extends HttpServlet {
     private boolean isValidZipCode(String zipCode) {
         return zipCode.matches("^\\d{5}(-\\d{4})?$");
     }
-    
-    /**
-     * Convert Map to JSON string (simple implementation)
-     */
-    private String convertToJson(Map<String, Object> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            Object value = entry.getValue();
-            if (value instanceof String) {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            } else if (value instanceof Boolean || value instanceof Integer) {
-                json.append(value);
-            } else if (value instanceof Map) {
-                json.append(convertMapToJson((Map<?, ?>) value));
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Convert nested Map to JSON string
-     */
-    private String convertMapToJson(Map<?, ?> map) {
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        
-        for (Map.Entry<?, ?> entry : map.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            first = false;
-            
-            json.append("\"").append(entry.getKey()).append("\":");
-            json.append("\"").append(escapeJson(entry.getValue().toString())).append("\"");
-        }
-        
-        json.append("}");
-        return json.toString();
-    }
-    
-    /**
-     * Escape special characters for JSON
-     */
-    private String escapeJson(String str) {
-        return str.replace("\\", "\\\\")
-                 .replace("\"", "\\\"")
-                 .replace("\b", "\\b")
-                 .replace("\f", "\\f")
-                 .replace("\n", "\\n")
-                 .replace("\r", "\\r")
-                 .replace("\t", "\\t");
-    }
 }
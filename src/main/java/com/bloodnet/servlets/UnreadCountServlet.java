@@ -0,0 +1,63 @@
+package com.bloodnet.servlets;
+
+import com.bloodnet.service.UnreadCounterService;
+import com.bloodnet.util.JsonResponseWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * UnreadCountServlet - Reports unread badge counts
+ * Answers from in-memory counters, so dashboards can poll it cheaply
+ */
+@WebServlet("/unreadCount")
+public class UnreadCountServlet extends HttpServlet {
+    
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) 
+            throws ServletException, IOException {
+        
+        // Set response content type
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        
+        // Check if user is logged in
+        HttpSession session = request.getSession(false);
+        String userType = session == null ? null : (String) session.getAttribute("userType");
+        Integer userId = null;
+        if ("donor".equals(userType)) {
+            userId = (Integer) session.getAttribute("donorId");
+        } else if ("hospital".equals(userType)) {
+            userId = (Integer) session.getAttribute("hospitalId");
+        }
+        
+        if (userId == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            result.put("success", false);
+            result.put("message", "Please log in");
+            JsonResponseWriter.write(response, result);
+            return;
+        }
+        
+        UnreadCounterService counters = UnreadCounterService.getInstance();
+        long unreadMessages = counters.getUnreadMessages(userId, userType);
+        long unreadNotifications = counters.getUnreadNotifications(userId, userType);
+        
+        result.put("success", true);
+        result.put("unreadMessages", unreadMessages);
+        result.put("unreadNotifications", unreadNotifications);
+        result.put("total", unreadMessages + unreadNotifications);
+        
+        JsonResponseWriter.write(response, result);
+    }
+}
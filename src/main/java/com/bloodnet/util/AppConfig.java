@@ -0,0 +1,82 @@
+package com.bloodnet.util;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Application Configuration for BloodNet Application
+ * Resolves settings from system properties (prefixed with "bloodnet."),
+ * then web.xml context parameters, then the supplied default.
+ */
+public final class AppConfig {
+
+    private static final String SYSTEM_PROPERTY_PREFIX = "bloodnet.";
+
+    private static volatile ServletContext servletContext;
+
+    private AppConfig() {}
+
+    /**
+     * Bind the servlet context whose init parameters back the configuration
+     * @param context Servlet context of the web application
+     */
+    public static void initialize(ServletContext context) {
+        servletContext = context;
+    }
+
+    /**
+     * Get a string setting
+     * @param name Setting name, e.g. "db.pool.maxSize"
+     * @param defaultValue Value used when the setting is not defined
+     * @return configured value or the default
+     */
+    public static String getString(String name, String defaultValue) {
+        String value = System.getProperty(SYSTEM_PROPERTY_PREFIX + name);
+
+        ServletContext context = servletContext;
+        if (value == null && context != null) {
+            value = context.getInitParameter(name);
+        }
+
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Get an integer setting
+     * @param name Setting name
+     * @param defaultValue Value used when the setting is missing or invalid
+     * @return configured value or the default
+     */
+    public static int getInt(String name, int defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid integer for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a long setting
+     * @param name Setting name
+     * @param defaultValue Value used when the setting is missing or invalid
+     * @return configured value or the default
+     */
+    public static long getLong(String name, long defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -1,5 +1,19 @@
 package com.bloodnet.util;
 
+import com.bloodnet.dao.BloodRequestDAO;
+import com.bloodnet.dao.ChatMessageWriter;
+import com.bloodnet.dao.DonorDAO;
+import com.bloodnet.dao.DonorIndex;
+import com.bloodnet.dao.PendingRequestIndex;
+import com.bloodnet.dao.ReadReceiptTracker;
+import com.bloodnet.service.AttachmentStore;
+import com.bloodnet.service.ChatSubscriberRegistry;
+import com.bloodnet.service.EscalationScheduler;
+import com.bloodnet.service.InventoryService;
+import com.bloodnet.service.MatchingPipeline;
+import com.bloodnet.service.NotificationDispatcher;
+import com.bloodnet.service.UnreadCounterService;
+
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
@@ -24,6 +38,9 @@ public class ApplicationLifecycleListener implements ServletContextListener {
         System.out.println("==========================================");
         
         try {
+            // Make context parameters available to configurable components
+            AppConfig.initialize(sce.getServletContext());
+            
             // Initialize database connection pool
             DBConnection.initialize();
             System.out.println("✓ Database connection pool initialized");
@@ -34,6 +51,42 @@ public class ApplicationLifecycleListener implements ServletContextListener {
             } else {
                 System.err.println("✗ Database connection test failed");
             }
+            System.out.println(DBConnection.getPoolStatus());
+            
+            // Map the ZIP code centroid table used to geocode donors and requests
+            ZipCodeGeocoder.getInstance().start();
+            
+            // Build the resident donor index in the background; searches use SQL until it is ready
+            Thread indexLoader = new Thread(() -> DonorIndex.getInstance().load(new DonorDAO()),
+                                            "bloodnet-donor-index-loader");
+            indexLoader.setDaemon(true);
+            indexLoader.start();
+            DonorIndex.getInstance().getEligibilityCalendar().start();
+            
+            // Same for the urgency-ordered index of pending blood requests
+            Thread pendingLoader = new Thread(() -> PendingRequestIndex.getInstance().load(new BloodRequestDAO()),
+                                              "bloodnet-pending-index-loader");
+            pendingLoader.setDaemon(true);
+            pendingLoader.start();
+            
+            // Start the chat services: group-committing writer, read receipts, push delivery,
+            // unread counters and attachment storage
+            ChatMessageWriter.getInstance().start();
+            ReadReceiptTracker.getInstance().start();
+            ChatSubscriberRegistry.getInstance().start();
+            UnreadCounterService.getInstance().start();
+            AttachmentStore.getInstance().start();
+            
+            // Batch notification inserts and deliver them over SMS and email
+            NotificationDispatcher.getInstance().start();
+            
+            // Match donors to submitted blood requests in the background, then contact
+            // them in waves and escalate requests as their deadlines approach
+            MatchingPipeline.getInstance().start();
+            EscalationScheduler.getInstance().start();
+            
+            // Serve blood stock reservations from memory and write the levels behind
+            InventoryService.getInstance().start();
             
             // Print application information
             String appName = sce.getServletContext().getInitParameter("app.name");
@@ -68,6 +121,19 @@ public class ApplicationLifecycleListener implements ServletContextListener {
         System.out.println("==========================================");
         
         try {
+            // Stop background jobs
+            MatchingPipeline.getInstance().shutdown();
+            EscalationScheduler.getInstance().shutdown();
+            NotificationDispatcher.getInstance().shutdown();
+            ChatSubscriberRegistry.getInstance().shutdown();
+            UnreadCounterService.getInstance().shutdown();
+            AttachmentStore.getInstance().shutdown();
+            DonorIndex.getInstance().getEligibilityCalendar().shutdown();
+            ChatMessageWriter.getInstance().shutdown();
+            ReadReceiptTracker.getInstance().shutdown();
+            InventoryService.getInstance().shutdown();
+            ZipCodeGeocoder.getInstance().shutdown();
+            
             // Close database connections
             DBConnection.closeAllConnections();
             System.out.println("✓ Database connections closed");
@@ -0,0 +1,97 @@
+package com.bloodnet.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blood Type Utility Class for BloodNet Application
+ * Maps the eight ABO/Rh blood types to small integer groups so that donor
+ * compatibility can be expressed as a bitmask: bit g of a mask is set when
+ * a donor of group g may give red cells to the recipient.
+ */
+public class BloodTypeUtil {
+
+    public static final int GROUP_COUNT = 8;
+
+    // Group bits: 1 = Rh(D) antigen, 2 = A antigen, 4 = B antigen
+    private static final String[] BLOOD_TYPES = {"O-", "O+", "A-", "A+", "B-", "B+", "AB-", "AB+"};
+
+    private static final int[] COMPATIBLE_DONOR_MASKS = new int[GROUP_COUNT];
+
+    static {
+        // A donor is compatible when it carries no antigen the recipient lacks
+        for (int recipient = 0; recipient < GROUP_COUNT; recipient++) {
+            int mask = 0;
+            for (int donor = 0; donor < GROUP_COUNT; donor++) {
+                if ((donor & ~recipient) == 0) {
+                    mask |= 1 << donor;
+                }
+            }
+            COMPATIBLE_DONOR_MASKS[recipient] = mask;
+        }
+    }
+
+    /**
+     * Get the group number of a blood type
+     * @param bloodType Blood type such as "AB+"
+     * @return group in [0, 8), or -1 if not a known blood type
+     */
+    public static int groupOf(String bloodType) {
+        if (bloodType == null) {
+            return -1;
+        }
+
+        String normalized = bloodType.trim().toUpperCase();
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            if (BLOOD_TYPES[group].equals(normalized)) {
+                return group;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the blood type name of a group
+     * @param group Group in [0, 8)
+     * @return blood type such as "AB+"
+     */
+    public static String typeOf(int group) {
+        return BLOOD_TYPES[group];
+    }
+
+    /**
+     * Get the donor groups a recipient can receive from
+     * @param recipientBloodType Recipient blood type
+     * @return bitmask of compatible donor groups, 0 for unknown types
+     */
+    public static int compatibleDonorMask(String recipientBloodType) {
+        int group = groupOf(recipientBloodType);
+        return group < 0 ? 0 : COMPATIBLE_DONOR_MASKS[group];
+    }
+
+    /**
+     * Check whether a donor blood type belongs to a group mask
+     * @param mask Group bitmask
+     * @param bloodType Donor blood type
+     * @return true if the type's group bit is set
+     */
+    public static boolean matches(int mask, String bloodType) {
+        int group = groupOf(bloodType);
+        return group >= 0 && (mask & (1 << group)) != 0;
+    }
+
+    /**
+     * Expand a group mask into blood type names, e.g. for SQL IN lists
+     * @param mask Group bitmask
+     * @return blood types in group order
+     */
+    public static List<String> typesOf(int mask) {
+        List<String> types = new ArrayList<>(Integer.bitCount(mask));
+        for (int group = 0; group < GROUP_COUNT; group++) {
+            if ((mask & (1 << group)) != 0) {
+                types.add(BLOOD_TYPES[group]);
+            }
+        }
+        return types;
+    }
+}
@@ -0,0 +1,48 @@
+package com.bloodnet.util;
+
+/**
+ * Management interface for the BloodNet connection pool
+ * Registered as com.bloodnet:type=ConnectionPool
+ */
+public interface ConnectionPoolMXBean {
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getPendingThreads();
+
+    int getMaxPoolSize();
+
+    long getBorrowCount();
+
+    long getReturnCount();
+
+    long getTimeoutCount();
+
+    long getSaturatedBorrowCount();
+
+    long getConnectionsCreated();
+
+    long getConnectionsClosed();
+
+    long getCreationFailureCount();
+
+    long getLeakSuspectedCount();
+
+    long getBorrowWaitP50Micros();
+
+    long getBorrowWaitP99Micros();
+
+    long getBorrowWaitP999Micros();
+
+    long getBorrowWaitMaxMicros();
+
+    long getUsageP50Millis();
+
+    long getUsageP99Millis();
+
+    long getUsageMaxMillis();
+}
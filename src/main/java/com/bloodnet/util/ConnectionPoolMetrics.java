@@ -0,0 +1,213 @@
+package com.bloodnet.util;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection Pool Metrics for BloodNet Application
+ * Collects borrow/return counters and latency histograms for {@link DBConnection}
+ * and exposes them through JMX and the /admin/metrics endpoint.
+ */
+public class ConnectionPoolMetrics implements ConnectionPoolMXBean {
+
+    public static final String OBJECT_NAME = "com.bloodnet:type=ConnectionPool";
+
+    private static final long SATURATION_ALERT_INTERVAL_MS = 60 * 1000L; // 1 minute
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder returnCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder saturatedBorrowCount = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder creationFailureCount = new LongAdder();
+    private final LongAdder leakSuspectedCount = new LongAdder();
+    private final LatencyHistogram borrowWaitMicros = new LatencyHistogram();
+    private final LatencyHistogram usageMillis = new LatencyHistogram();
+    private final AtomicLong lastSaturationAlertAt = new AtomicLong();
+
+    void recordBorrow(long waitNanos) {
+        borrowCount.increment();
+        borrowWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+
+    void recordReturn(long usageNanos) {
+        returnCount.increment();
+        usageMillis.record(TimeUnit.NANOSECONDS.toMillis(usageNanos));
+    }
+
+    void recordTimeout() {
+        timeoutCount.increment();
+    }
+
+    void recordConnectionCreated() {
+        connectionsCreated.increment();
+    }
+
+    void recordConnectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    void recordCreationFailure() {
+        creationFailureCount.increment();
+    }
+
+    void recordLeakSuspected() {
+        leakSuspectedCount.increment();
+    }
+
+    /**
+     * Record a borrow that found every connection in use
+     * Logs a saturation warning at most once per alert interval.
+     */
+    void recordSaturation() {
+        saturatedBorrowCount.increment();
+
+        long now = System.currentTimeMillis();
+        long lastAlert = lastSaturationAlertAt.get();
+        if (now - lastAlert >= SATURATION_ALERT_INTERVAL_MS && lastSaturationAlertAt.compareAndSet(lastAlert, now)) {
+            System.err.println("Connection pool saturated: " + DBConnection.getPoolStatus()
+                             + ", saturated borrows so far: " + saturatedBorrowCount.sum());
+        }
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return Math.max(0, DBConnection.getTotalCount() - DBConnection.getIdleCount());
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return DBConnection.getIdleCount();
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return DBConnection.getTotalCount();
+    }
+
+    @Override
+    public int getPendingThreads() {
+        return DBConnection.getPendingCount();
+    }
+
+    @Override
+    public int getMaxPoolSize() {
+        return DBConnection.getMaxPoolSize();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    @Override
+    public long getReturnCount() {
+        return returnCount.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public long getSaturatedBorrowCount() {
+        return saturatedBorrowCount.sum();
+    }
+
+    @Override
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    @Override
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    @Override
+    public long getCreationFailureCount() {
+        return creationFailureCount.sum();
+    }
+
+    @Override
+    public long getLeakSuspectedCount() {
+        return leakSuspectedCount.sum();
+    }
+
+    @Override
+    public long getBorrowWaitP50Micros() {
+        return borrowWaitMicros.getPercentile(50);
+    }
+
+    @Override
+    public long getBorrowWaitP99Micros() {
+        return borrowWaitMicros.getPercentile(99);
+    }
+
+    @Override
+    public long getBorrowWaitP999Micros() {
+        return borrowWaitMicros.getPercentile(99.9);
+    }
+
+    @Override
+    public long getBorrowWaitMaxMicros() {
+        return borrowWaitMicros.getMax();
+    }
+
+    @Override
+    public long getUsageP50Millis() {
+        return usageMillis.getPercentile(50);
+    }
+
+    @Override
+    public long getUsageP99Millis() {
+        return usageMillis.getPercentile(99);
+    }
+
+    @Override
+    public long getUsageMaxMillis() {
+        return usageMillis.getMax();
+    }
+
+    /**
+     * Build a point-in-time view of the pool for the metrics endpoint
+     * @return ordered map of gauges, counters, histograms and per-connection usage
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("active", getActiveConnections());
+        pool.put("idle", getIdleConnections());
+        pool.put("total", getTotalConnections());
+        pool.put("pending", getPendingThreads());
+        pool.put("max", getMaxPoolSize());
+        pool.put("utilization", getMaxPoolSize() == 0 ? 0.0
+            : Math.round(getActiveConnections() * 1000.0 / getMaxPoolSize()) / 1000.0);
+        pool.put("saturated", getPendingThreads() > 0 || getActiveConnections() >= getMaxPoolSize());
+
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("borrows", getBorrowCount());
+        counters.put("returns", getReturnCount());
+        counters.put("timeouts", getTimeoutCount());
+        counters.put("saturatedBorrows", getSaturatedBorrowCount());
+        counters.put("connectionsCreated", getConnectionsCreated());
+        counters.put("connectionsClosed", getConnectionsClosed());
+        counters.put("creationFailures", getCreationFailureCount());
+        counters.put("leaksSuspected", getLeakSuspectedCount());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("pool", pool);
+        snapshot.put("counters", counters);
+        snapshot.put("borrowWaitMicros", borrowWaitMicros.summary());
+        snapshot.put("usageMillis", usageMillis.summary());
+
+        List<Map<String, Object>> connections = DBConnection.getConnectionUsage();
+        snapshot.put("connections", connections);
+        return snapshot;
+    }
+}
@@ -1,179 +1,561 @@
 package com.bloodnet.util;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Database Connection Pool Manager for BloodNet Application
- * Provides connection pooling for better performance and resource management
+ * Provides connection pooling for better performance and resource management.
+ * Connections handed out by {@link #getConnection()} are pooled proxies:
+ * closing them returns the physical connection to the pool.
+ *
+ * Borrowing is lock-free while connections are idle: a thread first tries the
+ * connection it used last, then claims any idle connection with a CAS on its
+ * state. A fair semaphore enforces the hard cap so waiters are served in order
+ * and give up after the configured timeout.
+ *
+ * Pool sizing is read through {@link AppConfig}, so it can be set per node in
+ * web.xml (e.g. db.pool.maxSize) or as a system property
+ * (e.g. -Dbloodnet.db.pool.maxSize=40).
+ *
+ * Borrow latency, usage time and failure counters are collected in
+ * {@link ConnectionPoolMetrics}, registered in JMX as
+ * {@value ConnectionPoolMetrics#OBJECT_NAME}.
  */
 public class DBConnection {
-    
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/bloodnet_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
+
+    private static final String DB_URL = "jdbc:mysql://localhost:3306/bloodnet_db?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
     private static final String DB_USERNAME = "root";
     private static final String DB_PASSWORD = "root"; // Change this to your MySQL password
     private static final String DB_DRIVER = "com.mysql.cj.jdbc.Driver";
-    
-    // Connection pool settings
-    private static final int INITIAL_POOL_SIZE = 5;
-    private static final int MAX_POOL_SIZE = 20;
-    private static final int CONNECTION_TIMEOUT = 30; // seconds
-    
-    private static BlockingQueue<Connection> connectionPool;
+
+    // Default connection pool settings
+    private static final int DEFAULT_MIN_IDLE = 5;
+    private static final int DEFAULT_MAX_POOL_SIZE = 20;
+    private static final long DEFAULT_CONNECTION_TIMEOUT_MS = 30 * 1000L; // 30 seconds
+    private static final long DEFAULT_VALIDATION_TIMEOUT_MS = 5 * 1000L; // 5 seconds
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = 10 * 60 * 1000L; // 10 minutes
+    private static final long DEFAULT_MAX_LIFETIME_MS = 30 * 60 * 1000L; // 30 minutes
+    private static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MS = 60 * 1000L; // 1 minute
+    private static final long VALIDATION_THRESHOLD_MS = 500; // validate connections idle longer than this
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30 * 1000L; // 30 seconds
+    private static final long MIN_BORROW_BACKOFF_NANOS = 10_000L; // 10 microseconds
+    private static final long MAX_BORROW_BACKOFF_NANOS = 1_000_000L; // 1 millisecond
+
+    // Effective connection pool settings
+    private static volatile int minIdle;
+    private static volatile int maxPoolSize;
+    private static volatile long connectionTimeoutMs;
+    private static volatile int validationTimeoutSeconds;
+    private static volatile long idleTimeoutMs;
+    private static volatile long maxLifetimeMs;
+    private static volatile long leakDetectionThresholdMs;
+
+    private static final CopyOnWriteArrayList<PooledConnection> sharedConnections = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<WeakReference<PooledConnection>> lastUsedConnection = new ThreadLocal<>();
+    private static final AtomicInteger totalConnections = new AtomicInteger();
+    private static final Object initLock = new Object();
+    private static final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+    private static volatile Semaphore borrowPermits;
+    private static ScheduledExecutorService housekeeper;
     private static volatile boolean initialized = false;
-    
+
     /**
      * Initialize the connection pool
+     * Failing to open the initial connections is logged rather than fatal;
+     * the housekeeper keeps trying to reach the minimum idle count.
      */
-    public static synchronized void initialize() {
+    public static void initialize() {
         if (initialized) {
             return;
         }
-        
-        try {
-            // Load MySQL JDBC driver
-            Class.forName(DB_DRIVER);
-            
-            // Initialize connection pool
-            connectionPool = new ArrayBlockingQueue<>(MAX_POOL_SIZE);
-            
-            // Create initial connections
-            for (int i = 0; i < INITIAL_POOL_SIZE; i++) {
-                Connection connection = createConnection();
-                if (connection != null) {
-                    connectionPool.offer(connection);
-                }
+
+        synchronized (initLock) {
+            if (initialized) {
+                return;
+            }
+
+            try {
+                // Load MySQL JDBC driver
+                Class.forName(DB_DRIVER);
+            } catch (ClassNotFoundException e) {
+                System.err.println("MySQL JDBC Driver not found: " + e.getMessage());
+                throw new RuntimeException("Database driver not found", e);
             }
-            
+
+            loadSettings();
+            borrowPermits = new Semaphore(maxPoolSize, true);
             initialized = true;
-            System.out.println("Database connection pool initialized with " + INITIAL_POOL_SIZE + " connections");
-            
-        } catch (ClassNotFoundException e) {
-            System.err.println("MySQL JDBC Driver not found: " + e.getMessage());
-            throw new RuntimeException("Database driver not found", e);
-        } catch (SQLException e) {
-            System.err.println("Failed to initialize database connection pool: " + e.getMessage());
-            throw new RuntimeException("Database initialization failed", e);
+
+            // Create initial connections
+            fillPool();
+
+            registerMBean();
+
+            // Start background eviction and leak detection
+            housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bloodnet-db-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            housekeeper.scheduleWithFixedDelay(DBConnection::housekeep,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+            System.out.println("Database connection pool initialized with " + totalConnections.get()
+                             + " connections (min idle: " + minIdle + ", max: " + maxPoolSize + ")");
         }
     }
-    
+
+    /**
+     * Read pool settings from AppConfig, falling back to the defaults
+     */
+    private static void loadSettings() {
+        maxPoolSize = Math.max(1, AppConfig.getInt("db.pool.maxSize", DEFAULT_MAX_POOL_SIZE));
+        minIdle = Math.max(0, Math.min(maxPoolSize, AppConfig.getInt("db.pool.minIdle", DEFAULT_MIN_IDLE)));
+        connectionTimeoutMs = Math.max(0, AppConfig.getLong("db.pool.connectionTimeoutMs", DEFAULT_CONNECTION_TIMEOUT_MS));
+        validationTimeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(
+            AppConfig.getLong("db.pool.validationTimeoutMs", DEFAULT_VALIDATION_TIMEOUT_MS)));
+        idleTimeoutMs = AppConfig.getLong("db.pool.idleTimeoutMs", DEFAULT_IDLE_TIMEOUT_MS);
+        maxLifetimeMs = AppConfig.getLong("db.pool.maxLifetimeMs", DEFAULT_MAX_LIFETIME_MS);
+        leakDetectionThresholdMs = AppConfig.getLong("db.pool.leakDetectionThresholdMs", DEFAULT_LEAK_DETECTION_THRESHOLD_MS);
+    }
+
     /**
      * Get a connection from the pool
+     * Closing the returned connection hands it back to the pool.
      * @return Connection object
-     * @throws SQLException if no connection is available
+     * @throws SQLException if no connection becomes available within the timeout
      */
     public static Connection getConnection() throws SQLException {
         if (!initialized) {
             initialize();
         }
-        
+
+        long startNanos = System.nanoTime();
+        Semaphore permits = borrowPermits;
         try {
-            // Try to get connection from pool with timeout
-            Connection connection = connectionPool.poll(CONNECTION_TIMEOUT, TimeUnit.SECONDS);
-            
-            if (connection == null || connection.isClosed()) {
-                // Create new connection if pool is empty or connection is closed
-                connection = createConnection();
-            }
-            
-            if (connection == null) {
-                throw new SQLException("Unable to get database connection");
-            }
-            
-            return connection;
-            
+            // A zero timeout keeps the fast path fair to threads already waiting
+            if (!permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                // Every connection is in use; wait in line for one to be returned
+                metrics.recordSaturation();
+                if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    metrics.recordTimeout();
+                    throw new SQLTransientConnectionException("Connection pool exhausted: no connection available after "
+                        + connectionTimeoutMs + "ms (max pool size " + maxPoolSize + ")");
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new SQLException("Connection request interrupted", e);
         }
+
+        try {
+            PooledConnection pooled = borrow(permits, startNanos);
+            metrics.recordBorrow(System.nanoTime() - startNanos);
+            return pooled.lease(leakDetectionThresholdMs > 0);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Claim an idle connection or open a new one
+     * The caller already holds a permit, so the pool is below its cap.
+     */
+    private static PooledConnection borrow(Semaphore permits, long startNanos) throws SQLException {
+        long backoffNanos = MIN_BORROW_BACKOFF_NANOS;
+        while (true) {
+            PooledConnection pooled = claimIdleConnection();
+
+            if (pooled == null) {
+                pooled = createConnection(permits, PooledConnection.STATE_IN_USE);
+                if (pooled != null) {
+                    return pooled;
+                }
+                // A connection is being returned or evicted; park briefly, backing off, and retry
+                if (System.nanoTime() - startNanos > TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMs)) {
+                    metrics.recordTimeout();
+                    throw new SQLTransientConnectionException("Connection pool exhausted: no connection available after "
+                        + connectionTimeoutMs + "ms (max pool size " + maxPoolSize + ")");
+                }
+                LockSupport.parkNanos(backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, MAX_BORROW_BACKOFF_NANOS);
+                continue;
+            }
+
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+
+            // Discard stale connection and try the next one
+            removeConnection(pooled);
+        }
     }
-    
+
+    /**
+     * Claim an idle connection, preferring the one this thread used last
+     * @return claimed connection or null if none is idle
+     */
+    private static PooledConnection claimIdleConnection() {
+        WeakReference<PooledConnection> reference = lastUsedConnection.get();
+        PooledConnection lastUsed = reference != null ? reference.get() : null;
+        if (lastUsed != null && lastUsed.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_IN_USE)) {
+            return lastUsed;
+        }
+
+        for (PooledConnection pooled : sharedConnections) {
+            if (pooled.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_IN_USE)) {
+                return pooled;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Return a connection to the pool
+     * Equivalent to closing a connection obtained from {@link #getConnection()}.
      * @param connection Connection to return
      */
     public static void returnConnection(Connection connection) {
-        if (connection != null && initialized) {
+        if (connection != null) {
             try {
-                if (!connection.isClosed() && connectionPool.size() < MAX_POOL_SIZE) {
-                    // Reset connection state
-                    connection.setAutoCommit(true);
-                    connectionPool.offer(connection);
-                } else {
-                    // Close connection if pool is full or connection is closed
-                    connection.close();
-                }
+                connection.close();
             } catch (SQLException e) {
-                System.err.println("Error returning connection to pool: " + e.getMessage());
-                try {
-                    connection.close();
-                } catch (SQLException ex) {
-                    System.err.println("Error closing connection: " + ex.getMessage());
-                }
+                System.err.println("Error closing connection: " + e.getMessage());
             }
         }
     }
-    
+
     /**
-     * Create a new database connection
-     * @return Connection object or null if failed
+     * Recycle a pooled connection whose proxy has been closed
+     * @param pooled Pooled connection being returned
      */
-    private static Connection createConnection() throws SQLException {
+    static void release(PooledConnection pooled) {
+        metrics.recordReturn(pooled.markReturned());
+        Semaphore permits = pooled.getPermits();
+
+        if (!initialized || permits != borrowPermits || pooled.isBroken()
+                || isExpired(pooled, System.currentTimeMillis())) {
+            removeConnection(pooled);
+            permits.release();
+            return;
+        }
+
+        try {
+            // Reset connection state
+            pooled.reset();
+        } catch (SQLException e) {
+            System.err.println("Error returning connection to pool: " + e.getMessage());
+            removeConnection(pooled);
+            permits.release();
+            return;
+        }
+
+        pooled.setState(PooledConnection.STATE_NOT_IN_USE);
+
+        WeakReference<PooledConnection> reference = lastUsedConnection.get();
+        if (reference == null || reference.get() != pooled) {
+            lastUsedConnection.set(new WeakReference<>(pooled));
+        }
+
+        permits.release();
+    }
+
+    /**
+     * Create a new database connection if the pool is below its cap
+     * @param permits Semaphore of the pool generation that owns the connection
+     * @param initialState State the new connection starts in
+     * @return Pooled connection, or null if the pool is already full
+     */
+    private static PooledConnection createConnection(Semaphore permits, int initialState) throws SQLException {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= maxPoolSize) {
+                return null;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+
         try {
             Connection connection = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
             connection.setAutoCommit(true);
-            return connection;
+
+            PooledConnection pooled = new PooledConnection(connection, permits);
+            pooled.setState(initialState);
+            sharedConnections.add(pooled);
+            metrics.recordConnectionCreated();
+            return pooled;
         } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            metrics.recordCreationFailure();
             System.err.println("Failed to create database connection: " + e.getMessage());
             throw e;
         }
     }
-    
+
     /**
-     * Close all connections in the pool
+     * Physically close a pooled connection and drop it from the pool
+     */
+    private static void removeConnection(PooledConnection pooled) {
+        pooled.setState(PooledConnection.STATE_REMOVED);
+        if (sharedConnections.remove(pooled)) {
+            totalConnections.decrementAndGet();
+            metrics.recordConnectionClosed();
+        }
+        pooled.closePhysical();
+    }
+
+    /**
+     * Open connections until the minimum idle count is reached
+     */
+    private static void fillPool() {
+        Semaphore permits = borrowPermits;
+        while (initialized && idleCount() < minIdle) {
+            try {
+                if (createConnection(permits, PooledConnection.STATE_NOT_IN_USE) == null) {
+                    return;
+                }
+            } catch (SQLException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check whether an idle connection may be handed out
+     * Connections idle longer than the validation threshold are pinged first.
+     */
+    private static boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (isExpired(pooled, now)) {
+            return false;
+        }
+
+        if (now - pooled.getLastAccessedAt() < VALIDATION_THRESHOLD_MS) {
+            return true;
+        }
+
+        try {
+            return pooled.getRawConnection().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check whether a connection has outlived the maximum lifetime
+     */
+    private static boolean isExpired(PooledConnection pooled, long now) {
+        return maxLifetimeMs > 0 && now - pooled.getCreatedAt() > maxLifetimeMs;
+    }
+
+    /**
+     * Evict idle and expired connections, refill the minimum idle count
+     * and report connections held longer than the leak threshold
+     */
+    private static void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            for (PooledConnection pooled : sharedConnections) {
+                int state = pooled.getState();
+
+                if (state == PooledConnection.STATE_NOT_IN_USE) {
+                    boolean idleTooLong = idleTimeoutMs > 0
+                                        && now - pooled.getLastAccessedAt() > idleTimeoutMs
+                                        && idleCount() > minIdle;
+                    if ((idleTooLong || isExpired(pooled, now))
+                            && pooled.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_REMOVED)) {
+                        removeConnection(pooled);
+                    }
+                } else if (state == PooledConnection.STATE_IN_USE && leakDetectionThresholdMs > 0) {
+                    reportLeak(pooled, now);
+                }
+            }
+
+            fillPool();
+
+        } catch (Exception e) {
+            System.err.println("Connection pool housekeeping error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Log where a connection was borrowed once it exceeds the leak threshold
      */
-    public static synchronized void closeAllConnections() {
-        if (connectionPool != null) {
-            Connection connection;
-            while ((connection = connectionPool.poll()) != null) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    System.err.println("Error closing connection: " + e.getMessage());
+    private static void reportLeak(PooledConnection pooled, long now) {
+        Thread borrower = pooled.getBorrower();
+        long heldFor = now - pooled.getBorrowedAt();
+        if (borrower != null && heldFor > leakDetectionThresholdMs && !pooled.isLeakReported()) {
+            pooled.setLeakReported(true);
+            metrics.recordLeakSuspected();
+            System.err.println("Connection leak suspected: held by thread " + borrower.getName()
+                             + " for " + heldFor + "ms");
+            Throwable borrowSite = pooled.getBorrowSite();
+            if (borrowSite != null) {
+                // Captured at borrow time; the borrower's current stack says nothing about the leak
+                for (StackTraceElement element : borrowSite.getStackTrace()) {
+                    System.err.println("\tat " + element);
                 }
             }
+        }
+    }
+
+    /**
+     * Register the pool metrics with the platform MBean server
+     */
+    private static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ConnectionPoolMetrics.OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to register connection pool MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Remove the pool metrics from the platform MBean server
+     */
+    private static void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ConnectionPoolMetrics.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to unregister connection pool MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the pool's metrics
+     * @return metrics collected since the application started
+     */
+    public static ConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    static int getIdleCount() {
+        return idleCount();
+    }
+
+    static int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    static int getPendingCount() {
+        Semaphore permits = borrowPermits;
+        return permits != null ? permits.getQueueLength() : 0;
+    }
+
+    static int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Describe each physical connection's age and accumulated usage
+     * @return one entry per connection currently owned by the pool
+     */
+    static List<Map<String, Object>> getConnectionUsage() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> usage = new ArrayList<>();
+        for (PooledConnection pooled : sharedConnections) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("state", pooled.getState() == PooledConnection.STATE_IN_USE ? "active" : "idle");
+            entry.put("ageMs", now - pooled.getCreatedAt());
+            entry.put("leases", pooled.getLeaseCount());
+            entry.put("totalUsageMs", TimeUnit.NANOSECONDS.toMillis(pooled.getTotalUsageNanos()));
+            entry.put("idleMs", pooled.getState() == PooledConnection.STATE_IN_USE ? 0 : now - pooled.getLastAccessedAt());
+            usage.add(entry);
+        }
+        return usage;
+    }
+
+    /**
+     * Count connections currently idle in the pool
+     */
+    private static int idleCount() {
+        int idle = 0;
+        for (PooledConnection pooled : sharedConnections) {
+            if (pooled.getState() == PooledConnection.STATE_NOT_IN_USE) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * Close all connections in the pool
+     * Connections still borrowed are closed when they are returned.
+     */
+    public static void closeAllConnections() {
+        synchronized (initLock) {
+            if (!initialized) {
+                return;
+            }
             initialized = false;
+
+            if (housekeeper != null) {
+                housekeeper.shutdownNow();
+                housekeeper = null;
+            }
+            unregisterMBean();
+
+            for (PooledConnection pooled : sharedConnections) {
+                if (pooled.compareAndSetState(PooledConnection.STATE_NOT_IN_USE, PooledConnection.STATE_REMOVED)) {
+                    removeConnection(pooled);
+                }
+            }
             System.out.println("All database connections closed");
         }
     }
-    
+
     /**
      * Get current pool status
      * @return String with pool statistics
      */
     public static String getPoolStatus() {
-        if (!initialized || connectionPool == null) {
+        if (!initialized) {
             return "Connection pool not initialized";
         }
-        
-        return String.format("Pool Status - Available: %d, Max: %d", 
-                           connectionPool.size(), MAX_POOL_SIZE);
+
+        int idle = idleCount();
+        int total = totalConnections.get();
+        return String.format("Pool Status - Idle: %d, Active: %d, Total: %d, Waiting: %d, Max: %d",
+                           idle, Math.max(0, total - idle), total,
+                           borrowPermits.getQueueLength(), maxPoolSize);
     }
-    
+
     /**
      * Test database connectivity
      * @return true if connection successful, false otherwise
      */
     public static boolean testConnection() {
-        try {
-            Connection connection = getConnection();
-            boolean isValid = connection.isValid(5); // 5 second timeout
-            returnConnection(connection);
-            return isValid;
+        try (Connection connection = getConnection()) {
+            return connection.isValid(5); // 5 second timeout
         } catch (SQLException e) {
             System.err.println("Database connection test failed: " + e.getMessage());
             return false;
@@ -0,0 +1,254 @@
+package com.bloodnet.util;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Eligibility Calendar for BloodNet Application
+ * Precomputes donation eligibility for integer donor ids. Each donor's last
+ * donation day and birth year are kept as primitives, and two bitsets hold
+ * "past the donation interval today" and "within the donor age range this
+ * year". They are rebuilt once per day by a scheduled rollover, so eligibility
+ * checks during ranking are bit lookups that neither read the clock nor
+ * allocate.
+ *
+ * Rules match {@code Donor}: a donor may give again 56 days after the last
+ * donation, and age is the difference in calendar years, eligible from 18 to 65.
+ */
+public class EligibilityCalendar {
+
+    public static final int DONATION_INTERVAL_DAYS = 56;
+    public static final int MIN_DONOR_AGE = 18;
+    public static final int MAX_DONOR_AGE = 65;
+
+    /** Marker for donors who have never donated or have no birth date */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BitSet tracked = new BitSet();
+    private final BitSet pastDonationInterval = new BitSet();
+    private final BitSet eligibleAge = new BitSet();
+    private int[] lastDonationDays = new int[INITIAL_CAPACITY];
+    private int[] birthYears = new int[INITIAL_CAPACITY];
+    private int today;
+    private int currentYear;
+    private ScheduledExecutorService rolloverScheduler;
+
+    public EligibilityCalendar() {
+        LocalDate now = LocalDate.now();
+        this.today = (int) now.toEpochDay();
+        this.currentYear = now.getYear();
+    }
+
+    /**
+     * Start advancing the calendar at each local midnight
+     */
+    public synchronized void start() {
+        if (rolloverScheduler != null) {
+            return;
+        }
+
+        rolloverScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bloodnet-eligibility-rollover");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        LocalDateTime now = LocalDateTime.now();
+        long firstDelayMs = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        rolloverScheduler.scheduleAtFixedRate(() -> {
+            try {
+                advanceTo(LocalDate.now());
+            } catch (Exception e) {
+                System.err.println("Error advancing eligibility calendar: " + e.getMessage());
+            }
+        }, firstDelayMs, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the daily rollover
+     */
+    public synchronized void shutdown() {
+        if (rolloverScheduler != null) {
+            rolloverScheduler.shutdownNow();
+            rolloverScheduler = null;
+        }
+    }
+
+    /**
+     * Record or replace a donor's dates
+     * @param donorId Non-negative donor id
+     * @param dateOfBirth Date of birth, may be null
+     * @param lastDonationDate Last donation date, null if never donated
+     */
+    public void update(int donorId, LocalDate dateOfBirth, LocalDate lastDonationDate) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(donorId);
+            lastDonationDays[donorId] = lastDonationDate == null ? UNKNOWN : (int) lastDonationDate.toEpochDay();
+            birthYears[donorId] = dateOfBirth == null ? UNKNOWN : dateOfBirth.getYear();
+            tracked.set(donorId);
+            evaluate(donorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record a new last donation date, keeping the stored birth year
+     * @param donorId Tracked donor id
+     * @param lastDonationDate Date of donation
+     */
+    public void updateLastDonation(int donorId, LocalDate lastDonationDate) {
+        lock.writeLock().lock();
+        try {
+            if (!tracked.get(donorId)) {
+                return;
+            }
+            lastDonationDays[donorId] = lastDonationDate == null ? UNKNOWN : (int) lastDonationDate.toEpochDay();
+            evaluate(donorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop tracking a donor
+     */
+    public void remove(int donorId) {
+        lock.writeLock().lock();
+        try {
+            tracked.clear(donorId);
+            pastDonationInterval.clear(donorId);
+            eligibleAge.clear(donorId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild both bitsets for a new day
+     * @param date The new current date
+     */
+    public void advanceTo(LocalDate date) {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        lock.writeLock().lock();
+        try {
+            today = (int) date.toEpochDay();
+            currentYear = date.getYear();
+            for (int id = tracked.nextSetBit(0); id >= 0; id = tracked.nextSetBit(id + 1)) {
+                evaluate(id);
+                count++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Eligibility calendar advanced to " + date + " for " + count
+                         + " donors in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    public boolean contains(int donorId) {
+        lock.readLock().lock();
+        try {
+            return tracked.get(donorId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether the donation interval has passed as of today
+     */
+    public boolean isEligibleToDonate(int donorId) {
+        lock.readLock().lock();
+        try {
+            return pastDonationInterval.get(donorId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether the donor's age is within the donor age range this year
+     */
+    public boolean isEligibleAge(int donorId) {
+        lock.readLock().lock();
+        try {
+            return eligibleAge.get(donorId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the donor's age in years, 0 if the birth date is unknown
+     */
+    public int getAge(int donorId) {
+        lock.readLock().lock();
+        try {
+            if (!tracked.get(donorId) || birthYears[donorId] == UNKNOWN) {
+                return 0;
+            }
+            return currentYear - birthYears[donorId];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the days since the last donation
+     * @return days, or {@link #UNKNOWN} if the donor never donated
+     */
+    public int getDaysSinceDonation(int donorId) {
+        lock.readLock().lock();
+        try {
+            if (!tracked.get(donorId) || lastDonationDays[donorId] == UNKNOWN) {
+                return UNKNOWN;
+            }
+            return today - lastDonationDays[donorId];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keep only the ids that are past the donation interval today
+     * @param candidates Donor ids, modified in place
+     */
+    public void retainEligibleToDonate(BitSet candidates) {
+        lock.readLock().lock();
+        try {
+            candidates.and(pastDonationInterval);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void evaluate(int donorId) {
+        int lastDonationDay = lastDonationDays[donorId];
+        pastDonationInterval.set(donorId,
+            lastDonationDay == UNKNOWN || today - lastDonationDay >= DONATION_INTERVAL_DAYS);
+
+        int birthYear = birthYears[donorId];
+        int age = birthYear == UNKNOWN ? 0 : currentYear - birthYear;
+        eligibleAge.set(donorId, age >= MIN_DONOR_AGE && age <= MAX_DONOR_AGE);
+    }
+
+    private void ensureCapacity(int donorId) {
+        if (donorId >= lastDonationDays.length) {
+            int capacity = Math.max(donorId + 1, lastDonationDays.length * 2);
+            lastDonationDays = Arrays.copyOf(lastDonationDays, capacity);
+            birthYears = Arrays.copyOf(birthYears, capacity);
+        }
+    }
+}
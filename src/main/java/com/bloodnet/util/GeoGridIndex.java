@@ -0,0 +1,277 @@
+package com.bloodnet.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Geo Grid Index for BloodNet Application
+ * In-memory spatial index of integer ids on a fixed latitude/longitude grid.
+ * Coordinates live in primitive arrays indexed by id, so radius searches
+ * only touch the grid cells overlapping the search circle and compute
+ * true haversine distances for the ids found there.
+ *
+ * Points at exactly (0, 0) are treated as not geocoded and are not indexed.
+ */
+public class GeoGridIndex {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private static final double KM_PER_DEGREE_LATITUDE = 111.32;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final double cellDegrees;
+    private final int longitudeCells;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final BitSet indexed = new BitSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Create an index
+     * @param cellDegrees Grid cell edge in degrees, e.g. 0.1 (about 11 km)
+     */
+    public GeoGridIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.longitudeCells = (int) Math.ceil(360.0 / cellDegrees);
+    }
+
+    /**
+     * Add or move a point
+     * @param id Non-negative id
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     */
+    public void put(int id, double latitude, double longitude) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (!isGeocoded(latitude, longitude)) {
+                return;
+            }
+
+            ensureCapacity(id);
+            latitudes[id] = latitude;
+            longitudes[id] = longitude;
+            indexed.set(id);
+            size++;
+            cells.computeIfAbsent(cellKey(latitude, longitude), key -> new Cell()).add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a point
+     * @param id Id to remove
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether an id has indexed coordinates
+     */
+    public boolean contains(int id) {
+        lock.readLock().lock();
+        try {
+            return indexed.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find all points within a radius
+     * @param latitude Search center latitude
+     * @param longitude Search center longitude
+     * @param radiusKm Search radius in kilometers
+     * @return hits with ids and haversine distances, unordered
+     */
+    public Hits search(double latitude, double longitude, double radiusKm) {
+        Hits hits = new Hits();
+
+        double latitudeDelta = radiusKm / KM_PER_DEGREE_LATITUDE;
+        double minLatitude = Math.max(-90.0, latitude - latitudeDelta);
+        double maxLatitude = Math.min(90.0, latitude + latitudeDelta);
+
+        // Longitude degrees shrink toward the poles; widen the box accordingly
+        double widestCos = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+        double longitudeDelta = widestCos < 1e-6 ? 180.0 : radiusKm / (KM_PER_DEGREE_LATITUDE * widestCos);
+
+        int minLatitudeCell = latitudeCell(minLatitude);
+        int maxLatitudeCell = latitudeCell(maxLatitude);
+        int minLongitudeCell;
+        int maxLongitudeCell;
+        if (longitudeDelta >= 180.0) {
+            minLongitudeCell = 0;
+            maxLongitudeCell = longitudeCells - 1;
+        } else {
+            minLongitudeCell = (int) Math.floor((longitude - longitudeDelta + 180.0) / cellDegrees);
+            maxLongitudeCell = (int) Math.floor((longitude + longitudeDelta + 180.0) / cellDegrees);
+            if (maxLongitudeCell - minLongitudeCell + 1 >= longitudeCells) {
+                minLongitudeCell = 0;
+                maxLongitudeCell = longitudeCells - 1;
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            for (int latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell; latitudeCell++) {
+                for (int rawCell = minLongitudeCell; rawCell <= maxLongitudeCell; rawCell++) {
+                    // Wrap across the antimeridian
+                    int longitudeCell = Math.floorMod(rawCell, longitudeCells);
+                    Cell cell = cells.get(packKey(latitudeCell, longitudeCell));
+                    if (cell == null) {
+                        continue;
+                    }
+
+                    for (int i = 0; i < cell.count; i++) {
+                        int id = cell.ids[i];
+                        double distance = distanceKm(latitude, longitude, latitudes[id], longitudes[id]);
+                        if (distance <= radiusKm) {
+                            hits.add(id, distance);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return hits;
+    }
+
+    /**
+     * Great-circle distance between two points
+     * @return distance in kilometers
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                 + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                 * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Check whether coordinates hold a real location
+     * @return false for the (0, 0) placeholder used before geocoding
+     */
+    public static boolean isGeocoded(double latitude, double longitude) {
+        return !(latitude == 0.0 && longitude == 0.0)
+            && latitude >= -90.0 && latitude <= 90.0
+            && longitude >= -180.0 && longitude <= 180.0;
+    }
+
+    private void removeLocked(int id) {
+        if (!indexed.get(id)) {
+            return;
+        }
+
+        Cell cell = cells.get(cellKey(latitudes[id], longitudes[id]));
+        if (cell != null) {
+            cell.remove(id);
+            if (cell.count == 0) {
+                cells.remove(cellKey(latitudes[id], longitudes[id]));
+            }
+        }
+        indexed.clear(id);
+        size--;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= latitudes.length) {
+            int capacity = Math.max(id + 1, latitudes.length * 2);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+        }
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        int longitudeCell = Math.floorMod((int) Math.floor((longitude + 180.0) / cellDegrees), longitudeCells);
+        return packKey(latitudeCell(latitude), longitudeCell);
+    }
+
+    private int latitudeCell(double latitude) {
+        return (int) Math.floor((latitude + 90.0) / cellDegrees);
+    }
+
+    private static long packKey(int latitudeCell, int longitudeCell) {
+        return ((long) latitudeCell << 32) | (longitudeCell & 0xffffffffL);
+    }
+
+    /**
+     * Ids stored in one grid cell
+     */
+    private static final class Cell {
+        private int[] ids = new int[8];
+        private int count;
+
+        void add(int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--count];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Result of a radius search held in primitive arrays
+     */
+    public static final class Hits {
+        private int[] ids = new int[64];
+        private double[] distances = new double[64];
+        private int count;
+
+        void add(int id, double distance) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                distances = Arrays.copyOf(distances, count * 2);
+            }
+            ids[count] = id;
+            distances[count] = distance;
+            count++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public int getId(int index) {
+            return ids[index];
+        }
+
+        public double getDistance(int index) {
+            return distances[index];
+        }
+    }
+}
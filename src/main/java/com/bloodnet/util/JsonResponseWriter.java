@@ -0,0 +1,111 @@
+package com.bloodnet.util;
+
+import com.bloodnet.dto.JsonWritable;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * JSON Response Writer for BloodNet Application
+ * Streams servlet results straight to the response output stream with a
+ * Jackson {@link JsonGenerator}, so no intermediate JSON strings are built.
+ * Supports typed {@link JsonWritable} responses, nested maps, collections and
+ * arrays, strings, numbers, booleans and null; any other value (dates, enums)
+ * is written as its string form.
+ */
+public class JsonResponseWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Write a value as the JSON response body
+     * Sets the JSON content type if none is set yet.
+     * @param response HTTP response
+     * @param value Value to serialize, usually a result map
+     * @throws IOException if the client connection fails
+     */
+    public static void write(HttpServletResponse response, Object value) throws IOException {
+        if (response.getContentType() == null) {
+            response.setContentType("application/json");
+        }
+        response.setCharacterEncoding("UTF-8");
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            writeValue(generator, value);
+        }
+    }
+
+    /**
+     * Serialize a value to a compact single-line JSON string
+     * For payloads written once and sent to many clients, e.g. push events.
+     * @param value Value to serialize
+     * @return JSON text
+     */
+    public static String toJson(Object value) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            writeValue(generator, value);
+        } catch (IOException e) {
+            // StringWriter does not fail; only unsupported values end up here
+            throw new IllegalArgumentException("Cannot serialize " + value.getClass().getName(), e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write a value with an existing generator
+     * @param generator Target generator
+     * @param value Value to serialize
+     * @throws IOException if writing fails
+     */
+    public static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof JsonWritable) {
+            ((JsonWritable) value).writeJson(generator);
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+            for (Object item : (Collection<?>) value) {
+                writeValue(generator, item);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Object[]) {
+            generator.writeStartArray();
+            for (Object item : (Object[]) value) {
+                writeValue(generator, item);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
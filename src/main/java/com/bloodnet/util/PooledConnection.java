@@ -0,0 +1,303 @@
+package com.bloodnet.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Pooled Connection for BloodNet Application
+ * Wraps a physical database connection owned by {@link DBConnection}.
+ * Each borrow hands out a fresh proxy whose close() returns the physical
+ * connection to the pool instead of tearing it down. Statements, result
+ * sets and metadata obtained through the proxy are wrapped as well, so
+ * their getConnection() returns the proxy and never the physical connection.
+ */
+final class PooledConnection {
+
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    static final int STATE_REMOVED = -1;
+
+    private static final AtomicIntegerFieldUpdater<PooledConnection> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(PooledConnection.class, "state");
+
+    private final Connection rawConnection;
+    private final Semaphore permits;
+    private final long createdAt;
+
+    private volatile long lastAccessedAt;
+    private volatile long borrowedAt;
+    private volatile long borrowedAtNanos;
+    private volatile long leaseCount;
+    private volatile long totalUsageNanos;
+    private volatile Thread borrower;
+    private volatile Throwable borrowSite;
+    private volatile boolean broken;
+    private volatile boolean leakReported;
+    private volatile int state = STATE_NOT_IN_USE;
+
+    PooledConnection(Connection rawConnection, Semaphore permits) {
+        this.rawConnection = rawConnection;
+        this.permits = permits;
+        this.createdAt = System.currentTimeMillis();
+        this.lastAccessedAt = createdAt;
+    }
+
+    /**
+     * Atomically move the connection between pool states
+     * @param expect Expected current state
+     * @param update New state
+     * @return true if the transition happened
+     */
+    boolean compareAndSetState(int expect, int update) {
+        return STATE_UPDATER.compareAndSet(this, expect, update);
+    }
+
+    int getState() {
+        return state;
+    }
+
+    void setState(int state) {
+        this.state = state;
+    }
+
+    /**
+     * Hand out a new proxy for this connection and record the borrow
+     * @param captureBorrowSite Whether to record the borrower's stack for leak reports
+     * @return Connection proxy whose close() recycles into the pool
+     */
+    Connection lease(boolean captureBorrowSite) {
+        borrowedAt = System.currentTimeMillis();
+        borrowedAtNanos = System.nanoTime();
+        leaseCount++;
+        borrower = Thread.currentThread();
+        borrowSite = captureBorrowSite ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class},
+            new Lease()
+        );
+    }
+
+    /**
+     * Clear borrow state once the proxy has been closed
+     * @return how long the connection was held, in nanoseconds
+     */
+    long markReturned() {
+        long usageNanos = System.nanoTime() - borrowedAtNanos;
+        totalUsageNanos += usageNanos;
+        borrower = null;
+        borrowSite = null;
+        lastAccessedAt = System.currentTimeMillis();
+        return usageNanos;
+    }
+
+    /**
+     * Restore the connection to the state DAOs expect on borrow
+     * @throws SQLException if the connection cannot be reset
+     */
+    void reset() throws SQLException {
+        if (!rawConnection.getAutoCommit()) {
+            rawConnection.rollback();
+            rawConnection.setAutoCommit(true);
+        }
+        rawConnection.clearWarnings();
+    }
+
+    /**
+     * Close the physical connection, ignoring errors
+     */
+    void closePhysical() {
+        try {
+            rawConnection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
+
+    Connection getRawConnection() {
+        return rawConnection;
+    }
+
+    /**
+     * Borrow permits of the pool generation that created this connection
+     */
+    Semaphore getPermits() {
+        return permits;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    long getLeaseCount() {
+        return leaseCount;
+    }
+
+    long getTotalUsageNanos() {
+        return totalUsageNanos;
+    }
+
+    Thread getBorrower() {
+        return borrower;
+    }
+
+    /**
+     * Where the current borrower obtained the connection, if leak detection captured it
+     */
+    Throwable getBorrowSite() {
+        return borrowSite;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    /**
+     * Call a method on a physical JDBC object, marking the connection broken
+     * when the driver reports that it is unusable
+     */
+    private Object invokeRaw(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                // SQL state class 08 means the physical connection is unusable
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    broken = true;
+                }
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * Wrap statements, result sets and metadata returned by the driver
+     * @param result Value returned by the physical object
+     * @param type Declared return type of the method
+     * @param connection Connection proxy of the current lease
+     * @param statement Statement proxy that owns a returned result set, or null
+     */
+    private Object wrap(Object result, Class<?> type, Connection connection, Object statement) {
+        if (result == null || !type.isInterface()
+                || !(Statement.class.isAssignableFrom(type) || ResultSet.class.isAssignableFrom(type)
+                     || DatabaseMetaData.class.isAssignableFrom(type))) {
+            return result;
+        }
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                                      new Child(result, connection, statement));
+    }
+
+    /**
+     * Invocation handler for a single borrow of the pooled connection.
+     * Once closed, the handle rejects further use so stale references
+     * cannot interfere with the next borrower.
+     */
+    private final class Lease implements InvocationHandler {
+
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        DBConnection.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || rawConnection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + rawConnection + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+
+            Object result = invokeRaw(rawConnection, method, args);
+            return wrap(result, method.getReturnType(), (Connection) proxy, null);
+        }
+    }
+
+    /**
+     * Invocation handler for a statement, result set or metadata object
+     * created through a lease; it answers getConnection() and getStatement()
+     * with proxies so the physical objects cannot escape the pool
+     */
+    private final class Child implements InvocationHandler {
+
+        private final Object target;
+        private final Connection connection;
+        private final Object statement;
+
+        Child(Object target, Connection connection, Object statement) {
+            this.target = target;
+            this.connection = connection;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean noArgs = args == null || args.length == 0;
+            switch (method.getName()) {
+                case "getConnection":
+                    if (noArgs) {
+                        return connection;
+                    }
+                    break;
+                case "getStatement":
+                    if (noArgs) {
+                        return statement;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return target.toString();
+                default:
+                    break;
+            }
+
+            Object result = invokeRaw(target, method, args);
+            // Result sets of a statement report that statement as their owner
+            return wrap(result, method.getReturnType(), connection, target instanceof Statement ? proxy : null);
+        }
+    }
+}
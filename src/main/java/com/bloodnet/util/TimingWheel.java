@@ -0,0 +1,196 @@
+package com.bloodnet.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timing Wheel for BloodNet Application
+ * Hierarchical hashed timing wheel: {@code levels} wheels of 2^wheelBits
+ * slots each, where a slot of level n spans 2^(wheelBits*n) ticks. A
+ * deadline is linked into the slot of the coarsest level it needs, and when
+ * a coarse slot comes round its deadlines are re-linked one level down.
+ * Scheduling and cancelling are O(1); each tick costs one slot plus,
+ * occasionally, one coarser slot, however many deadlines are pending.
+ *
+ * Deadlines fire on the first tick at or after them. Deadlines beyond the
+ * outermost wheel park in its last slot and are re-linked as it turns.
+ * The wheel does not keep time itself: the owner calls {@link #advance}.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelBits;
+    private final int mask;
+    private final int levels;
+    private final long startMs;
+    private final Timeout<T>[][] slots;
+    private long currentTick = 0;
+    private int size = 0;
+
+    /**
+     * @param tickMs Resolution in milliseconds
+     * @param wheelBits log2 of the slots per level
+     * @param levels Number of levels; the range is 2^(wheelBits*levels) ticks
+     * @param nowMs Current time, tick 0
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMs, int wheelBits, int levels, long nowMs) {
+        if (tickMs <= 0 || wheelBits <= 0 || levels <= 0 || wheelBits * levels > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel dimensions");
+        }
+        this.tickMs = tickMs;
+        this.wheelBits = wheelBits;
+        this.mask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.startMs = nowMs;
+        this.slots = (Timeout<T>[][]) new Timeout<?>[levels][1 << wheelBits];
+    }
+
+    /**
+     * Add a deadline
+     * @param deadlineMs Time at which the value is due; past times fire on the next tick
+     * @param value Value handed back by {@link #advance} when due
+     * @return handle for {@link #cancel}
+     */
+    public synchronized Timeout<T> schedule(long deadlineMs, T value) {
+        long tick = Math.floorDiv(deadlineMs - startMs + tickMs - 1, tickMs);
+        Timeout<T> timeout = new Timeout<>(value, deadlineMs, Math.max(tick, currentTick + 1));
+        link(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Remove a deadline that has not fired yet
+     * @return true if it was pending and is now cancelled
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.level < 0) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Move time forward to {@code nowMs}
+     * @return the deadlines that fell due, oldest tick first
+     */
+    public synchronized List<Timeout<T>> advance(long nowMs) {
+        long targetTick = Math.floorDiv(nowMs - startMs, tickMs);
+        List<Timeout<T>> expired = new ArrayList<>();
+
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Re-link coarse slots that just came round, outermost first
+            for (int level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (wheelBits * level)) - 1)) == 0) {
+                    int slot = (int) ((currentTick >>> (wheelBits * level)) & mask);
+                    Timeout<T> timeout = slots[level][slot];
+                    slots[level][slot] = null;
+                    while (timeout != null) {
+                        Timeout<T> next = timeout.next;
+                        timeout.prev = null;
+                        timeout.next = null;
+                        link(timeout);
+                        timeout = next;
+                    }
+                }
+            }
+
+            int slot = (int) (currentTick & mask);
+            Timeout<T> timeout = slots[0][slot];
+            slots[0][slot] = null;
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                if (timeout.tick > currentTick) {
+                    // Parked beyond the range of a single-level wheel
+                    link(timeout);
+                } else {
+                    timeout.level = -1;
+                    expired.add(timeout);
+                    size--;
+                }
+                timeout = next;
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * Number of pending deadlines
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void link(Timeout<T> timeout) {
+        long delta = timeout.tick - currentTick;
+        long tick = timeout.tick;
+
+        int level = 0;
+        while (level < levels - 1 && delta >= (1L << (wheelBits * (level + 1)))) {
+            level++;
+        }
+        if (delta >= (1L << (wheelBits * levels))) {
+            // Beyond the outermost wheel; park in its last slot for now
+            tick = currentTick + (1L << (wheelBits * levels)) - 1;
+        }
+
+        int slot = (int) ((tick >>> (wheelBits * level)) & mask);
+        Timeout<T> head = slots[level][slot];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+        timeout.level = level;
+        timeout.slot = slot;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.level = -1;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * A pending deadline
+     */
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadlineMs;
+        private final long tick;
+        private int level = -1;
+        private int slot;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T value, long deadlineMs, long tick) {
+            this.value = value;
+            this.deadlineMs = deadlineMs;
+            this.tick = tick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadlineMs() {
+            return deadlineMs;
+        }
+    }
+}
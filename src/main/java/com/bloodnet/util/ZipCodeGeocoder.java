@@ -0,0 +1,302 @@
+package com.bloodnet.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ZIP Code Geocoder for BloodNet Application
+ * Looks up the centroid of a US ZIP code offline, from a binary table that
+ * is memory-mapped rather than read onto the heap. The table is a 16-byte
+ * header (magic "BNZC", version, record count, reserved) followed by
+ * 12-byte records sorted by ZIP code: the code as an int, then latitude and
+ * longitude in millionths of a degree. A lookup is a binary search over the
+ * mapping; the operating system pages in the few records it touches.
+ *
+ * Build the table from the Census Bureau's ZCTA gazetteer file, or any CSV
+ * or tab-separated file of code, latitude and longitude, with
+ * {@code java com.bloodnet.util.ZipCodeGeocoder <input> <output>}.
+ * Without a table every lookup misses and callers keep the 0,0 placeholder,
+ * which matching treats as "not geocoded".
+ */
+public class ZipCodeGeocoder {
+
+    private static final ZipCodeGeocoder INSTANCE = new ZipCodeGeocoder();
+
+    private static final int MAGIC = 0x424E5A43; // "BNZC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 12;
+    private static final double SCALE = 1_000_000.0;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    private volatile Table table;
+
+    private ZipCodeGeocoder() {}
+
+    public static ZipCodeGeocoder getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Map the centroid table named by {@code geocoding.zipCentroidFile}
+     */
+    public synchronized void start() {
+        Path file = Paths.get(AppConfig.getString("geocoding.zipCentroidFile",
+                System.getProperty("user.home") + "/bloodnet/zip-centroids.bin"));
+
+        try {
+            table = Table.map(file);
+            System.out.println("✓ ZIP code geocoder mapped " + table.count + " centroids from " + file);
+        } catch (NoSuchFileException e) {
+            System.err.println("ZIP code centroid table " + file + " not found, geocoding disabled");
+        } catch (IOException e) {
+            System.err.println("Error mapping ZIP code centroid table " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drop the mapping; it is unmapped once no lookup uses it any more
+     */
+    public synchronized void shutdown() {
+        table = null;
+    }
+
+    /**
+     * Whether a centroid table is mapped
+     */
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    /**
+     * Find the centroid of a ZIP code
+     * @param zipCode Five-digit ZIP code, optionally followed by "-" and four digits
+     * @return latitude and longitude, or null if the code is malformed or unknown
+     */
+    public double[] locate(String zipCode) {
+        Table current = table;
+        int code = parseZip(zipCode);
+        if (current == null || code < 0) {
+            return null;
+        }
+
+        lookups.increment();
+        int record = current.find(code);
+        if (record < 0) {
+            return null;
+        }
+
+        hits.increment();
+        return new double[] {current.latitude(record), current.longitude(record)};
+    }
+
+    /**
+     * Build a point-in-time view of the geocoder for the metrics endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Table current = table;
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("loaded", current != null);
+        snapshot.put("centroids", current != null ? current.count : 0);
+        snapshot.put("lookups", lookups.sum());
+        snapshot.put("hits", hits.sum());
+        return snapshot;
+    }
+
+    /**
+     * Numeric value of the five-digit part of a ZIP code, or -1
+     */
+    private static int parseZip(String zipCode) {
+        if (zipCode == null) {
+            return -1;
+        }
+        String trimmed = zipCode.trim();
+        if (trimmed.length() < 5) {
+            return -1;
+        }
+
+        int code = 0;
+        for (int i = 0; i < 5; i++) {
+            char c = trimmed.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return trimmed.length() == 5 || trimmed.charAt(5) == '-' ? code : -1;
+    }
+
+    /**
+     * A mapped centroid table
+     */
+    private static final class Table {
+        private final ByteBuffer buffer;
+        private final int count;
+
+        private Table(ByteBuffer buffer, int count) {
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        static Table map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_BYTES) {
+                    throw new IOException("file is too short");
+                }
+
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("not a version " + VERSION + " centroid table");
+                }
+                int count = buffer.getInt(8);
+                if (count < 0 || HEADER_BYTES + (long) count * RECORD_BYTES > size) {
+                    throw new IOException("truncated, expected " + count + " records");
+                }
+                return new Table(buffer, count);
+            }
+        }
+
+        /**
+         * Binary search by code using absolute reads, so lookups are thread-safe
+         * @return record index, or -1 if absent
+         */
+        int find(int code) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midCode = buffer.getInt(HEADER_BYTES + mid * RECORD_BYTES);
+                if (midCode < code) {
+                    low = mid + 1;
+                } else if (midCode > code) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        double latitude(int record) {
+            return buffer.getInt(HEADER_BYTES + record * RECORD_BYTES + 4) / SCALE;
+        }
+
+        double longitude(int record) {
+            return buffer.getInt(HEADER_BYTES + record * RECORD_BYTES + 8) / SCALE;
+        }
+    }
+
+    /**
+     * Convert a text file of ZIP code centroids into a table
+     * Reads the Census ZCTA gazetteer (GEOID, INTPTLAT, INTPTLONG columns)
+     * or any delimited file whose first three columns are code, latitude
+     * and longitude. Later duplicates of a code replace earlier ones.
+     * @return number of records written
+     */
+    public static int build(Path input, Path output) throws IOException {
+        TreeMap<Integer, int[]> centroids = new TreeMap<>();
+        int codeColumn = 0;
+        int latitudeColumn = 1;
+        int longitudeColumn = 2;
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(line.indexOf('\t') >= 0 ? "\t" : ",");
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim();
+                }
+
+                if (first) {
+                    first = false;
+                    if (parseZip(fields[0]) < 0) {
+                        // Header row: pick the columns by name
+                        String[] names = Arrays.stream(fields).map(f -> f.toLowerCase(Locale.ROOT)).toArray(String[]::new);
+                        codeColumn = indexOf(names, codeColumn, "geoid", "zip", "zipcode", "zip_code", "postal_code");
+                        latitudeColumn = indexOf(names, latitudeColumn, "intptlat", "lat", "latitude");
+                        longitudeColumn = indexOf(names, longitudeColumn, "intptlong", "lon", "lng", "longitude");
+                        continue;
+                    }
+                }
+
+                if (fields.length <= Math.max(codeColumn, Math.max(latitudeColumn, longitudeColumn))) {
+                    continue;
+                }
+                int code = parseZip(fields[codeColumn]);
+                if (code < 0) {
+                    continue;
+                }
+                try {
+                    double latitude = Double.parseDouble(fields[latitudeColumn]);
+                    double longitude = Double.parseDouble(fields[longitudeColumn]);
+                    if (GeoGridIndex.isGeocoded(latitude, longitude)) {
+                        centroids.put(code, new int[] {(int) Math.round(latitude * SCALE),
+                                                       (int) Math.round(longitude * SCALE)});
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip malformed rows
+                }
+            }
+        }
+
+        Path tmp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(centroids.size());
+            out.writeInt(0);
+            for (Map.Entry<Integer, int[]> entry : centroids.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue()[0]);
+                out.writeInt(entry.getValue()[1]);
+            }
+        }
+        Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+        return centroids.size();
+    }
+
+    private static int indexOf(String[] names, int fallback, String... candidates) {
+        for (String candidate : candidates) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(candidate)) {
+                    return i;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java com.bloodnet.util.ZipCodeGeocoder <centroids.txt|csv> <output.bin>");
+            System.exit(1);
+        }
+        int count = build(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("Wrote " + count + " ZIP code centroids to " + args[1]);
+    }
+}
@@ -0,0 +1,114 @@
+package com.bloodnet.dao;
+
+import com.bloodnet.model.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chat Message Cache tests for BloodNet Application
+ * Drives the load protocol the DAO uses, with messages committed while a
+ * conversation loads. Each test uses its own request ID on the shared cache.
+ */
+class ChatMessageCacheTest {
+
+    private final ChatMessageCache cache = ChatMessageCache.getInstance();
+    private final List<Integer> requestIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (int requestId : requestIds) {
+            cache.invalidate(requestId);
+        }
+    }
+
+    @Test
+    void mergesMessagesCommittedDuringLoad() {
+        ChatMessageCache.Conversation conversation = begin(101);
+        assertNull(cache.get(101));
+
+        // Message 3 was committed just before the read, so the load sees it too
+        cache.append(message(101, 3));
+        cache.append(message(101, 4));
+        assertTrue(cache.completeLoad(conversation, List.of(message(101, 1), message(101, 2), message(101, 3)), true, 0));
+
+        assertEquals(List.of(1, 2, 3, 4), messageIds(cache.get(101).all()));
+        assertEquals("4-0", cache.get(101).version());
+    }
+
+    @Test
+    void appendsAfterLoadAndIgnoresReplays() {
+        ChatMessageCache.Conversation conversation = begin(102);
+        assertTrue(cache.completeLoad(conversation, List.of(message(102, 1)), true, 0));
+
+        cache.append(message(102, 2));
+        cache.append(message(102, 2));
+        cache.append(message(102, 1));
+
+        assertEquals(List.of(1, 2), messageIds(cache.get(102).all()));
+        assertEquals(List.of(2), messageIds(cache.get(102).after(1, 10)));
+    }
+
+    @Test
+    void readReceiptDuringLoadDropsConversation() {
+        ChatMessageCache.Conversation conversation = begin(103);
+        cache.markRead(103, 9, "hospital", 1, 1);
+
+        assertFalse(cache.completeLoad(conversation, List.of(message(103, 1)), true, 0));
+        assertNull(cache.get(103));
+        assertNotNull(begin(103));
+    }
+
+    @Test
+    void onlyOneLoaderPerConversation() {
+        ChatMessageCache.Conversation conversation = begin(104);
+
+        assertNull(cache.beginLoad(104));
+        cache.abandonLoad(conversation);
+        assertNotNull(begin(104));
+    }
+
+    @Test
+    void partialConversationFallsBackForOlderMessages() {
+        ChatMessageCache.Conversation conversation = begin(105);
+        assertTrue(cache.completeLoad(conversation, List.of(message(105, 10), message(105, 11)), false, 0));
+
+        ChatMessageCache.Conversation loaded = cache.get(105);
+        assertNull(loaded.all());
+        assertNull(loaded.after(5, 10));
+        assertNull(loaded.before(11, 5));
+        assertEquals(List.of(10), messageIds(loaded.before(11, 1)));
+    }
+
+    private ChatMessageCache.Conversation begin(int requestId) {
+        requestIds.add(requestId);
+        ChatMessageCache.Conversation conversation = cache.beginLoad(requestId);
+        assertNotNull(conversation);
+        return conversation;
+    }
+
+    private static ChatMessage message(int requestId, int messageId) {
+        ChatMessage message = new ChatMessage();
+        message.setMessageId(messageId);
+        message.setRequestId(requestId);
+        message.setSenderId(1);
+        message.setSenderType("donor");
+        return message;
+    }
+
+    private static List<Integer> messageIds(List<ChatMessage> messages) {
+        List<Integer> messageIds = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            messageIds.add(message.getMessageId());
+        }
+        return messageIds;
+    }
+}
@@ -0,0 +1,148 @@
+package com.bloodnet.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recent Request Index tests for BloodNet Application
+ * Each test uses its own index; the expiry tests use a 50 ms window.
+ */
+class RecentRequestIndexTest {
+
+    private static final long WINDOW_MS = 50;
+
+    private final RecentRequestIndex index = new RecentRequestIndex(WINDOW_MS);
+
+    @Test
+    void duplicateGetsEarlierSubmission() throws Exception {
+        RecentRequestIndex.Submission first = submission();
+        assertNull(index.claim(List.of("key:a", "fp:1"), first));
+
+        RecentRequestIndex.Submission retry = submission();
+        assertSame(first, index.claim(List.of("key:a", "fp:2"), retry));
+
+        index.complete(first, 42);
+        assertEquals(42, index.claim(List.of("fp:1"), submission()).getRequestId().get());
+        assertEquals(42, retry.getRequestId().get());
+    }
+
+    @Test
+    void lostClaimGivesBackKeysTakenSoFar() {
+        RecentRequestIndex.Submission first = submission();
+        assertNull(index.claim(List.of("key:a", "fp:1"), first));
+
+        assertSame(first, index.claim(List.of("key:b", "fp:1"), submission()));
+        assertEquals(2, index.size());
+        assertNull(index.claim(List.of("key:b"), submission()));
+    }
+
+    @Test
+    void releaseFreesKeysAndFailsWaiters() {
+        RecentRequestIndex.Submission first = submission();
+        List<String> keys = List.of("key:a", "fp:1");
+        assertNull(index.claim(keys, first));
+
+        index.release(keys, first, new IllegalStateException("insert failed"));
+
+        assertTrue(first.getRequestId().isCompletedExceptionally());
+        assertEquals(0, index.size());
+        assertNull(index.claim(keys, submission()));
+    }
+
+    @Test
+    void completedSubmissionExpiresAfterWindow() throws Exception {
+        RecentRequestIndex.Submission first = submission();
+        assertNull(index.claim(List.of("fp:1"), first));
+        index.complete(first, 7);
+
+        Thread.sleep(WINDOW_MS * 2);
+
+        RecentRequestIndex.Submission later = submission();
+        assertNull(index.claim(List.of("fp:1"), later));
+        assertSame(later, index.claim(List.of("fp:1"), submission()));
+    }
+
+    @Test
+    void pendingSubmissionNeverExpires() throws Exception {
+        RecentRequestIndex.Submission first = new RecentRequestIndex.Submission(System.currentTimeMillis() - WINDOW_MS * 10);
+        assertNull(index.claim(List.of("fp:1"), first));
+
+        assertSame(first, index.claim(List.of("fp:1"), submission()));
+        assertFalse(first.getRequestId().isDone());
+    }
+
+    @Test
+    void seededRequestsAnswerDuplicatesButYieldToClaims() throws Exception {
+        RecentRequestIndex.Submission claimed = submission();
+        assertNull(index.claim(List.of("fp:1"), claimed));
+
+        index.seed("fp:1", 5, System.currentTimeMillis());
+        index.seed("fp:2", 6, System.currentTimeMillis());
+
+        assertSame(claimed, index.claim(List.of("fp:1"), submission()));
+        assertEquals(6, index.claim(List.of("fp:2"), submission()).getRequestId().get());
+    }
+
+    @Test
+    void concurrentClaimsHaveOneWinnerThatAllLosersFollow() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Callable<RecentRequestIndex.Submission[]>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // Overlapping key sets in different orders
+                List<String> keys = i % 2 == 0 ? List.of("key:" + i, "fp:1", "fp:2") : List.of("fp:2", "key:" + i, "fp:1");
+                tasks.add(() -> {
+                    RecentRequestIndex.Submission claim = submission();
+                    start.await();
+                    return new RecentRequestIndex.Submission[] {claim, index.claim(keys, claim)};
+                });
+            }
+
+            List<Future<RecentRequestIndex.Submission[]>> results = new ArrayList<>();
+            for (Callable<RecentRequestIndex.Submission[]> task : tasks) {
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+
+            List<RecentRequestIndex.Submission> winners = new ArrayList<>();
+            List<RecentRequestIndex.Submission> earlier = new ArrayList<>();
+            for (Future<RecentRequestIndex.Submission[]> result : results) {
+                RecentRequestIndex.Submission[] outcome = result.get();
+                if (outcome[1] == null) {
+                    winners.add(outcome[0]);
+                } else {
+                    earlier.add(outcome[1]);
+                }
+            }
+            assertEquals(1, winners.size());
+            assertEquals(3, index.size());
+
+            index.complete(winners.get(0), 9);
+            for (RecentRequestIndex.Submission submission : earlier) {
+                assertEquals(9, submission.getRequestId().get(1, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RecentRequestIndex.Submission submission() {
+        return new RecentRequestIndex.Submission(System.currentTimeMillis());
+    }
+}
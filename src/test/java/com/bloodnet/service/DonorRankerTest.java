@@ -0,0 +1,125 @@
+package com.bloodnet.service;
+
+import com.bloodnet.model.Donor;
+import com.bloodnet.util.EligibilityCalendar;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Donor Ranker tests for BloodNet Application
+ * Donors are not in the eligibility calendar, so they are scored from their own dates.
+ */
+class DonorRankerTest {
+
+    private final DonorRanker ranker = new DonorRanker(new EligibilityCalendar());
+
+    @Test
+    void ordersByScoreThenDonorId() {
+        List<Donor> candidates = List.of(
+            donor(5, 50, 30),      // recent donation: 0 + 50 + 40 + 20 = 110
+            donor(4, 30, null),    // never donated, prime age: 100 + 50 + 100 + 30 = 280
+            donor(3, 30, 60),      // eligible again: 100 + 50 + 80 + 30 = 260
+            donor(2, 30, null),    // ties with donor 4, lower ID first
+            donor(1, 70, null));   // too old: 100 + 0 + 100 + 0 = 200
+
+        DonorRanker.Ranking ranking = ranker.rank(candidates, null, 10);
+
+        assertEquals(List.of(2, 4, 3, 1, 5), donorIds(candidates, ranking));
+        assertEquals(List.of(280, 280, 260, 200, 110), scores(ranking));
+        assertEquals(5, ranking.getCandidateCount());
+        assertFalse(ranking.hasMore());
+    }
+
+    @Test
+    void keepsOnlyTheBestWithinLimit() {
+        List<Donor> candidates = List.of(donor(1, 70, null), donor(2, 30, null), donor(3, 40, 30));
+
+        DonorRanker.Ranking ranking = ranker.rank(candidates, null, 1);
+
+        assertEquals(List.of(2), donorIds(candidates, ranking));
+        assertTrue(ranking.hasMore());
+    }
+
+    @Test
+    void cursorPagesReproduceFullRanking() {
+        Random random = new Random(11);
+        List<Donor> candidates = new ArrayList<>();
+        for (int donorId = 1; donorId <= 200; donorId++) {
+            Integer daysSinceDonation = random.nextInt(4) == 0 ? null : random.nextInt(120);
+            candidates.add(donor(donorId, 16 + random.nextInt(60), daysSinceDonation));
+        }
+        List<Integer> full = donorIds(candidates, ranker.rank(candidates, "high", candidates.size()));
+
+        List<Integer> paged = new ArrayList<>();
+        DonorRanker.Cursor cursor = null;
+        while (true) {
+            DonorRanker.Ranking page = ranker.rank(candidates, "high", 7, cursor);
+            paged.addAll(donorIds(candidates, page));
+            if (!page.hasMore()) {
+                break;
+            }
+            int last = page.size() - 1;
+            cursor = new DonorRanker.Cursor(page.getScore(last),
+                                            candidates.get(page.getPosition(last)).getDonorId());
+        }
+
+        assertEquals(full, paged);
+    }
+
+    @Test
+    void cursorWithoutUrgencyMatchesBaseScore() {
+        List<Donor> candidates = List.of(donor(9, 30, 60));
+        int base = ranker.rank(candidates, null, 1).getScore(0);
+        int critical = ranker.rank(candidates, "critical", 1).getScore(0);
+
+        DonorRanker.Cursor cursor = new DonorRanker.Cursor(critical, 9).withoutUrgency("critical");
+
+        assertEquals(base, cursor.getScore());
+        assertEquals(9, cursor.getDonorId());
+    }
+
+    @Test
+    void cursorTokenRoundTrips() {
+        DonorRanker.Cursor cursor = DonorRanker.Cursor.decode(new DonorRanker.Cursor(275, 1234).encode());
+
+        assertEquals(275, cursor.getScore());
+        assertEquals(1234, cursor.getDonorId());
+        assertNull(DonorRanker.Cursor.decode("not a cursor"));
+        assertNull(DonorRanker.Cursor.decode(""));
+    }
+
+    private static Donor donor(int donorId, int age, Integer daysSinceDonation) {
+        Donor donor = new Donor();
+        donor.setDonorId(donorId);
+        donor.setDateOfBirth(LocalDate.now().minusYears(age));
+        if (daysSinceDonation != null) {
+            donor.setLastDonationDate(LocalDate.now().minusDays(daysSinceDonation));
+        }
+        return donor;
+    }
+
+    private static List<Integer> donorIds(List<Donor> candidates, DonorRanker.Ranking ranking) {
+        List<Integer> donorIds = new ArrayList<>(ranking.size());
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            donorIds.add(candidates.get(ranking.getPosition(rank)).getDonorId());
+        }
+        return donorIds;
+    }
+
+    private static List<Integer> scores(DonorRanker.Ranking ranking) {
+        List<Integer> scores = new ArrayList<>(ranking.size());
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            scores.add(ranking.getScore(rank));
+        }
+        return scores;
+    }
+}
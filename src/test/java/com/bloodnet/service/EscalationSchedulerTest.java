@@ -0,0 +1,96 @@
+package com.bloodnet.service;
+
+import com.bloodnet.dao.BloodRequestDAO;
+import com.bloodnet.dao.DonorMatchDAO;
+import com.bloodnet.model.BloodRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Escalation Scheduler tests for BloodNet Application
+ * The DAOs are mocked and the wheels tick every 10 ms, so a due urgency
+ * step is taken almost at once.
+ */
+class EscalationSchedulerTest {
+
+    private static final String TICK_PROPERTY = "bloodnet.escalation.tickMs";
+
+    private BloodRequestDAO bloodRequestDAO;
+    private EscalationScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty(TICK_PROPERTY, "10");
+        bloodRequestDAO = mock(BloodRequestDAO.class);
+        doAnswer(invocation -> {
+            invocation.getArgument(0, BloodRequest.class).setUrgency(invocation.getArgument(1));
+            return true;
+        }).when(bloodRequestDAO).updateUrgency(any(), anyString());
+
+        scheduler = new EscalationScheduler(bloodRequestDAO, mock(DonorMatchDAO.class));
+        scheduler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+        System.clearProperty(TICK_PROPERTY);
+    }
+
+    @Test
+    void requestWithoutRequiredDateKeepsSubmittedUrgency() {
+        BloodRequest request = pending(1, "low", null);
+
+        scheduler.track(request);
+
+        verify(bloodRequestDAO, after(300).never()).updateUrgency(any(), anyString());
+        assertEquals("low", request.getUrgency());
+        assertEquals(0, scheduler.snapshot().get("urgencyDeadlines"));
+    }
+
+    @Test
+    void requestDueSoonEscalatesRightAway() {
+        BloodRequest request = pending(2, "low", LocalDateTime.now().plusHours(48));
+
+        scheduler.track(request);
+
+        verify(bloodRequestDAO, timeout(2000)).updateUrgency(request, "high");
+        assertEquals("high", request.getUrgency());
+        verify(bloodRequestDAO, after(300).never()).updateUrgency(request, "critical");
+    }
+
+    @Test
+    void requestDueLaterWaitsForItsWindow() {
+        BloodRequest request = pending(3, "low", LocalDateTime.now().plusDays(10));
+
+        scheduler.track(request);
+
+        verify(bloodRequestDAO, after(300).never()).updateUrgency(any(), anyString());
+        assertEquals(1, scheduler.snapshot().get("urgencyDeadlines"));
+    }
+
+    private BloodRequest pending(int requestId, String urgency, LocalDateTime requiredDate) {
+        BloodRequest request = new BloodRequest();
+        request.setRequestId(requestId);
+        request.setUrgency(urgency);
+        request.setStatus("pending");
+        request.setRequestDate(LocalDateTime.now());
+        request.setRequiredDate(requiredDate);
+        when(bloodRequestDAO.getBloodRequestById(requestId)).thenReturn(request);
+        return request;
+    }
+}
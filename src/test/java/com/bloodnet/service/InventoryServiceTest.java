@@ -0,0 +1,194 @@
+package com.bloodnet.service;
+
+import com.bloodnet.dao.BloodInventoryDAO;
+import com.bloodnet.model.InventoryLevel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Inventory Service tests for BloodNet Application
+ * The DAO is mocked and the write-behind interval is long, so writes only
+ * happen when the test shuts the service down or operates on a stopped one.
+ */
+class InventoryServiceTest {
+
+    private static final int HOSPITAL = 7;
+    private static final String FLUSH_INTERVAL_PROPERTY = "bloodnet.inventory.flushIntervalMs";
+
+    private BloodInventoryDAO inventoryDAO;
+    private InventoryService inventory;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty(FLUSH_INTERVAL_PROPERTY, "3600000");
+        inventoryDAO = mock(BloodInventoryDAO.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inventory.shutdown();
+        System.clearProperty(FLUSH_INTERVAL_PROPERTY);
+    }
+
+    @Test
+    void concurrentReservationsNeverOverCommit() throws Exception {
+        start(new InventoryLevel(HOSPITAL, "O-", 100, 0));
+
+        AtomicInteger reserved = new AtomicInteger();
+        runConcurrently(8, 50, () -> {
+            if (inventory.reserve(HOSPITAL, "O-", 1)) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertEquals(100, reserved.get());
+        InventoryLevel level = inventory.getLevel(HOSPITAL, "O-");
+        assertEquals(0, level.getUnitsAvailable());
+        assertEquals(100, level.getUnitsReserved());
+
+        Map<?, ?> counters = (Map<?, ?>) inventory.snapshot().get("counters");
+        assertEquals(100L, counters.get("reservations"));
+        assertEquals(300L, counters.get("rejections"));
+    }
+
+    @Test
+    void concurrentOperationsConserveUnits() throws Exception {
+        start(new InventoryLevel(HOSPITAL, "A+", 60, 0));
+
+        AtomicInteger consumed = new AtomicInteger();
+        AtomicInteger operation = new AtomicInteger();
+        runConcurrently(8, 500, () -> {
+            int units = 1 + operation.get() % 3;
+            switch (operation.getAndIncrement() % 3) {
+                case 0:
+                    inventory.reserve(HOSPITAL, "A+", units);
+                    break;
+                case 1:
+                    inventory.release(HOSPITAL, "A+", units);
+                    break;
+                default:
+                    if (inventory.consume(HOSPITAL, "A+", units)) {
+                        consumed.addAndGet(units);
+                    }
+                    break;
+            }
+
+            InventoryLevel level = inventory.getLevel(HOSPITAL, "A+");
+            assertTrue(level.getUnitsAvailable() >= 0 && level.getUnitsReserved() >= 0);
+        });
+
+        InventoryLevel level = inventory.getLevel(HOSPITAL, "A+");
+        assertEquals(60, level.getUnitsAvailable() + level.getUnitsReserved() + consumed.get());
+    }
+
+    @Test
+    void releaseAndConsumeStopAtReserved() {
+        start(new InventoryLevel(HOSPITAL, "B+", 100, 0));
+
+        assertTrue(inventory.reserve(HOSPITAL, "B+", 5));
+        assertFalse(inventory.release(HOSPITAL, "B+", 6));
+        assertFalse(inventory.consume(HOSPITAL, "B+", 6));
+        assertTrue(inventory.consume(HOSPITAL, "B+", 5));
+
+        InventoryLevel level = inventory.getLevel(HOSPITAL, "B+");
+        assertEquals(95, level.getUnitsAvailable());
+        assertEquals(0, level.getUnitsReserved());
+    }
+
+    @Test
+    void restockStopsAtIntegerRange() {
+        start(new InventoryLevel(HOSPITAL, "AB-", Integer.MAX_VALUE - 1, 0));
+
+        assertFalse(inventory.restock(HOSPITAL, "AB-", 2));
+        assertTrue(inventory.restock(HOSPITAL, "AB-", 1));
+        assertEquals(Integer.MAX_VALUE, inventory.getLevel(HOSPITAL, "AB-").getUnitsAvailable());
+    }
+
+    @Test
+    void unknownStocksAndInvalidUnitsAreRejected() {
+        start(new InventoryLevel(HOSPITAL, "O+", 10, 0));
+
+        assertFalse(inventory.reserve(HOSPITAL + 1, "O+", 1));
+        assertFalse(inventory.reserve(HOSPITAL, "Q+", 1));
+        assertFalse(inventory.reserve(HOSPITAL, "O+", 0));
+        assertFalse(inventory.reserve(HOSPITAL, "O+", -1));
+        assertNull(inventory.getLevel(HOSPITAL, "A-"));
+        assertEquals(10, inventory.getLevel(HOSPITAL, "O+").getUnitsAvailable());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedFlushKeepsStockDirtyUntilWritten() throws Exception {
+        doThrow(new IllegalStateException("connection lost"))
+            .doNothing()
+            .when(inventoryDAO).writeLevels(anyList(), anyInt());
+        start(new InventoryLevel(HOSPITAL, "A-", 10, 0));
+
+        assertTrue(inventory.reserve(HOSPITAL, "A-", 3));
+        inventory.shutdown();
+
+        Map<String, Object> snapshot = inventory.snapshot();
+        assertEquals(1, snapshot.get("pendingWrites"));
+        assertEquals(1L, ((Map<?, ?>) snapshot.get("counters")).get("writeFailures"));
+
+        // Stopped, so this writes immediately, including the change that failed before
+        assertTrue(inventory.reserve(HOSPITAL, "A-", 2));
+        assertEquals(0, inventory.snapshot().get("pendingWrites"));
+
+        ArgumentCaptor<List<InventoryLevel>> written = ArgumentCaptor.forClass(List.class);
+        verify(inventoryDAO, times(2)).writeLevels(written.capture(), anyInt());
+        InventoryLevel level = written.getValue().get(0);
+        assertEquals(5, level.getUnitsAvailable());
+        assertEquals(5, level.getUnitsReserved());
+    }
+
+    private void start(InventoryLevel... levels) {
+        when(inventoryDAO.loadAll()).thenReturn(List.of(levels));
+        inventory = new InventoryService(inventoryDAO);
+        inventory.start();
+        assertTrue(inventory.isLoaded());
+    }
+
+    private static void runConcurrently(int threads, int operationsPerThread, Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                tasks.add(() -> {
+                    for (int n = 0; n < operationsPerThread; n++) {
+                        operation.run();
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
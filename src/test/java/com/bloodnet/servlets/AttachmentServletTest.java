@@ -0,0 +1,49 @@
+package com.bloodnet.servlets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Attachment Servlet tests for BloodNet Application
+ * Covers Range header parsing against a 1000-byte file.
+ */
+class AttachmentServletTest {
+
+    private static final long LENGTH = 1000;
+    private static final long[] WHOLE_FILE = new long[0];
+
+    @Test
+    void parsesClosedAndOpenRanges() {
+        assertArrayEquals(new long[] {0, 99}, AttachmentServlet.parseRange("bytes=0-99", LENGTH));
+        assertArrayEquals(new long[] {100, 999}, AttachmentServlet.parseRange("bytes=100-", LENGTH));
+        assertArrayEquals(new long[] {999, 999}, AttachmentServlet.parseRange("bytes=999-999", LENGTH));
+    }
+
+    @Test
+    void clampsEndToFileLength() {
+        assertArrayEquals(new long[] {500, 999}, AttachmentServlet.parseRange("bytes=500-2000", LENGTH));
+    }
+
+    @Test
+    void parsesSuffixRanges() {
+        assertArrayEquals(new long[] {990, 999}, AttachmentServlet.parseRange("bytes=-10", LENGTH));
+        assertArrayEquals(new long[] {0, 999}, AttachmentServlet.parseRange("bytes=-5000", LENGTH));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        assertNull(AttachmentServlet.parseRange("bytes=1000-", LENGTH));
+        assertNull(AttachmentServlet.parseRange("bytes=500-100", LENGTH));
+        assertNull(AttachmentServlet.parseRange("bytes=-0", LENGTH));
+    }
+
+    @Test
+    void answersOtherRangesWithWholeFile() {
+        assertArrayEquals(WHOLE_FILE, AttachmentServlet.parseRange("bytes=0-5,7-9", LENGTH));
+        assertArrayEquals(WHOLE_FILE, AttachmentServlet.parseRange("items=0-5", LENGTH));
+        assertArrayEquals(WHOLE_FILE, AttachmentServlet.parseRange("bytes=5", LENGTH));
+        assertArrayEquals(WHOLE_FILE, AttachmentServlet.parseRange("bytes=x-", LENGTH));
+    }
+}
@@ -0,0 +1,129 @@
+package com.bloodnet.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Timing Wheel tests for BloodNet Application
+ * Uses a 10 ms tick starting at time 0, so tick n covers (10(n-1), 10n].
+ */
+class TimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    @Test
+    void firesOnFirstTickAtOrAfterDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 2, 2, 0);
+        wheel.schedule(25, "a");
+        wheel.schedule(30, "b");
+
+        assertTrue(wheel.advance(20).isEmpty());
+        // Deadlines of one tick come back in no particular order
+        assertEquals(Set.of("a", "b"), new HashSet<>(values(wheel.advance(30))));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 2, 2, 0);
+        wheel.advance(100);
+        wheel.schedule(5, "late");
+
+        assertTrue(wheel.advance(100).isEmpty());
+        assertEquals(List.of("late"), values(wheel.advance(110)));
+    }
+
+    @Test
+    void cascadesEveryDeadlineDownToItsTick() {
+        // 3 levels of 4 slots cover 64 ticks; most deadlines start on a coarse level
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK_MS, 2, 3, 0);
+        List<Integer> ticks = new ArrayList<>();
+        for (int tick = 1; tick < 64; tick++) {
+            ticks.add(tick);
+        }
+        Collections.shuffle(ticks, new Random(7));
+        for (int tick : ticks) {
+            wheel.schedule(tick * TICK_MS, tick);
+        }
+        assertEquals(63, wheel.size());
+
+        for (int tick = 1; tick < 64; tick++) {
+            assertEquals(List.of(tick), values(wheel.advance(tick * TICK_MS)), "tick " + tick);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advancingManyTicksAtOnceReturnsOldestFirst() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK_MS, 2, 3, 0);
+        wheel.schedule(400, 40);
+        wheel.schedule(70, 7);
+        wheel.schedule(190, 19);
+
+        assertEquals(List.of(7, 19, 40), values(wheel.advance(640)));
+    }
+
+    @Test
+    void parksDeadlinesBeyondSingleLevelRange() {
+        // One level of 4 slots; a deadline 10 ticks out parks and re-links as the wheel turns
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 2, 1, 0);
+        wheel.schedule(100, "far");
+
+        for (int tick = 1; tick < 10; tick++) {
+            assertTrue(wheel.advance(tick * TICK_MS).isEmpty(), "tick " + tick);
+        }
+        assertEquals(List.of("far"), values(wheel.advance(100)));
+    }
+
+    @Test
+    void parksDeadlinesBeyondOutermostLevel() {
+        // Two levels of 4 slots cover 16 ticks
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 2, 2, 0);
+        wheel.schedule(400, "far");
+
+        for (int tick = 1; tick < 40; tick++) {
+            assertTrue(wheel.advance(tick * TICK_MS).isEmpty(), "tick " + tick);
+        }
+        assertEquals(List.of("far"), values(wheel.advance(400)));
+    }
+
+    @Test
+    void cancelledDeadlineNeverFires() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, 2, 2, 0);
+        TimingWheel.Timeout<String> kept = wheel.schedule(120, "kept");
+        TimingWheel.Timeout<String> cancelled = wheel.schedule(120, "cancelled");
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        assertEquals(1, wheel.size());
+
+        assertEquals(List.of("kept"), values(wheel.advance(200)));
+        assertFalse(wheel.cancel(kept));
+    }
+
+    @Test
+    void rejectsInvalidDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, 2, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(TICK_MS, 0, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(TICK_MS, 16, 4, 0));
+    }
+
+    private static <T> List<T> values(List<TimingWheel.Timeout<T>> timeouts) {
+        List<T> values = new ArrayList<>(timeouts.size());
+        for (TimingWheel.Timeout<T> timeout : timeouts) {
+            values.add(timeout.getValue());
+        }
+        return values;
+    }
+}
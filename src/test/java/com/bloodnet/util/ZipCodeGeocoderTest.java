@@ -0,0 +1,96 @@
+package com.bloodnet.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ZIP Code Geocoder tests for BloodNet Application
+ * Builds small centroid tables and maps them through the shared instance.
+ */
+class ZipCodeGeocoderTest {
+
+    private static final String TABLE_PROPERTY = "bloodnet.geocoding.zipCentroidFile";
+    private static final double DELTA = 1e-6;
+
+    @TempDir
+    Path dir;
+
+    private final ZipCodeGeocoder geocoder = ZipCodeGeocoder.getInstance();
+
+    @AfterEach
+    void tearDown() {
+        geocoder.shutdown();
+        System.clearProperty(TABLE_PROPERTY);
+    }
+
+    @Test
+    void buildsGazetteerAndLocatesByCode() throws IOException {
+        Path input = dir.resolve("gazetteer.txt");
+        Files.writeString(input,
+            "GEOID\tALAND\tAWATER\tINTPTLAT\tINTPTLONG\n" +
+            "00601\t166847909\t799292\t18.180555\t-66.749961\n" +
+            "10001\t1640004\t0\t40.750649\t-73.997298\n" +
+            "94103\t5920542\t0\t37.772530\t-122.410783\n" +
+            "99999\t0\t0\t0\t0\n" +
+            "bad\t0\t0\t1\t1\n");
+
+        assertEquals(3, mapTable(input));
+
+        assertArrayEquals(new double[] {40.750649, -73.997298}, geocoder.locate("10001"), DELTA);
+        assertArrayEquals(new double[] {18.180555, -66.749961}, geocoder.locate(" 00601 "), DELTA);
+        assertArrayEquals(new double[] {37.772530, -122.410783}, geocoder.locate("94103-1234"), DELTA);
+    }
+
+    @Test
+    void missesUnknownMalformedAndUngeocodedCodes() throws IOException {
+        Path input = dir.resolve("centroids.csv");
+        Files.writeString(input, "10001,40.750649,-73.997298\n99999,0,0\n");
+
+        assertEquals(1, mapTable(input));
+
+        assertNull(geocoder.locate("10002"));
+        assertNull(geocoder.locate("99999"));
+        assertNull(geocoder.locate("1000"));
+        assertNull(geocoder.locate("abcde"));
+        assertNull(geocoder.locate(null));
+    }
+
+    @Test
+    void laterDuplicatesReplaceEarlierOnes() throws IOException {
+        Path input = dir.resolve("centroids.csv");
+        Files.writeString(input, "10001,1.5,2.5\n10001,3.5,4.5\n");
+
+        assertEquals(1, mapTable(input));
+        assertArrayEquals(new double[] {3.5, 4.5}, geocoder.locate("10001"), DELTA);
+    }
+
+    @Test
+    void withoutTableEveryLookupMisses() {
+        System.setProperty(TABLE_PROPERTY, dir.resolve("missing.bin").toString());
+        geocoder.start();
+
+        assertFalse(geocoder.isLoaded());
+        assertNull(geocoder.locate("10001"));
+    }
+
+    private int mapTable(Path input) throws IOException {
+        Path table = dir.resolve("zip-centroids.bin");
+        int count = ZipCodeGeocoder.build(input, table);
+
+        System.setProperty(TABLE_PROPERTY, table.toString());
+        geocoder.start();
+        assertTrue(geocoder.isLoaded());
+        return count;
+    }
+}